@@ -1,219 +1,253 @@
 package de.hsbi.interpreter;
 
 import de.hsbi.interpreter.ast.*;
+import de.hsbi.interpreter.jit.CompiledCode;
+import de.hsbi.interpreter.jit.Jit;
 import de.hsbi.interpreter.runtime.*;
 import de.hsbi.interpreter.symbols.*;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * tree-walking interpreter
  * executes the AST using the visitor pattern
+ *
+ * local variables and parameters live in a fixed-size Value[] frame per call;
+ * the slot of every variable is assigned by the SemanticAnalyzer. frames come
+ * from a FrameStack and are reused; the arguments of a call are evaluated right
+ * into the parameter slots of the callee's frame. fields used by plain name in
+ * a method or constructor are read directly from the receiver
+ *
+ * with a Jit, hot functions and loops are compiled to JVM bytecode and
+ * the compiled code is used from then on
+ *
+ * statements return their completion: null if execution continues normally,
+ * the returned value if a return statement was executed. blocks, ifs and loops
+ * pass it up to the call, so returns need no exceptions. a tail call completes
+ * with TAIL_CALL after binding the callee's arguments; executeFunction then runs
+ * the callee in the same frame depth instead of recursing
  */
 public class Interpreter implements ASTVisitor<Value> {
     private SymbolTable symbolTable;
-    private Environment globalEnv;
-    private Environment currentEnv;
-    private Map<String, FunctionDecl> functions;
-    private Map<String, ClassSymbol> classes;
+    private Value[] frame;
+    private FrameStack frames = new FrameStack();
+    private ObjectValue receiver; // object of the running method/constructor (null in functions)
+    private FunctionDecl main; // last function named main of the executed programs
+    private RuntimeSupport support;
+
+    // per node state, kept here instead of in the AST
+    private Map<MemberAccessExpr, InlineCache<MethodDecl>> inlineCaches = new IdentityHashMap<>();
+    private Map<LiteralExpr, Value> constants = new IdentityHashMap<>(); // shared by every evaluation
+
+    // tiered compilation (null = interpret only)
+    private Jit jit;
+    private FunctionDecl currentFunction;
+    private MethodDecl currentMethod;
+
+    // completion of a tail call to tailCallee (see visitReturnStmt)
+    private static final Value TAIL_CALL = new Value(Type.VOID, null);
+    private FunctionDecl tailCallee;
 
     public Interpreter(SymbolTable symbolTable) {
         this.symbolTable = symbolTable;
-        this.globalEnv = new Environment(null);
-        this.currentEnv = globalEnv;
-        this.functions = new HashMap<>();
-        this.classes = symbolTable.getClasses();
+        this.frame = new Value[0];
+        this.support = new RuntimeSupport();
+    }
+
+    public void setJit(Jit jit) {
+        this.jit = jit;
     }
 
-    public Environment getGlobalEnv() {
-        return globalEnv;
+    /**
+     * enter a frame for executing statements outside of a call (e.g. REPL input)
+     * @return the previous frame, to be passed to exitFrame
+     */
+    public Value[] enterFrame(int frameSize) {
+        Value[] previousFrame = frame;
+        frame = new Value[frameSize];
+        return previousFrame;
     }
 
-    public Environment getCurrentEnv() {
-        return currentEnv;
+    public void exitFrame(Value[] previousFrame) {
+        frame = previousFrame;
     }
 
     /**
      * execute a program
      */
     public void execute(Program program) {
-        // register all functions
-        for (FunctionDecl func : program.getFunctions()) {
-            functions.put(func.getName(), func);
+        registerFunctions(program);
+
+        // execute main function if it exists
+        if (main != null) {
+            Value[] mainFrame = frames.push(main.getFrameSize());
+            try {
+                executeFunction(main, mainFrame);
+            } finally {
+                frames.pop();
+            }
         }
+    }
 
-        // find and execute main function if it exists
-        if (functions.containsKey("main")) {
-            FunctionDecl main = functions.get("main");
-            executeFunction(main, new ArrayList<>());
+    /**
+     * register the main function of a program without running it
+     * (used when another engine executed the program); calls are bound
+     * to their declarations by the SemanticAnalyzer
+     */
+    public void registerFunctions(Program program) {
+        for (FunctionDecl func : program.getFunctions()) {
+            if (func.getName().equals("main")) {
+                main = func;
+            }
         }
     }
 
     /**
      * execute a function
+     * @param calleeFrame frame with the arguments bound (see bindArguments)
      */
-    public Value executeFunction(FunctionDecl func, List<Value> arguments) {
-        // create new environment for function
-        Environment funcEnv = new Environment(globalEnv);
-        Environment previousEnv = currentEnv;
-        currentEnv = funcEnv;
+    public Value executeFunction(FunctionDecl func, Value[] calleeFrame) {
+        CompiledCode compiled = compiledCode(func);
+        if (compiled != null) {
+            // parameter i has slot i, so the frame holds the arguments in order
+            return compiled.run(calleeFrame, null);
+        }
+
+        Value[] previousFrame = frame;
+        ObjectValue previousReceiver = receiver;
+        receiver = null;
+        FunctionDecl previousFunction = currentFunction;
+        MethodDecl previousMethod = currentMethod;
+        currentMethod = null;
+        int callerFrameSize = func.getFrameSize();
 
         try {
-            // bind parameters
-            for (int i = 0; i < func.getParameters().size(); i++) {
-                Parameter param = func.getParameters().get(i);
-                Value arg = arguments.get(i);
-
-                if (param.isReference()) {
-                    // parameter is a reference - create reference value
-                    currentEnv.define(param.getName(), new Value(arg));
-                } else {
-                    // parameter is not a reference - copy the value (with slicing)
-                    currentEnv.define(param.getName(), copyValueWithSlicing(arg, param.getType()));
+            while (true) {
+                frame = calleeFrame;
+                currentFunction = func;
+
+                // execute function body
+                Value result = null;
+                if (func.getBody() != null) {
+                    result = func.getBody().accept(this);
+                }
+                if (result != TAIL_CALL) {
+                    // if no return, return default value
+                    return result != null ? result : Value.defaultValue(func.getReturnType());
                 }
-            }
 
-            // execute function body
-            if (func.getBody() != null) {
-                func.getBody().accept(this);
+                // the tail callee runs in place of this call, its arguments are in the frame
+                func = tailCallee;
+                calleeFrame = frame;
+                compiled = compiledCode(func);
+                if (compiled != null) {
+                    return compiled.run(calleeFrame, null);
+                }
             }
-
-            // if no return, return default value
-            return Value.defaultValue(func.getReturnType());
-
-        } catch (ReturnException e) {
-            return e.getValue();
         } finally {
-            currentEnv = previousEnv;
+            // the caller gives back the frame by the size of the function it called
+            if (func.getFrameSize() > callerFrameSize) {
+                Arrays.fill(calleeFrame, callerFrameSize, func.getFrameSize(), null);
+            }
+            frame = previousFrame;
+            receiver = previousReceiver;
+            currentFunction = previousFunction;
+            currentMethod = previousMethod;
         }
     }
 
+    // use compiled code once the function got hot
+    private CompiledCode compiledCode(FunctionDecl func) {
+        return jit != null ? jit.countInvocation(func) : null;
+    }
+
     /**
      * execute a method
+     * @param calleeFrame frame with the arguments bound (see bindArguments)
      */
-    public Value executeMethod(MethodDecl method, ObjectValue obj, List<Value> arguments) {
-        // create new environment for method
-        Environment methodEnv = new Environment(globalEnv);
-        Environment previousEnv = currentEnv;
-        currentEnv = methodEnv;
-
-        // collect parameter names for shadowing check
-        java.util.Set<String> parameterNames = new java.util.HashSet<>();
-        for (Parameter param : method.getParameters()) {
-            parameterNames.add(param.getName());
-        }
+    public Value executeMethod(MethodDecl method, ObjectValue obj, Value[] calleeFrame) {
+        Value[] previousFrame = frame;
+        frame = calleeFrame;
+        ObjectValue previousReceiver = receiver;
+        receiver = obj;
+        FunctionDecl previousFunction = currentFunction;
+        MethodDecl previousMethod = currentMethod;
+        currentFunction = null;
+        currentMethod = method;
 
         try {
-            // make object fields accessible in method scope
-            for (Map.Entry<String, Value> field : obj.getFields().entrySet()) {
-                currentEnv.define(field.getKey(), field.getValue());
-            }
-
-            // bind parameters (overwrite fields if same name - parameter shadows field)
-            for (int i = 0; i < method.getParameters().size(); i++) {
-                Parameter param = method.getParameters().get(i);
-                Value arg = arguments.get(i);
-
-                if (param.isReference()) {
-                    // parameter is a reference - create reference value
-                    currentEnv.define(param.getName(), new Value(arg));
-                } else {
-                    // parameter is not a reference - copy the value (with slicing)
-                    currentEnv.define(param.getName(), copyValueWithSlicing(arg, param.getType()));
-                }
-            }
-
             // execute method body
+            Value result = null;
             if (method.getBody() != null) {
-                method.getBody().accept(this);
-            }
-
-            // copy back field values from environment (but not shadowed by parameters)
-            for (Map.Entry<String, Value> field : obj.getFields().entrySet()) {
-                if (!parameterNames.contains(field.getKey()) && currentEnv.has(field.getKey())) {
-                    Value updatedValue = currentEnv.get(field.getKey());
-                    obj.setField(field.getKey(), updatedValue);
-                }
+                result = method.getBody().accept(this);
             }
 
             // if no return, return default value
-            return Value.defaultValue(method.getReturnType());
-
-        } catch (ReturnException e) {
-            // copy back field values before returning (but not shadowed by parameters)
-            for (Map.Entry<String, Value> field : obj.getFields().entrySet()) {
-                if (!parameterNames.contains(field.getKey()) && currentEnv.has(field.getKey())) {
-                    Value updatedValue = currentEnv.get(field.getKey());
-                    obj.setField(field.getKey(), updatedValue);
-                }
-            }
-            return e.getValue();
+            return result != null ? result : Value.defaultValue(method.getReturnType());
         } finally {
-            currentEnv = previousEnv;
+            frame = previousFrame;
+            receiver = previousReceiver;
+            currentFunction = previousFunction;
+            currentMethod = previousMethod;
         }
     }
 
     /**
      * execute a constructor
      */
-    public void executeConstructor(ConstructorDecl constructor, ObjectValue obj, List<Value> arguments) {
-        // create new environment for constructor
-        Environment constructorEnv = new Environment(globalEnv);
-        Environment previousEnv = currentEnv;
-        currentEnv = constructorEnv;
-
-        // collect parameter names for shadowing check
-        java.util.Set<String> parameterNames = new java.util.HashSet<>();
-        for (Parameter param : constructor.getParameters()) {
-            parameterNames.add(param.getName());
-        }
+    public void executeConstructor(ConstructorDecl constructor, ObjectValue obj, Value[] calleeFrame) {
+        // constructor loops are not profiled
+        Value[] previousFrame = frame;
+        frame = calleeFrame;
+        ObjectValue previousReceiver = receiver;
+        receiver = obj;
+        FunctionDecl previousFunction = currentFunction;
+        MethodDecl previousMethod = currentMethod;
+        currentFunction = null;
+        currentMethod = null;
 
         try {
-            // make object fields accessible in constructor scope
-            for (Map.Entry<String, Value> field : obj.getFields().entrySet()) {
-                currentEnv.define(field.getKey(), field.getValue());
-            }
-
-            // bind parameters (overwrite fields if same name - parameter shadows field)
-            for (int i = 0; i < constructor.getParameters().size(); i++) {
-                Parameter param = constructor.getParameters().get(i);
-                Value arg = arguments.get(i);
-
-                if (param.isReference()) {
-                    // parameter is a reference - create reference value
-                    currentEnv.define(param.getName(), new Value(arg));
-                } else {
-                    // parameter is not a reference - copy the value (with slicing)
-                    currentEnv.define(param.getName(), copyValueWithSlicing(arg, param.getType()));
-                }
-            }
-
-            // execute constructor body
+            // execute constructor body (a return just ends it)
             if (constructor.getBody() != null) {
                 constructor.getBody().accept(this);
             }
+        } finally {
+            frame = previousFrame;
+            receiver = previousReceiver;
+            currentFunction = previousFunction;
+            currentMethod = previousMethod;
+        }
+    }
 
-            // copy back field values from environment (but not shadowed by parameters)
-            for (Map.Entry<String, Value> field : obj.getFields().entrySet()) {
-                if (!parameterNames.contains(field.getKey()) && currentEnv.has(field.getKey())) {
-                    Value updatedValue = currentEnv.get(field.getKey());
-                    obj.setField(field.getKey(), updatedValue);
-                }
-            }
+    // execute a parameterless constructor
+    private void executeConstructor(ConstructorDecl constructor, ObjectValue obj) {
+        Value[] calleeFrame = frames.push(constructor.getFrameSize());
+        try {
+            executeConstructor(constructor, obj, calleeFrame);
+        } finally {
+            frames.pop();
+        }
+    }
 
-        } catch (ReturnException e) {
-            // constructors shouldn't return values, but handle it anyway
-            for (Map.Entry<String, Value> field : obj.getFields().entrySet()) {
-                if (!parameterNames.contains(field.getKey()) && currentEnv.has(field.getKey())) {
-                    Value updatedValue = currentEnv.get(field.getKey());
-                    obj.setField(field.getKey(), updatedValue);
-                }
+    /**
+     * evaluate the arguments of a call right into the parameter slots of the callee's frame
+     * (in the caller's frame, before the call starts)
+     */
+    private void bindArguments(Value[] calleeFrame, List<Parameter> parameters, List<Expression> arguments) {
+        for (int i = 0; i < arguments.size(); i++) {
+            Parameter param = parameters.get(i);
+            Expression arg = arguments.get(i);
+
+            if (param.isReference()) {
+                // parameter is a reference - share the cell of the argument
+                calleeFrame[param.getSlot()] = getReferenceTarget(arg);
+            } else {
+                // parameter is not a reference - copy the value (with slicing)
+                calleeFrame[param.getSlot()] = support.copyValueWithSlicing(arg.accept(this), param.getType());
             }
-        } finally {
-            currentEnv = previousEnv;
         }
     }
 
@@ -252,43 +286,31 @@ public class Interpreter implements ASTVisitor<Value> {
         Value value;
 
         if (node.getInitializer() != null) {
-            value = node.getInitializer().accept(this);
-
             if (node.isReference()) {
-                // create reference to the value
-                currentEnv.define(node.getName(), new Value(value));
+                // the reference shares the cell of the value
+                frame[node.getSlot()] = getReferenceTarget(node.getInitializer());
             } else {
+                value = node.getInitializer().accept(this);
                 // copy the value (with slicing if assigning derived to base)
-                currentEnv.define(node.getName(), copyValueWithSlicing(value, node.getType()));
+                frame[node.getSlot()] = support.copyValueWithSlicing(value, node.getType());
             }
         } else {
             // no initializer - use default value or call default constructor for classes
             if (node.getType().getBaseType() == Type.BaseType.CLASS) {
                 // create object with default constructor
-                ClassSymbol classSymbol = classes.get(node.getType().getClassName());
-                if (classSymbol != null) {
-                    ObjectValue obj = new ObjectValue(classSymbol);
-                    initializeObjectFields(obj, classSymbol);
-
-                    // call default constructor if exists
-                    if (classSymbol.getBaseClass() != null) {
-                        callBaseConstructor(obj, classSymbol.getBaseClass());
-                    }
-                    for (ConstructorSymbol constructor : classSymbol.getConstructors()) {
-                        if (constructor.getParameters().isEmpty()) {
-                            executeConstructor(constructor.getDeclaration(), obj, new ArrayList<>());
-                            break;
-                        }
-                    }
-
-                    value = new Value(node.getType(), obj);
-                } else {
+                ClassSymbol classSymbol = node.getType().getClassSymbol();
+                if (classSymbol == null) {
                     value = Value.defaultValue(node.getType());
+                } else if (node.getRegionIndex() >= 0) {
+                    ObjectValue obj = frames.region().allocate(node.getRegionIndex(), classSymbol);
+                    value = new Value(node.getType(), constructDefault(classSymbol, obj));
+                } else {
+                    value = new Value(node.getType(), constructDefault(classSymbol));
                 }
             } else {
                 value = Value.defaultValue(node.getType());
             }
-            currentEnv.define(node.getName(), value);
+            frame[node.getSlot()] = value;
         }
 
         return null;
@@ -302,17 +324,12 @@ public class Interpreter implements ASTVisitor<Value> {
 
     @Override
     public Value visitBlockStmt(BlockStmt node) {
-        // create new environment for block
-        Environment blockEnv = new Environment(currentEnv);
-        Environment previousEnv = currentEnv;
-        currentEnv = blockEnv;
-
-        try {
-            for (Statement stmt : node.getStatements()) {
-                stmt.accept(this);
+        // block locals already have their own slots in the current frame
+        for (Statement stmt : node.getStatements()) {
+            Value result = stmt.accept(this);
+            if (result != null) {
+                return result; // return statement - skip the rest
             }
-        } finally {
-            currentEnv = previousEnv;
         }
 
         return null;
@@ -322,10 +339,10 @@ public class Interpreter implements ASTVisitor<Value> {
     public Value visitIfStmt(IfStmt node) {
         Value condValue = node.getCondition().accept(this);
 
-        if (convertToBool(condValue)) {
-            node.getThenStmt().accept(this);
+        if (RuntimeSupport.test(node.getConditionTest(), condValue)) {
+            return node.getThenStmt().accept(this);
         } else if (node.getElseStmt() != null) {
-            node.getElseStmt().accept(this);
+            return node.getElseStmt().accept(this);
         }
 
         return null;
@@ -333,14 +350,27 @@ public class Interpreter implements ASTVisitor<Value> {
 
     @Override
     public Value visitWhileStmt(WhileStmt node) {
+        CompiledCode compiled = jit != null ? jit.getCompiledCode(node) : null;
         while (true) {
+            // continue in compiled code once the loop got hot
+            if (compiled != null) {
+                return compiled.run(frame, receiver);
+            }
+
             Value condValue = node.getCondition().accept(this);
 
-            if (!convertToBool(condValue)) {
+            if (!RuntimeSupport.test(node.getConditionTest(), condValue)) {
                 break;
             }
 
-            node.getBody().accept(this);
+            Value result = node.getBody().accept(this);
+            if (result != null) {
+                return result;
+            }
+
+            if (jit != null) {
+                compiled = countBackEdge(node);
+            }
         }
 
         return null;
@@ -350,94 +380,133 @@ public class Interpreter implements ASTVisitor<Value> {
     public Value visitReturnStmt(ReturnStmt node) {
         Value value;
 
+        if (node.isTailCall()) {
+            // bind the arguments in a frame above this one, then let that frame replace this one
+            ConstructorCallExpr call = node.getTailCall();
+            FunctionDecl callee = call.getResolvedFunction().getDeclaration();
+            Value[] calleeFrame = frames.push(callee.getFrameSize());
+            try {
+                bindArguments(calleeFrame, callee.getParameters(), call.getArguments());
+            } catch (Throwable e) {
+                frames.pop();
+                throw e;
+            }
+            frame = frames.replace();
+            tailCallee = callee;
+            return TAIL_CALL;
+        }
+
         if (node.getValue() != null) {
             value = node.getValue().accept(this);
         } else {
-            value = Value.defaultValue(new Type(Type.BaseType.VOID));
+            value = Value.defaultValue(Type.VOID);
         }
 
-        throw new ReturnException(value);
+        return value;
     }
 
     @Override
     public Value visitExprStmt(ExprStmt node) {
-        return node.getExpression().accept(this);
+        node.getExpression().accept(this);
+        return null;
     }
 
     @Override
     public Value visitBinaryExpr(BinaryExpr node) {
-        BinaryExpr.Operator op = node.getOperator();
+        Operation op = node.getOperation();
 
         // short-circuit evaluation for && and ||
-        if (op == BinaryExpr.Operator.AND) {
+        if (op == Operation.BOOL_AND) {
             Value left = node.getLeft().accept(this);
             if (!left.getBoolValue()) {
-                return new Value(new Type(Type.BaseType.BOOL), false);
+                return Value.ofBool(false);
             }
             Value right = node.getRight().accept(this);
-            return new Value(new Type(Type.BaseType.BOOL), right.getBoolValue());
+            return Value.ofBool(right.getBoolValue());
         }
 
-        if (op == BinaryExpr.Operator.OR) {
+        if (op == Operation.BOOL_OR) {
             Value left = node.getLeft().accept(this);
             if (left.getBoolValue()) {
-                return new Value(new Type(Type.BaseType.BOOL), true);
+                return Value.ofBool(true);
             }
             Value right = node.getRight().accept(this);
-            return new Value(new Type(Type.BaseType.BOOL), right.getBoolValue());
+            return Value.ofBool(right.getBoolValue());
         }
 
-        // evaluate both sides
-        Value left = node.getLeft().accept(this);
-        Value right = node.getRight().accept(this);
+        // the left operand is read before the right one is evaluated: the right operand can
+        // write the cell the left value came from (a.x + a.setX(5)), and with copy-on-write
+        // that cell may belong to another copy of the object by then
+        Value leftValue = node.getLeft().accept(this);
 
+        // the operation is already chosen for the operand types (see OperatorLowering)
         switch (op) {
-            case PLUS:
-                return new Value(new Type(Type.BaseType.INT), left.getIntValue() + right.getIntValue());
-            case MINUS:
-                return new Value(new Type(Type.BaseType.INT), left.getIntValue() - right.getIntValue());
-            case MULT:
-                return new Value(new Type(Type.BaseType.INT), left.getIntValue() * right.getIntValue());
-            case DIV:
-                if (right.getIntValue() == 0) {
+            case STRING_EQ:
+            case STRING_NEQ: {
+                String left = leftValue.getStringValue();
+                boolean equal = left.equals(node.getRight().accept(this).getStringValue());
+                return Value.ofBool(op == Operation.STRING_EQ ? equal : !equal);
+            }
+            case OBJECT_EQ:
+            case OBJECT_NEQ: {
+                ObjectValue left = leftValue.getObjectValue();
+                boolean equal = left == node.getRight().accept(this).getObjectValue();
+                return Value.ofBool(op == Operation.OBJECT_EQ ? equal : !equal);
+            }
+            case VALUE_EQ:
+            case VALUE_NEQ: {
+                Value left = leftValue.copy();
+                boolean equal = RuntimeSupport.valuesEqual(left, node.getRight().accept(this));
+                return Value.ofBool(op == Operation.VALUE_EQ ? equal : !equal);
+            }
+            default:
+                break;
+        }
+
+        // int, bool and char values are all stored as int
+        int left = leftValue.getIntValue();
+        int right = node.getRight().accept(this).getIntValue();
+        switch (op) {
+            case INT_ADD:
+                return Value.ofInt(left + right);
+            case INT_SUB:
+                return Value.ofInt(left - right);
+            case INT_MUL:
+                return Value.ofInt(left * right);
+            case INT_DIV:
+                if (right == 0) {
                     throw new RuntimeError("division by zero");
                 }
-                return new Value(new Type(Type.BaseType.INT), left.getIntValue() / right.getIntValue());
-            case MOD:
-                if (right.getIntValue() == 0) {
+                return Value.ofInt(left / right);
+            case INT_MOD:
+                if (right == 0) {
                     throw new RuntimeError("modulo by zero");
                 }
-                return new Value(new Type(Type.BaseType.INT), left.getIntValue() % right.getIntValue());
-            case LT:
-                if (left.getType().getBaseType() == Type.BaseType.INT) {
-                    return new Value(new Type(Type.BaseType.BOOL), left.getIntValue() < right.getIntValue());
-                } else {
-                    return new Value(new Type(Type.BaseType.BOOL), left.getCharValue() < right.getCharValue());
-                }
-            case LEQ:
-                if (left.getType().getBaseType() == Type.BaseType.INT) {
-                    return new Value(new Type(Type.BaseType.BOOL), left.getIntValue() <= right.getIntValue());
-                } else {
-                    return new Value(new Type(Type.BaseType.BOOL), left.getCharValue() <= right.getCharValue());
-                }
-            case GT:
-                if (left.getType().getBaseType() == Type.BaseType.INT) {
-                    return new Value(new Type(Type.BaseType.BOOL), left.getIntValue() > right.getIntValue());
-                } else {
-                    return new Value(new Type(Type.BaseType.BOOL), left.getCharValue() > right.getCharValue());
-                }
-            case GEQ:
-                if (left.getType().getBaseType() == Type.BaseType.INT) {
-                    return new Value(new Type(Type.BaseType.BOOL), left.getIntValue() >= right.getIntValue());
-                } else {
-                    return new Value(new Type(Type.BaseType.BOOL), left.getCharValue() >= right.getCharValue());
-                }
-            case EQ:
-                return new Value(new Type(Type.BaseType.BOOL), valuesEqual(left, right));
-            case NEQ:
-                return new Value(new Type(Type.BaseType.BOOL), !valuesEqual(left, right));
+                return Value.ofInt(left % right);
+            case INT_LT:
+            case CHAR_LT:
+                return Value.ofBool(left < right);
+            case INT_LEQ:
+            case CHAR_LEQ:
+                return Value.ofBool(left <= right);
+            case INT_GT:
+            case CHAR_GT:
+                return Value.ofBool(left > right);
+            case INT_GEQ:
+            case CHAR_GEQ:
+                return Value.ofBool(left >= right);
+            case INT_EQ:
+            case CHAR_EQ:
+                return Value.ofBool(left == right);
+            case INT_NEQ:
+            case CHAR_NEQ:
+                return Value.ofBool(left != right);
+            case BOOL_EQ:
+                return Value.ofBool((left != 0) == (right != 0));
+            case BOOL_NEQ:
+                return Value.ofBool((left != 0) != (right != 0));
             default:
-                throw new RuntimeError("unknown binary operator: " + op);
+                throw new RuntimeError("unknown binary operation: " + op);
         }
     }
 
@@ -445,15 +514,15 @@ public class Interpreter implements ASTVisitor<Value> {
     public Value visitUnaryExpr(UnaryExpr node) {
         Value operand = node.getOperand().accept(this);
 
-        switch (node.getOperator()) {
-            case PLUS:
-                return new Value(new Type(Type.BaseType.INT), operand.getIntValue());
-            case MINUS:
-                return new Value(new Type(Type.BaseType.INT), -operand.getIntValue());
-            case NOT:
-                return new Value(new Type(Type.BaseType.BOOL), !operand.getBoolValue());
+        switch (node.getOperation()) {
+            case INT_PLUS:
+                return Value.ofInt(operand.getIntValue());
+            case INT_NEG:
+                return Value.ofInt(-operand.getIntValue());
+            case BOOL_NOT:
+                return Value.ofBool(!operand.getBoolValue());
             default:
-                throw new RuntimeError("unknown unary operator: " + node.getOperator());
+                throw new RuntimeError("unknown unary operation: " + node.getOperation());
         }
     }
 
@@ -470,7 +539,10 @@ public class Interpreter implements ASTVisitor<Value> {
 
     @Override
     public Value visitVarExpr(VarExpr node) {
-        return currentEnv.get(node.getName());
+        if (node.isReceiverField()) {
+            return receiver.getField(node.getFieldOffset());
+        }
+        return frame[node.getSlot()];
     }
 
     @Override
@@ -480,96 +552,49 @@ public class Interpreter implements ASTVisitor<Value> {
             return executeBuiltinFunction(node.getFunctionName(), node.getArguments());
         }
 
-        // get function
-        FunctionDecl func = functions.get(node.getFunctionName());
-        if (func == null) {
-            throw new RuntimeError("function '" + node.getFunctionName() + "' not found");
-        }
-
-        // evaluate arguments
-        List<Value> argValues = new ArrayList<>();
-        for (Expression arg : node.getArguments()) {
-            Value argValue = arg.accept(this);
-
-            // check if parameter is a reference
-            int index = argValues.size();
-            Parameter param = func.getParameters().get(index);
-
-            if (param.isReference()) {
-                // pass the value directly (don't copy) - it's already a reference or will be made one
-                argValues.add(argValue);
-            } else {
-                // copy the value
-                argValues.add(copyValue(argValue));
-            }
-        }
-
-        // execute function
-        return executeFunction(func, argValues);
+        // function bound by the semantic analysis
+        return callFunction(node.getResolvedFunction().getDeclaration(), node.getArguments());
     }
 
     @Override
     public Value visitMemberAccessExpr(MemberAccessExpr node) {
-        Value objValue = node.getObject().accept(this);
-        ObjectValue obj = objValue.getObjectValue();
-
-        if (node.isMethodCall()) {
-            // Use resolved method from semantic analysis (handles overloading)
-            MethodSymbol method = node.getResolvedMethod();
-
-            if (method == null) {
-                // Fallback to lookup if not resolved (shouldn't happen after semantic analysis)
-                Type staticType = node.getObject().getType();
-                ClassSymbol staticClass = classes.get(staticType.getClassName());
-                method = staticClass.lookupMethod(node.getMemberName());
-            }
-
-            if (method == null) {
-                throw new RuntimeError("method '" + node.getMemberName() + "' not found");
-            }
-
-            // Get the STATIC type from the expression (the declared type of the reference/variable)
-            Type staticType = node.getObject().getType();
-            ClassSymbol staticClass = classes.get(staticType.getClassName());
-
-            // Check if the method (or any ancestor's version) is virtual
-            boolean isVirtual = isMethodVirtual(staticClass, node.getMemberName());
-
-            // resolve virtual method (if the method is virtual, use dynamic dispatch)
-            if (isVirtual) {
-                // dynamic dispatch: find matching method in the actual runtime type
-                // We need to find a method with the same signature in the derived class
-                MethodSymbol dynamicMethod = findMatchingMethod(obj.getClassSymbol(), node.getMemberName(), method);
-                if (dynamicMethod != null) {
-                    method = dynamicMethod;
-                }
+        if (!node.isMethodCall()) {
+            // field access, a chain a.b.c along its offset path from the root
+            ObjectValue root = node.getPathRoot().accept(this).getObjectValue();
+            Value field = root.getField(node.getFieldPath());
+            if (field == null) {
+                throw new RuntimeError("field '" + node.getMemberName() + "' not found in class '" + node.getObject().getType().getClassName() + "'");
             }
+            return field;
+        }
 
-            // evaluate arguments
-            List<Value> argValues = new ArrayList<>();
-            for (Expression arg : node.getArguments()) {
-                Value argValue = arg.accept(this);
+        Value objValue = node.getObject().accept(this);
+        ObjectValue obj = objValue.getObjectValue();
 
-                // check if parameter is a reference
-                int index = argValues.size();
-                Parameter param = method.getParameters().get(index);
+        // Use resolved method from semantic analysis (handles overloading)
+        MethodSymbol method = node.getResolvedMethod();
+        if (method == null) {
+            throw new RuntimeError("method call '" + node.getMemberName() + "' not bound by the semantic analysis");
+        }
 
-                if (param.isReference()) {
-                    argValues.add(argValue);
-                } else {
-                    argValues.add(copyValueWithSlicing(argValue, param.getType()));
-                }
+        // dynamic dispatch: the inline cache of the call site knows the override for
+        // the receiver classes seen so far, others are looked up in their vtable
+        MethodDecl target = method.getDeclaration();
+        if (node.isVirtualCall()) {
+            InlineCache<MethodDecl> cache = inlineCaches.get(node);
+            if (cache == null) {
+                cache = new InlineCache<>(node.getVtableSlot(), MethodSymbol::getDeclaration);
+                inlineCaches.put(node, cache);
             }
+            target = cache.lookup(obj.getClassSymbol());
+        }
 
-            // execute method
-            return executeMethod(method.getDeclaration(), obj, argValues);
-        } else {
-            // field access
-            Value field = obj.getField(node.getMemberName());
-            if (field == null) {
-                throw new RuntimeError("field '" + node.getMemberName() + "' not found in class '" + obj.getClassSymbol().getName() + "'");
-            }
-            return field;
+        Value[] calleeFrame = frames.push(target.getFrameSize());
+        try {
+            bindArguments(calleeFrame, target.getParameters(), node.getArguments());
+            return executeMethod(target, obj, calleeFrame);
+        } finally {
+            frames.pop();
         }
     }
 
@@ -583,31 +608,11 @@ public class Interpreter implements ASTVisitor<Value> {
         // then check if this is a function call (not a constructor)
         // Use the resolved function from semantic analysis (handles overloading)
         if (node.isFunctionCall()) {
-            FunctionSymbol funcSymbol = node.getResolvedFunction();
-            FunctionDecl func = funcSymbol.getDeclaration();
-
-            // evaluate arguments
-            List<Value> argValues = new ArrayList<>();
-            for (Expression arg : node.getArguments()) {
-                Value argValue = arg.accept(this);
-
-                // check if parameter is a reference
-                int index = argValues.size();
-                Parameter param = func.getParameters().get(index);
-
-                if (param.isReference()) {
-                    argValues.add(argValue);
-                } else {
-                    argValues.add(copyValue(argValue));
-                }
-            }
-
-            // execute function
-            return executeFunction(func, argValues);
+            return callFunction(node.getResolvedFunction().getDeclaration(), node.getArguments());
         }
 
-        // otherwise, it's a constructor call
-        ClassSymbol classSymbol = classes.get(node.getClassName());
+        // otherwise, it's a constructor call (typed with the canonical class type)
+        ClassSymbol classSymbol = node.getType().getClassSymbol();
 
         if (classSymbol == null) {
             throw new RuntimeError("class '" + node.getClassName() + "' not found");
@@ -620,74 +625,46 @@ public class Interpreter implements ASTVisitor<Value> {
             ObjectValue sourceObj = sourceValue.getObjectValue();
 
             // Create new object by copying all fields
-            ObjectValue newObj = new ObjectValue(classSymbol);
-            for (String fieldName : sourceObj.getFields().keySet()) {
-                Value fieldValue = sourceObj.getField(fieldName);
-                newObj.setField(fieldName, copyValue(fieldValue));
+            ObjectValue newObj = support.copyObject(sourceObj, classSymbol);
+            if (node.isTemporary()) {
+                newObj.markTemporary();
             }
 
-            return new Value(new Type(node.getClassName()), newObj);
-        }
-
-        // create new object
-        ObjectValue obj = new ObjectValue(classSymbol);
-
-        // initialize fields with default values (including inherited fields)
-        initializeObjectFields(obj, classSymbol);
-
-        // call base class constructor (if any) - parameterless default constructor
-        if (classSymbol.getBaseClass() != null) {
-            callBaseConstructor(obj, classSymbol.getBaseClass());
+            return new Value(classSymbol.getType(), newObj);
         }
 
-        // find and call matching constructor
-        if (!node.getArguments().isEmpty() || !classSymbol.getConstructors().isEmpty()) {
-            ConstructorSymbol constructor = findMatchingConstructor(classSymbol, node.getArguments());
+        // create new object: default fields, base class constructors
+        ObjectValue obj = node.getRegionIndex() >= 0
+                ? newObject(classSymbol, frames.region().allocate(node.getRegionIndex(), classSymbol))
+                : newObject(classSymbol);
 
-            if (constructor != null) {
-                // evaluate arguments
-                List<Value> argValues = new ArrayList<>();
-                for (Expression arg : node.getArguments()) {
-                    Value argValue = arg.accept(this);
-
-                    int index = argValues.size();
-                    Parameter param = constructor.getParameters().get(index);
-
-                    if (param.isReference()) {
-                        argValues.add(argValue);
-                    } else {
-                        argValues.add(copyValue(argValue));
-                    }
-                }
-
-                // execute constructor
-                executeConstructor(constructor.getDeclaration(), obj, argValues);
+        // call the constructor bound by the semantic analysis
+        ConstructorSymbol constructor = node.getResolvedConstructor();
+        if (constructor != null) {
+            ConstructorDecl decl = constructor.getDeclaration();
+            Value[] calleeFrame = frames.push(decl.getFrameSize());
+            try {
+                bindArguments(calleeFrame, decl.getParameters(), node.getArguments());
+                executeConstructor(decl, obj, calleeFrame);
+            } finally {
+                frames.pop();
             }
         }
+        if (node.isTemporary()) {
+            obj.markTemporary();
+        }
 
-        return new Value(new Type(node.getClassName()), obj);
+        return new Value(classSymbol.getType(), obj);
     }
 
     @Override
     public Value visitLiteralExpr(LiteralExpr node) {
-        Type type;
-        switch (node.getLiteralType()) {
-            case INT:
-                type = new Type(Type.BaseType.INT);
-                break;
-            case BOOL:
-                type = new Type(Type.BaseType.BOOL);
-                break;
-            case CHAR:
-                type = new Type(Type.BaseType.CHAR);
-                break;
-            case STRING:
-                type = new Type(Type.BaseType.STRING);
-                break;
-            default:
-                throw new RuntimeError("unknown literal type");
+        Value constant = constants.get(node);
+        if (constant == null) {
+            constant = RuntimeSupport.literalValue(node);
+            constants.put(node, constant);
         }
-        return new Value(type, node.getValue());
+        return constant;
     }
 
     @Override
@@ -698,268 +675,99 @@ public class Interpreter implements ASTVisitor<Value> {
 
     // helper methods
 
+    private Value callFunction(FunctionDecl func, List<Expression> arguments) {
+        Value[] calleeFrame = frames.push(func.getFrameSize());
+        try {
+            bindArguments(calleeFrame, func.getParameters(), arguments);
+            return executeFunction(func, calleeFrame);
+        } finally {
+            frames.pop();
+        }
+    }
+
     private Value getLValue(Expression expr) {
         if (expr instanceof VarExpr) {
             VarExpr varExpr = (VarExpr) expr;
-            return currentEnv.get(varExpr.getName());
+            if (varExpr.isReceiverField()) {
+                return receiver.getFieldForWrite(varExpr.getFieldOffset());
+            }
+            return frame[varExpr.getSlot()];
         } else if (expr instanceof MemberAccessExpr) {
             MemberAccessExpr memberAccess = (MemberAccessExpr) expr;
-            Value objValue = memberAccess.getObject().accept(this);
-            ObjectValue obj = objValue.getObjectValue();
-            return obj.getField(memberAccess.getMemberName());
+            ObjectValue root = memberAccess.getPathRoot().accept(this).getObjectValue();
+            return root.getFieldForWrite(memberAccess.getFieldPath());
         } else {
             throw new RuntimeError("expression is not an lvalue");
         }
     }
 
-    private Value copyValue(Value value) {
-        return copyValueWithSlicing(value, value.getType());
-    }
-
     /**
-     * Copy a value, potentially slicing to a target type.
-     * For class types, if targetType is a base class of the value's type,
-     * the object is sliced to contain only the base class fields and use
-     * the base class's ClassSymbol (for correct virtual dispatch).
+     * the value a reference gets bound to; fields on the way are pinned in their
+     * objects, so writes through the reference never reach a copy
      */
-    private Value copyValueWithSlicing(Value value, Type targetType) {
-        if (value.getType().getBaseType() == Type.BaseType.CLASS) {
-            ObjectValue original = value.getObjectValue();
-            ClassSymbol targetClass;
-
-            // Determine the target class (for slicing)
-            if (targetType.getBaseType() == Type.BaseType.CLASS) {
-                targetClass = classes.get(targetType.getClassName());
-            } else {
-                targetClass = original.getClassSymbol();
-            }
-
-            if (targetClass == null) {
-                targetClass = original.getClassSymbol();
-            }
-
-            // Create a new object with the TARGET class (this enables correct slicing)
-            ObjectValue copy = new ObjectValue(targetClass);
-
-            // Only copy fields that belong to the target class (and its ancestors)
-            copyFieldsForClass(copy, original, targetClass);
-
-            return new Value(targetType, copy);
-        } else {
-            // primitive types - create new value with same data
-            return new Value(value.getType(), value.getData());
+    private Value getReferenceTarget(Expression expr) {
+        if (expr instanceof VarExpr && ((VarExpr) expr).isReceiverField()) {
+            return receiver.getFieldForReference(((VarExpr) expr).getFieldOffset());
+        } else if (expr instanceof MemberAccessExpr && !((MemberAccessExpr) expr).isMethodCall()) {
+            MemberAccessExpr memberAccess = (MemberAccessExpr) expr;
+            ObjectValue root = getReferenceTarget(memberAccess.getPathRoot()).getObjectValue();
+            return root.getFieldForReference(memberAccess.getFieldPath());
         }
+        return expr.accept(this);
     }
 
     /**
-     * Copy fields from original to copy, but only fields that belong to the given class
-     * (including inherited fields from base classes).
+     * new object following the instantiation plan of its class: copied field defaults,
+     * default-constructed object fields (lazy ones only get a template), base constructors run
      */
-    private void copyFieldsForClass(ObjectValue copy, ObjectValue original, ClassSymbol classSymbol) {
-        // First copy base class fields
-        if (classSymbol.getBaseClass() != null) {
-            copyFieldsForClass(copy, original, classSymbol.getBaseClass());
-        }
-
-        // Then copy this class's own fields
-        for (String fieldName : classSymbol.getFields().keySet()) {
-            Value fieldValue = original.getField(fieldName);
-            if (fieldValue != null) {
-                copy.setField(fieldName, copyValue(fieldValue));
-            }
-        }
-    }
-
-    private boolean convertToBool(Value value) {
-        switch (value.getType().getBaseType()) {
-            case BOOL:
-                return value.getBoolValue();
-            case INT:
-                return value.getIntValue() != 0;
-            case CHAR:
-                return value.getCharValue() != '\0';
-            case STRING:
-                return !value.getStringValue().isEmpty();
-            default:
-                throw new RuntimeError("cannot convert type to bool: " + value.getType());
-        }
+    private ObjectValue newObject(ClassSymbol classSymbol) {
+        return newObject(classSymbol, classSymbol.getInstantiationPlan().instantiate());
     }
 
-    private boolean valuesEqual(Value left, Value right) {
-        if (left.getType().getBaseType() != right.getType().getBaseType()) {
-            return false;
-        }
-
-        switch (left.getType().getBaseType()) {
-            case INT:
-                return left.getIntValue() == right.getIntValue();
-            case BOOL:
-                return left.getBoolValue() == right.getBoolValue();
-            case CHAR:
-                return left.getCharValue() == right.getCharValue();
-            case STRING:
-                return left.getStringValue().equals(right.getStringValue());
-            case CLASS:
-                // object equality: same instance
-                return left.getObjectValue() == right.getObjectValue();
-            default:
-                return false;
-        }
-    }
-
-    private void initializeObjectFields(ObjectValue obj, ClassSymbol classSymbol) {
-        // initialize base class fields first
-        if (classSymbol.getBaseClass() != null) {
-            initializeObjectFields(obj, classSymbol.getBaseClass());
-        }
-
-        // initialize this class's fields
-        for (VarSymbol field : classSymbol.getFields().values()) {
-            Value fieldValue;
-            if (field.getType().getBaseType() == Type.BaseType.CLASS) {
-                // For class-typed fields, create a new object and call its default constructor
-                ClassSymbol fieldClassSymbol = classes.get(field.getType().getClassName());
-                if (fieldClassSymbol != null) {
-                    ObjectValue fieldObj = new ObjectValue(fieldClassSymbol);
-                    initializeObjectFields(fieldObj, fieldClassSymbol);
-
-                    // call base constructors if any
-                    if (fieldClassSymbol.getBaseClass() != null) {
-                        callBaseConstructor(fieldObj, fieldClassSymbol.getBaseClass());
-                    }
-
-                    // call default constructor if exists
-                    for (ConstructorSymbol constructor : fieldClassSymbol.getConstructors()) {
-                        if (constructor.getParameters().isEmpty()) {
-                            executeConstructor(constructor.getDeclaration(), fieldObj, new ArrayList<>());
-                            break;
-                        }
-                    }
-
-                    fieldValue = new Value(field.getType(), fieldObj);
-                } else {
-                    fieldValue = Value.defaultValue(field.getType());
-                }
-            } else {
-                fieldValue = Value.defaultValue(field.getType());
+    // set up an instantiated object (or one from a Region)
+    private ObjectValue newObject(ClassSymbol classSymbol, ObjectValue obj) {
+        InstantiationPlan plan = classSymbol.getInstantiationPlan();
+        for (int i = 0; i < plan.getObjectFieldCount(); i++) {
+            ClassSymbol fieldClass = plan.getObjectFieldClass(i);
+            if (!plan.isLazyObjectField(i)) {
+                plan.setObjectField(obj, i, constructDefault(fieldClass));
+            } else if (fieldClass.getInstantiationPlan().getTemplate() == null) {
+                fieldClass.getInstantiationPlan().setTemplate(constructDefault(fieldClass));
             }
-            obj.setField(field.getName(), fieldValue);
-        }
-    }
-
-    private void callBaseConstructor(ObjectValue obj, ClassSymbol baseClass) {
-        // recursively call base constructors
-        if (baseClass.getBaseClass() != null) {
-            callBaseConstructor(obj, baseClass.getBaseClass());
         }
-
-        // call parameterless constructor of this base class
-        for (ConstructorSymbol constructor : baseClass.getConstructors()) {
-            if (constructor.getParameters().isEmpty()) {
-                executeConstructor(constructor.getDeclaration(), obj, new ArrayList<>());
-                return;
-            }
+        for (ConstructorSymbol constructor : plan.getBaseConstructors()) {
+            executeConstructor(constructor.getDeclaration(), obj);
         }
-        // if no parameterless constructor, that's ok (default initialization)
-    }
-
-    private ConstructorSymbol findMatchingConstructor(ClassSymbol classSymbol, List<Expression> arguments) {
-        for (ConstructorSymbol constructor : classSymbol.getConstructors()) {
-            if (constructor.getParameters().size() == arguments.size()) {
-                // check if types match
-                boolean match = true;
-                for (int i = 0; i < arguments.size(); i++) {
-                    Type argType = arguments.get(i).getType();
-                    Type paramType = constructor.getParameters().get(i).getType();
-
-                    if (argType == null || !argType.equals(paramType)) {
-                        match = false;
-                        break;
-                    }
-                }
-
-                if (match) {
-                    return constructor;
-                }
-            }
-        }
-
-        // if no constructor found and no arguments, use default constructor (or none)
-        if (arguments.isEmpty()) {
-            for (ConstructorSymbol constructor : classSymbol.getConstructors()) {
-                if (constructor.getParameters().isEmpty()) {
-                    return constructor;
-                }
-            }
-        }
-
-        return null;
+        return obj;
     }
 
     /**
-     * Check if a method is virtual, looking up the inheritance chain.
-     * A method is virtual if it or any of its ancestors declared it as virtual.
+     * new object with its default constructor run (if it has one)
      */
-    private boolean isMethodVirtual(ClassSymbol classSymbol, String methodName) {
-        ClassSymbol current = classSymbol;
-        while (current != null) {
-            List<MethodSymbol> overloads = current.getMethods().get(methodName);
-            if (overloads != null) {
-                for (MethodSymbol method : overloads) {
-                    if (method.isVirtual()) {
-                        return true;
-                    }
-                }
-            }
-            current = current.getBaseClass();
+    private ObjectValue constructDefault(ClassSymbol classSymbol) {
+        return constructDefault(classSymbol, classSymbol.getInstantiationPlan().instantiate());
+    }
+
+    private ObjectValue constructDefault(ClassSymbol classSymbol, ObjectValue obj) {
+        newObject(classSymbol, obj);
+        ConstructorSymbol constructor = classSymbol.getInstantiationPlan().getDefaultConstructor();
+        if (constructor != null) {
+            executeConstructor(constructor.getDeclaration(), obj);
         }
-        return false;
+        return obj;
     }
 
-    /**
-     * Find a method with matching signature in the given class (for dynamic dispatch).
-     */
-    private MethodSymbol findMatchingMethod(ClassSymbol classSymbol, String methodName, MethodSymbol original) {
-        List<MethodSymbol> overloads = classSymbol.lookupMethodOverloads(methodName);
-        for (MethodSymbol method : overloads) {
-            if (method.getParameters().size() == original.getParameters().size()) {
-                boolean match = true;
-                for (int i = 0; i < method.getParameters().size(); i++) {
-                    Type t1 = method.getParameters().get(i).getType();
-                    Type t2 = original.getParameters().get(i).getType();
-                    if (!t1.equals(t2)) {
-                        match = false;
-                        break;
-                    }
-                }
-                if (match) {
-                    return method;
-                }
-            }
+    private CompiledCode countBackEdge(WhileStmt loop) {
+        if (currentFunction != null) {
+            return jit.countBackEdge(currentFunction, loop);
+        } else if (currentMethod != null) {
+            return jit.countBackEdge(currentMethod, loop);
         }
         return null;
     }
 
     private Value executeBuiltinFunction(String name, List<Expression> arguments) {
         Value arg = arguments.get(0).accept(this);
-
-        switch (name) {
-            case "print_bool":
-                System.out.println(arg.getBoolValue());
-                break;
-            case "print_int":
-                System.out.println(arg.getIntValue());
-                break;
-            case "print_char":
-                System.out.println(arg.getCharValue());
-                break;
-            case "print_string":
-                System.out.println(arg.getStringValue());
-                break;
-            default:
-                throw new RuntimeError("unknown built-in function: " + name);
-        }
-
-        return Value.defaultValue(new Type(Type.BaseType.VOID));
+        return RuntimeSupport.executeBuiltin(name, arg);
     }
 }
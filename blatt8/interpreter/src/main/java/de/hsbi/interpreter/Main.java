@@ -1,17 +1,29 @@
 package de.hsbi.interpreter;
 
+import de.hsbi.interpreter.aot.AotCompiler;
 import de.hsbi.interpreter.ast.*;
+import de.hsbi.interpreter.closure.ClosureCompiler;
+import de.hsbi.interpreter.jit.Jit;
 import de.hsbi.interpreter.parser.*;
 import de.hsbi.interpreter.runtime.RuntimeError;
+import de.hsbi.interpreter.semantic.ConstructionAnalyzer;
+import de.hsbi.interpreter.semantic.EscapeAnalyzer;
+import de.hsbi.interpreter.semantic.OperatorLowering;
+import de.hsbi.interpreter.semantic.RegionAnalyzer;
 import de.hsbi.interpreter.semantic.SemanticAnalyzer;
+import de.hsbi.interpreter.symbols.ClassSymbol;
 import de.hsbi.interpreter.symbols.SymbolTable;
 import de.hsbi.interpreter.symbols.SymbolTableBuilder;
+import de.hsbi.interpreter.vm.BytecodeCompiler;
+import de.hsbi.interpreter.vm.CompiledProgram;
+import de.hsbi.interpreter.vm.VirtualMachine;
 import org.antlr.v4.runtime.*;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.List;
 
 /**
  * main entry point for the C++ interpreter
@@ -20,15 +32,68 @@ public class Main {
     private static SymbolTable symbolTable;
     private static Interpreter interpreter;
 
+    // execution engine for files: "tree" (tree-walking interpreter), "vm" (bytecode VM)
+    // or "closure" (closure compiler). only the VM has a call stack of its own, the
+    // others recurse on the Java stack and overflow on deep non-tail recursion
+    private static String engine = "tree";
+
+    // JIT for the tree-walking interpreter (on by default)
+    private static boolean jitEnabled = true;
+    private static boolean jitLog = false;
+
+    // --lazy-fields: construct side-effect free object fields on their first access
+    private static boolean lazyFields = false;
+
+    // --regions: reuse the objects of locals that never leave their call
+    private static boolean regions = false;
+
+    // --thin-objects: new objects read the default values of their fields until they write them
+    private static boolean thinObjects = false;
+
+    // --compile-to: write the program as runnable jar instead of running it
+    private static String compileTo = null;
+
     public static void main(String[] args) {
         System.out.println("C++ Interpreter");
         System.out.println("===============");
         System.out.println();
 
+        // options come before the file name
+        String filename = null;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--compile-to") && i + 1 < args.length) {
+                compileTo = args[++i];
+            } else if (arg.startsWith("--engine=")) {
+                engine = arg.substring("--engine=".length());
+            } else if (arg.equals("--no-jit")) {
+                jitEnabled = false;
+            } else if (arg.equals("--jit-log")) {
+                jitLog = true;
+            } else if (arg.equals("--lazy-fields")) {
+                lazyFields = true;
+            } else if (arg.equals("--regions")) {
+                regions = true;
+            } else if (arg.equals("--thin-objects")) {
+                thinObjects = true;
+            } else {
+                filename = arg;
+            }
+        }
+
+        if (!engine.equals("tree") && !engine.equals("vm") && !engine.equals("closure")) {
+            System.err.println("Unknown engine: " + engine + " (expected tree, vm or closure)");
+            System.exit(1);
+        }
+
+        if (compileTo != null && filename == null) {
+            System.err.println("--compile-to needs a program file");
+            System.exit(1);
+        }
+
         try {
-            if (args.length > 0) {
+            if (filename != null) {
                 // load file
-                String filename = args[0];
                 System.out.println("Loading file: " + filename);
                 System.out.println();
 
@@ -65,9 +130,38 @@ public class Main {
                     System.exit(1);
                 }
 
+                new OperatorLowering().lower(program);
+                new EscapeAnalyzer().analyze(program);
+                if (regions) {
+                    new RegionAnalyzer().analyze(program);
+                }
+                if (lazyFields) {
+                    new ConstructionAnalyzer(symbolTable).analyze();
+                }
+                if (thinObjects) {
+                    for (ClassSymbol classSymbol : symbolTable.getClasses().values()) {
+                        classSymbol.setThinObjects(true);
+                    }
+                }
+
+                if (compileTo != null) {
+                    AotCompiler aotCompiler = new AotCompiler(symbolTable);
+                    List<String> aotErrors = aotCompiler.check();
+                    if (!aotErrors.isEmpty()) {
+                        System.err.println("Cannot compile to " + compileTo + ":");
+                        for (String error : aotErrors) {
+                            System.err.println("  " + error);
+                        }
+                        System.exit(1);
+                    }
+                    aotCompiler.compile(program).writeJar(compileTo);
+                    System.out.println("Compiled to " + compileTo + " (run with: java -jar " + compileTo + ")");
+                    return;
+                }
+
                 // interpret
-                interpreter = new Interpreter(symbolTable);
-                interpreter.execute(program);
+                interpreter = createInterpreter();
+                runProgram(program);
 
                 System.out.println();
                 System.out.println("File execution completed.");
@@ -75,7 +169,7 @@ public class Main {
             } else {
                 // no file - start with empty environment
                 symbolTable = new SymbolTable();
-                interpreter = new Interpreter(symbolTable);
+                interpreter = createInterpreter();
             }
 
             // start REPL
@@ -91,6 +185,33 @@ public class Main {
         }
     }
 
+    private static Interpreter createInterpreter() {
+        Interpreter newInterpreter = new Interpreter(symbolTable);
+        if (jitEnabled) {
+            newInterpreter.setJit(new Jit(jitLog));
+        }
+        return newInterpreter;
+    }
+
+    /**
+     * run a loaded program with the selected engine
+     * (the REPL always uses the tree-walking interpreter)
+     */
+    private static void runProgram(Program program) {
+        if (engine.equals("vm")) {
+            CompiledProgram compiled = new BytecodeCompiler(symbolTable).compile(program);
+            new VirtualMachine(compiled).run();
+
+            // make the functions available to the REPL
+            interpreter.registerFunctions(program);
+        } else if (engine.equals("closure")) {
+            new ClosureCompiler(symbolTable).compile(program).run();
+            interpreter.registerFunctions(program);
+        } else {
+            interpreter.execute(program);
+        }
+    }
+
     private static String readFile(String filename) throws IOException {
         StringBuilder content = new StringBuilder();
         try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
@@ -377,6 +498,7 @@ public class Main {
                 }
                 return;
             }
+            new OperatorLowering().lower(program);
 
             if (isDefinition) {
                 // register functions/classes from the definition
@@ -396,19 +518,24 @@ public class Main {
                 boolean isExprStmt = (block.getStatements().size() == 1 &&
                                       block.getStatements().get(0) instanceof ExprStmt);
 
-                // execute statements
-                for (Statement stmt : block.getStatements()) {
-                    // auto-print for expression statements (evaluate before executing the statement)
-                    if (isExprStmt && stmt instanceof ExprStmt) {
-                        ExprStmt exprStmt = (ExprStmt) stmt;
-                        de.hsbi.interpreter.runtime.Value value = exprStmt.getExpression().accept(interpreter);
-
-                        if (value != null && value.getType().getBaseType() != Type.BaseType.VOID) {
-                            printValue(value);
+                // execute statements in a frame sized for the dummy function
+                de.hsbi.interpreter.runtime.Value[] previousFrame = interpreter.enterFrame(dummyFunc.getFrameSize());
+                try {
+                    for (Statement stmt : block.getStatements()) {
+                        // auto-print for expression statements (evaluate before executing the statement)
+                        if (isExprStmt && stmt instanceof ExprStmt) {
+                            ExprStmt exprStmt = (ExprStmt) stmt;
+                            de.hsbi.interpreter.runtime.Value value = exprStmt.getExpression().accept(interpreter);
+
+                            if (value != null && value.getType().getBaseType() != Type.BaseType.VOID) {
+                                printValue(value);
+                            }
+                        } else if (stmt.accept(interpreter) != null) {
+                            break; // return statement
                         }
-                    } else {
-                        stmt.accept(interpreter);
                     }
+                } finally {
+                    interpreter.exitFrame(previousFrame);
                 }
             }
 
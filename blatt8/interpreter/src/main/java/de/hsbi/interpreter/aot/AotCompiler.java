@@ -0,0 +1,1133 @@
+package de.hsbi.interpreter.aot;
+
+import de.hsbi.interpreter.ast.*;
+import de.hsbi.interpreter.jit.ClassFileWriter;
+import de.hsbi.interpreter.jit.CodeBuilder;
+import de.hsbi.interpreter.jit.CodeBuilder.Label;
+import de.hsbi.interpreter.runtime.RuntimeError;
+import de.hsbi.interpreter.symbols.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * compiles an analyzed program ahead of time into JVM classes
+ *
+ * every C++ class becomes a JVM class (package "cpp") with one field per C++
+ * field. methods and constructors become static methods that take the object
+ * as first argument; for virtual methods every class also gets an instance
+ * method that forwards to the right implementation, so the JVM does the
+ * dynamic dispatch. functions are static methods of cpp/$Main, which also
+ * holds the entry point of the jar
+ *
+ * variables that are bound to a reference live in IntRef/ObjectRef cells,
+ * all other variables are plain JVM locals. objects behave like in the
+ * interpreter: assignment shares the object, initialization and by-value
+ * parameters copy it (sliced to the declared class)
+ *
+ * visit methods leave the value of an expression on the operand stack
+ */
+public class AotCompiler implements ASTVisitor<Void> {
+    public static final String PACKAGE = "cpp/";
+    public static final String MAIN_CLASS = PACKAGE + "$Main";
+
+    private static final String OBJECT = "java/lang/Object";
+    private static final String STRING = "java/lang/String";
+    private static final String RUNTIME = "de/hsbi/interpreter/aot/AotRuntime";
+    private static final String INT_REF = "de/hsbi/interpreter/aot/IntRef";
+    private static final String OBJECT_REF = "de/hsbi/interpreter/aot/ObjectRef";
+
+    // generated helper methods of each class ('$' cannot clash with C++ names)
+    private static final String INIT_FIELDS = "$fields";       // default values, base class fields first
+    private static final String CONSTRUCT = "$construct";      // default constructors, root class first
+    private static final String NEW = "$new";                  // fields initialized, base constructors run
+    private static final String DEFAULT = "$default";          // default constructed object
+    private static final String COPY = "$copy";                // copy sliced to the class
+    private static final String CONSTRUCTOR = "$init";
+
+    private Map<String, ClassSymbol> classes;
+    private ReferenceScanner scanner;
+
+    // state of the body being compiled
+    private CodeBuilder code;
+    private ClassSymbol currentClass; // null in functions
+    private int localBase;            // 1 in methods and constructors (the object is local 0)
+    private Local[] locals;           // slot -> visible variable
+    private Set<Object> boundVariables;
+    private Type returnType;
+
+    /**
+     * how a variable is stored in the generated code
+     */
+    private static class Local {
+        enum Kind {
+            VALUE, // value in a JVM local
+            CELL,  // value in a cell (the variable is bound to a reference)
+            REF    // reference variable: the cell of the referenced variable
+        }
+
+        final Kind kind;
+        final Type type;
+
+        Local(Kind kind, Type type) {
+            this.kind = kind;
+            this.type = type;
+        }
+    }
+
+    public AotCompiler(SymbolTable symbolTable) {
+        this.classes = symbolTable.getClasses();
+        this.scanner = new ReferenceScanner(classes);
+    }
+
+    /**
+     * what the generated classes cannot represent (empty if the program can be compiled)
+     *
+     * a field declared again in a derived class is one JVM field of the type of its first
+     * declaration, so a redeclaration with another JVM type would not pass the verifier
+     */
+    public List<String> check() {
+        List<String> errors = new ArrayList<>();
+        for (ClassSymbol classSymbol : classes.values()) {
+            for (VarSymbol field : classSymbol.getFields().values()) {
+                Type type = fieldType(classSymbol, field.getName());
+                if (!descriptor(type).equals(descriptor(field.getType()))) {
+                    errors.add("field '" + field.getName() + "' of class '" + classSymbol.getName()
+                            + "' redeclares the field of class '" + fieldOwner(classSymbol, field.getName()).getName()
+                            + "' with type " + field.getType() + " instead of " + type);
+                }
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * compile all classes and functions (the program must pass check)
+     */
+    public AotProgram compile(Program program) {
+        Map<String, byte[]> output = new LinkedHashMap<>();
+        for (ClassSymbol classSymbol : classes.values()) {
+            output.put(internalName(classSymbol), compileClass(classSymbol));
+        }
+
+        ClassFileWriter mainClass = new ClassFileWriter(MAIN_CLASS, OBJECT, "java/lang/Runnable");
+        mainClass.addDefaultConstructor(OBJECT);
+
+        // main is the last function named "main" (same as the interpreter)
+        FunctionDecl main = null;
+        for (FunctionDecl func : program.getFunctions()) {
+            CodeBuilder body = mainClass.newCode();
+            compileBody(body, null, func.getParameters(), func.getBody(), func.getFrameSize(), func.getReturnType());
+            mainClass.addMethod(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC,
+                    mangle(func.getName(), func.getParameters()),
+                    methodDescriptor(null, func.getParameters(), func.getReturnType()), body);
+            if (func.getName().equals("main")) {
+                main = func;
+            }
+        }
+        addEntryPoint(mainClass, main);
+        output.put(MAIN_CLASS, mainClass.toByteArray());
+
+        return new AotProgram(output, MAIN_CLASS);
+    }
+
+    /**
+     * run() calls the C++ main function, main(String[]) runs it through AotRuntime.execute
+     */
+    private void addEntryPoint(ClassFileWriter mainClass, FunctionDecl main) {
+        CodeBuilder run = mainClass.newCode();
+        run.setMaxLocals(1);
+        if (main != null) {
+            // the interpreter calls main without arguments, parameters get default values
+            code = run;
+            for (Parameter param : main.getParameters()) {
+                pushDefault(param.getType());
+                if (param.isReference()) {
+                    box(param.getType());
+                }
+            }
+            run.invokestatic(MAIN_CLASS, mangle(main.getName(), main.getParameters()),
+                    methodDescriptor(null, main.getParameters(), main.getReturnType()));
+            if (!main.getReturnType().isVoid()) {
+                run.op(CodeBuilder.POP);
+            }
+        }
+        run.op(CodeBuilder.RETURN);
+        mainClass.addMethod(ClassFileWriter.ACC_PUBLIC, "run", "()V", run);
+
+        CodeBuilder entry = mainClass.newCode();
+        entry.setMaxLocals(1);
+        entry.typeOp(CodeBuilder.NEW, MAIN_CLASS);
+        entry.op(CodeBuilder.DUP);
+        entry.invokespecial(MAIN_CLASS, "<init>", "()V");
+        entry.invokestatic(RUNTIME, "execute", "(Ljava/lang/Runnable;)V");
+        entry.op(CodeBuilder.RETURN);
+        mainClass.addMethod(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC, "main", "([Ljava/lang/String;)V", entry);
+    }
+
+    // classes
+
+    private byte[] compileClass(ClassSymbol classSymbol) {
+        String name = internalName(classSymbol);
+        ClassSymbol baseClass = classSymbol.getBaseClass();
+        String superName = baseClass != null ? internalName(baseClass) : OBJECT;
+
+        ClassFileWriter classFile = new ClassFileWriter(name, superName);
+        classFile.setAccess(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_SUPER);
+        classFile.addDefaultConstructor(superName);
+
+        // a field declared again in a derived class is the same field (like in ObjectValue)
+        for (VarSymbol field : classSymbol.getFields().values()) {
+            if (fieldOwner(classSymbol, field.getName()) == classSymbol) {
+                classFile.addField(ClassFileWriter.ACC_PUBLIC, field.getName(), descriptor(field.getType()));
+            }
+        }
+
+        addObjectHelpers(classFile, classSymbol);
+
+        for (List<MethodSymbol> overloads : classSymbol.getMethods().values()) {
+            for (MethodSymbol method : overloads) {
+                MethodDecl decl = method.getDeclaration();
+                CodeBuilder body = classFile.newCode();
+                compileBody(body, classSymbol, decl.getParameters(), decl.getBody(), decl.getFrameSize(),
+                        decl.getReturnType());
+                classFile.addMethod(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC,
+                        mangle(decl.getName(), decl.getParameters()),
+                        methodDescriptor(classSymbol, decl.getParameters(), decl.getReturnType()), body);
+            }
+        }
+
+        Type voidType = Type.VOID;
+        for (ConstructorSymbol constructor : classSymbol.getConstructors()) {
+            ConstructorDecl decl = constructor.getDeclaration();
+            CodeBuilder body = classFile.newCode();
+            compileBody(body, classSymbol, decl.getParameters(), decl.getBody(), decl.getFrameSize(), voidType);
+            classFile.addMethod(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC,
+                    mangle(CONSTRUCTOR, decl.getParameters()),
+                    methodDescriptor(classSymbol, decl.getParameters(), voidType), body);
+        }
+
+        addVirtualMethods(classFile, classSymbol);
+        return classFile.toByteArray();
+    }
+
+    /**
+     * object creation and copying (same order as the interpreter)
+     */
+    private void addObjectHelpers(ClassFileWriter classFile, ClassSymbol classSymbol) {
+        String name = internalName(classSymbol);
+        String objectDescriptor = "L" + name + ";";
+        ClassSymbol baseClass = classSymbol.getBaseClass();
+        ConstructorSymbol defaultConstructor = classSymbol.getDefaultConstructor();
+        int access = ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC;
+
+        // $fields(obj): base class fields first, class fields are default constructed
+        CodeBuilder fields = classFile.newCode();
+        fields.setMaxLocals(1);
+        code = fields;
+        if (baseClass != null) {
+            fields.aload(0);
+            fields.invokestatic(internalName(baseClass), INIT_FIELDS, "(L" + internalName(baseClass) + ";)V");
+        }
+        for (VarSymbol field : classSymbol.getFields().values()) {
+            fields.aload(0);
+            pushDefault(field.getType());
+            putField(classSymbol, field.getName());
+        }
+        fields.op(CodeBuilder.RETURN);
+        classFile.addMethod(access, INIT_FIELDS, "(" + objectDescriptor + ")V", fields);
+
+        // $construct(obj): parameterless constructors, oldest ancestor first
+        CodeBuilder construct = classFile.newCode();
+        construct.setMaxLocals(1);
+        if (baseClass != null) {
+            construct.aload(0);
+            construct.invokestatic(internalName(baseClass), CONSTRUCT, "(L" + internalName(baseClass) + ";)V");
+        }
+        if (defaultConstructor != null) {
+            construct.aload(0);
+            construct.invokestatic(name, mangle(CONSTRUCTOR, defaultConstructor.getParameters()), "(" + objectDescriptor + ")V");
+        }
+        construct.op(CodeBuilder.RETURN);
+        classFile.addMethod(access, CONSTRUCT, "(" + objectDescriptor + ")V", construct);
+
+        // $new(): fields initialized and base constructors run
+        CodeBuilder create = classFile.newCode();
+        create.typeOp(CodeBuilder.NEW, name);
+        create.op(CodeBuilder.DUP);
+        create.invokespecial(name, "<init>", "()V");
+        create.op(CodeBuilder.DUP);
+        create.invokestatic(name, INIT_FIELDS, "(" + objectDescriptor + ")V");
+        if (baseClass != null) {
+            create.op(CodeBuilder.DUP);
+            create.invokestatic(internalName(baseClass), CONSTRUCT, "(L" + internalName(baseClass) + ";)V");
+        }
+        create.op(CodeBuilder.ARETURN);
+        classFile.addMethod(access, NEW, "()" + objectDescriptor, create);
+
+        // $default(): $new() plus the parameterless constructor (if there is one)
+        CodeBuilder defaultCreate = classFile.newCode();
+        defaultCreate.invokestatic(name, NEW, "()" + objectDescriptor);
+        if (defaultConstructor != null) {
+            defaultCreate.op(CodeBuilder.DUP);
+            defaultCreate.invokestatic(name, mangle(CONSTRUCTOR, defaultConstructor.getParameters()), "(" + objectDescriptor + ")V");
+        }
+        defaultCreate.op(CodeBuilder.ARETURN);
+        classFile.addMethod(access, DEFAULT, "()" + objectDescriptor, defaultCreate);
+
+        // $copy(obj): new object of this class with copies of the fields this class knows
+        CodeBuilder copy = classFile.newCode();
+        code = copy;
+        copy.typeOp(CodeBuilder.NEW, name);
+        copy.op(CodeBuilder.DUP);
+        copy.invokespecial(name, "<init>", "()V");
+        copy.astore(1);
+        Set<String> copied = new HashSet<>();
+        for (ClassSymbol current = classSymbol; current != null; current = current.getBaseClass()) {
+            for (VarSymbol field : current.getFields().values()) {
+                if (copied.add(field.getName())) {
+                    copy.aload(1);
+                    copy.aload(0);
+                    getField(classSymbol, field.getName());
+                    copyIfObject(fieldType(classSymbol, field.getName()));
+                    putField(classSymbol, field.getName());
+                }
+            }
+        }
+        copy.aload(1);
+        copy.op(CodeBuilder.ARETURN);
+        classFile.addMethod(access, COPY, "(" + objectDescriptor + ")" + objectDescriptor, copy);
+    }
+
+    /**
+     * instance methods for the vtable slots of this class; each forwards to the
+     * implementation the slot holds (the closest class with a method of the same
+     * signature), as the other engines dispatch through the slot
+     */
+    private void addVirtualMethods(ClassFileWriter classFile, ClassSymbol classSymbol) {
+        for (MethodSymbol method : classSymbol.getVtable()) {
+            MethodDecl decl = method.getDeclaration();
+            String mangled = mangle(method.getName(), decl.getParameters());
+
+            CodeBuilder forward = classFile.newCode();
+            forward.aload(0);
+            List<Parameter> params = decl.getParameters();
+            for (int i = 0; i < params.size(); i++) {
+                if (params.get(i).isReference() || !isIntLike(params.get(i).getType())) {
+                    forward.aload(i + 1);
+                } else {
+                    forward.iload(i + 1);
+                }
+            }
+            ClassSymbol owner = method.getOwningClass();
+            forward.invokestatic(internalName(owner), mangled, methodDescriptor(owner, params, decl.getReturnType()));
+            forward.op(returnOpcode(decl.getReturnType()));
+            classFile.addMethod(ClassFileWriter.ACC_PUBLIC, mangled,
+                    methodDescriptor(null, params, decl.getReturnType()), forward);
+        }
+    }
+
+    // bodies
+
+    private void compileBody(CodeBuilder body, ClassSymbol classSymbol, List<Parameter> parameters,
+                             BlockStmt block, int frameSize, Type returnType) {
+        this.code = body;
+        this.currentClass = classSymbol;
+        this.localBase = classSymbol != null ? 1 : 0;
+        this.locals = new Local[frameSize];
+        this.boundVariables = scanner.scan(parameters, block, frameSize);
+        this.returnType = returnType;
+        code.setMaxLocals(localBase + frameSize);
+
+        // parameters arrive in the JVM locals of their slots
+        for (Parameter param : parameters) {
+            int slot = param.getSlot();
+            if (param.isReference()) {
+                locals[slot] = new Local(Local.Kind.REF, param.getType());
+            } else if (boundVariables.contains(param)) {
+                load(param.getType(), localBase + slot);
+                box(param.getType());
+                code.astore(localBase + slot);
+                locals[slot] = new Local(Local.Kind.CELL, param.getType());
+            } else {
+                locals[slot] = new Local(Local.Kind.VALUE, param.getType());
+            }
+        }
+
+        if (block != null) {
+            block.accept(this);
+        }
+
+        // no return: default value
+        if (!returnType.isVoid()) {
+            if (returnType.getBaseType() == Type.BaseType.CLASS) {
+                code.op(CodeBuilder.ACONST_NULL);
+            } else {
+                pushDefault(returnType);
+            }
+        }
+        code.op(returnOpcode(returnType));
+    }
+
+    @Override
+    public Void visitProgram(Program node) {
+        // programs are compiled through compile()
+        return null;
+    }
+
+    @Override
+    public Void visitClassDecl(ClassDecl node) {
+        // classes are compiled through their symbols
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionDecl(FunctionDecl node) {
+        // functions are compiled through compile()
+        return null;
+    }
+
+    @Override
+    public Void visitMethodDecl(MethodDecl node) {
+        // methods are compiled through compileClass()
+        return null;
+    }
+
+    @Override
+    public Void visitConstructorDecl(ConstructorDecl node) {
+        // constructors are compiled through compileClass()
+        return null;
+    }
+
+    @Override
+    public Void visitVarDecl(VarDecl node) {
+        int slot = node.getSlot();
+        int index = localBase + slot;
+        Type type = node.getType();
+
+        if (node.isReference()) {
+            reference(node.getInitializer());
+            code.astore(index);
+            locals[slot] = new Local(Local.Kind.REF, type);
+            return null;
+        }
+
+        if (node.getInitializer() != null) {
+            // copy the value (with slicing if assigning derived to base)
+            node.getInitializer().accept(this);
+            copyIfObject(type);
+        } else {
+            // no initializer - default value or default constructor for classes
+            pushDefault(type);
+        }
+
+        if (boundVariables.contains(node)) {
+            box(type);
+            code.astore(index);
+            locals[slot] = new Local(Local.Kind.CELL, type);
+        } else {
+            store(type, index);
+            locals[slot] = new Local(Local.Kind.VALUE, type);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitParameter(Parameter node) {
+        // parameters are bound by compileBody
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(BlockStmt node) {
+        Local[] outer = locals.clone();
+        for (Statement statement : node.getStatements()) {
+            statement.accept(this);
+        }
+        locals = outer;
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(IfStmt node) {
+        Label elseLabel = new Label();
+        branch(node.getCondition(), false, elseLabel);
+        node.getThenStmt().accept(this);
+
+        if (node.getElseStmt() == null) {
+            code.bind(elseLabel);
+            return null;
+        }
+
+        Label end = new Label();
+        code.jump(CodeBuilder.GOTO, end);
+        code.bind(elseLabel);
+        node.getElseStmt().accept(this);
+        code.bind(end);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(WhileStmt node) {
+        Label top = new Label();
+        Label end = new Label();
+        code.bind(top);
+        branch(node.getCondition(), false, end);
+        node.getBody().accept(this);
+        code.jump(CodeBuilder.GOTO, top);
+        code.bind(end);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(ReturnStmt node) {
+        if (node.getValue() != null) {
+            node.getValue().accept(this);
+        }
+        code.op(returnOpcode(returnType));
+        return null;
+    }
+
+    @Override
+    public Void visitExprStmt(ExprStmt node) {
+        Expression expression = node.getExpression();
+        expression.accept(this);
+        if (producesValue(expression)) {
+            code.op(CodeBuilder.POP);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(BinaryExpr node) {
+        switch (node.getOperator()) {
+            case PLUS:
+                arithmetic(node, CodeBuilder.IADD);
+                return null;
+            case MINUS:
+                arithmetic(node, CodeBuilder.ISUB);
+                return null;
+            case MULT:
+                arithmetic(node, CodeBuilder.IMUL);
+                return null;
+            case DIV:
+                node.getLeft().accept(this);
+                node.getRight().accept(this);
+                code.invokestatic(RUNTIME, "div", "(II)I");
+                return null;
+            case MOD:
+                node.getLeft().accept(this);
+                node.getRight().accept(this);
+                code.invokestatic(RUNTIME, "mod", "(II)I");
+                return null;
+            default:
+                break;
+        }
+
+        if (compareOpcode(node) == 0 && (node.getOperator() == BinaryExpr.Operator.EQ
+                || node.getOperator() == BinaryExpr.Operator.NEQ)) {
+            // strings are compared by value
+            node.getLeft().accept(this);
+            node.getRight().accept(this);
+            code.invokevirtual(STRING, "equals", "(Ljava/lang/Object;)Z");
+            if (node.getOperator() == BinaryExpr.Operator.NEQ) {
+                code.iconst(1);
+                code.op(CodeBuilder.IXOR);
+            }
+            return null;
+        }
+
+        // comparisons, && and || produce 0 or 1 through branches
+        int depth = code.getDepth();
+        Label isFalse = new Label();
+        Label end = new Label();
+        branch(node, false, isFalse);
+        code.iconst(1);
+        code.jump(CodeBuilder.GOTO, end);
+        code.bind(isFalse);
+        code.setDepth(depth);
+        code.iconst(0);
+        code.bind(end);
+        return null;
+    }
+
+    private void arithmetic(BinaryExpr node, int opcode) {
+        node.getLeft().accept(this);
+        node.getRight().accept(this);
+        code.op(opcode);
+    }
+
+    @Override
+    public Void visitUnaryExpr(UnaryExpr node) {
+        node.getOperand().accept(this);
+        switch (node.getOperator()) {
+            case PLUS:
+                return null;
+            case MINUS:
+                code.op(CodeBuilder.INEG);
+                return null;
+            case NOT:
+                code.iconst(1);
+                code.op(CodeBuilder.IXOR);
+                return null;
+            default:
+                throw new RuntimeError("unknown unary operator: " + node.getOperator());
+        }
+    }
+
+    @Override
+    public Void visitAssignExpr(AssignExpr node) {
+        Expression target = node.getTarget();
+
+        // assignment writes through references; the assigned value stays on the stack
+        if (target instanceof VarExpr && ((VarExpr) target).isReceiverField()) {
+            // field of the object (methods and constructors)
+            code.aload(0);
+            node.getValue().accept(this);
+            code.op(CodeBuilder.DUP_X1);
+            putField(currentClass, ((VarExpr) target).getName());
+            return null;
+        }
+        if (target instanceof VarExpr) {
+            Local local = locals[((VarExpr) target).getSlot()];
+            int index = localBase + ((VarExpr) target).getSlot();
+            switch (local.kind) {
+                case VALUE:
+                    node.getValue().accept(this);
+                    code.op(CodeBuilder.DUP);
+                    store(local.type, index);
+                    return null;
+                default:
+                    code.aload(index);
+                    node.getValue().accept(this);
+                    code.op(CodeBuilder.DUP_X1);
+                    setCell(local.type);
+                    return null;
+            }
+        }
+
+        if (target instanceof MemberAccessExpr && !((MemberAccessExpr) target).isMethodCall()) {
+            MemberAccessExpr memberAccess = (MemberAccessExpr) target;
+            memberAccess.getObject().accept(this);
+            node.getValue().accept(this);
+            code.op(CodeBuilder.DUP_X1);
+            putField(staticClass(memberAccess.getObject()), memberAccess.getMemberName());
+            return null;
+        }
+
+        throw new RuntimeError("expression is not an lvalue");
+    }
+
+    @Override
+    public Void visitVarExpr(VarExpr node) {
+        if (node.isReceiverField()) {
+            code.aload(0);
+            getField(currentClass, node.getName());
+            return null;
+        }
+        Local local = locals[node.getSlot()];
+        int index = localBase + node.getSlot();
+        switch (local.kind) {
+            case VALUE:
+                load(local.type, index);
+                break;
+            default:
+                code.aload(index);
+                getCell(local.type);
+                break;
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(CallExpr node) {
+        // the ASTBuilder produces ConstructorCallExprs for calls, only built-ins are supported here
+        if (node.getFunctionName().startsWith("print_")) {
+            builtin(node.getFunctionName(), node.getArguments());
+            return null;
+        }
+        throw new RuntimeError("function '" + node.getFunctionName() + "' not found");
+    }
+
+    @Override
+    public Void visitMemberAccessExpr(MemberAccessExpr node) {
+        ClassSymbol staticClass = staticClass(node.getObject());
+        node.getObject().accept(this);
+
+        if (!node.isMethodCall()) {
+            getField(staticClass, node.getMemberName());
+            return null;
+        }
+
+        MethodSymbol method = resolveMethod(classes, node);
+        MethodDecl decl = method.getDeclaration();
+        arguments(decl.getParameters(), node.getArguments());
+
+        String name = mangle(decl.getName(), decl.getParameters());
+        if (node.isVirtualCall()) {
+            // dynamic dispatch through the forwarding instance methods
+            code.invokevirtual(internalName(staticClass), name,
+                    methodDescriptor(null, decl.getParameters(), decl.getReturnType()));
+        } else {
+            ClassSymbol owner = method.getOwningClass();
+            code.invokestatic(internalName(owner), name,
+                    methodDescriptor(owner, decl.getParameters(), decl.getReturnType()));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitConstructorCallExpr(ConstructorCallExpr node) {
+        if (node.getClassName().startsWith("print_")) {
+            builtin(node.getClassName(), node.getArguments());
+            return null;
+        }
+
+        if (node.isFunctionCall()) {
+            FunctionDecl func = node.getResolvedFunction().getDeclaration();
+            arguments(func.getParameters(), node.getArguments());
+            code.invokestatic(MAIN_CLASS, mangle(func.getName(), func.getParameters()),
+                    methodDescriptor(null, func.getParameters(), func.getReturnType()));
+            return null;
+        }
+
+        // otherwise, it's a constructor call
+        ClassSymbol classSymbol = classes.get(node.getClassName());
+        if (classSymbol == null) {
+            throw new RuntimeError("class '" + node.getClassName() + "' not found");
+        }
+        String name = internalName(classSymbol);
+        String objectDescriptor = "L" + name + ";";
+
+        // implicit copy constructor
+        if (node.isImplicitCopy()) {
+            node.getArguments().get(0).accept(this);
+            code.invokestatic(name, COPY, "(" + objectDescriptor + ")" + objectDescriptor);
+            return null;
+        }
+
+        code.invokestatic(name, NEW, "()" + objectDescriptor);
+
+        // arguments are only evaluated if there is a matching constructor
+        ConstructorSymbol constructor = node.getResolvedConstructor();
+        if (constructor != null) {
+            List<Parameter> params = constructor.getDeclaration().getParameters();
+            code.op(CodeBuilder.DUP);
+            arguments(params, node.getArguments());
+            code.invokestatic(name, mangle(CONSTRUCTOR, params), methodDescriptor(classSymbol, params, Type.VOID));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(LiteralExpr node) {
+        switch (node.getLiteralType()) {
+            case INT:
+                code.iconst(node.getIntValue());
+                break;
+            case BOOL:
+                code.iconst(node.getBoolValue() ? 1 : 0);
+                break;
+            case CHAR:
+                code.iconst(node.getCharValue());
+                break;
+            case STRING:
+                code.sconst(node.getStringValue());
+                break;
+            default:
+                throw new RuntimeError("unknown literal type");
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitType(Type node) {
+        // types are not compiled
+        return null;
+    }
+
+    // helper methods
+
+    /**
+     * jump to target if the condition evaluates to jumpIf
+     * (&&, ||, ! and comparisons are compiled to branches directly)
+     */
+    private void branch(Expression condition, boolean jumpIf, Label target) {
+        if (condition instanceof BinaryExpr) {
+            BinaryExpr binary = (BinaryExpr) condition;
+            BinaryExpr.Operator op = binary.getOperator();
+
+            if (op == BinaryExpr.Operator.AND || op == BinaryExpr.Operator.OR) {
+                // short-circuit evaluation
+                boolean isAnd = op == BinaryExpr.Operator.AND;
+                if (jumpIf != isAnd) {
+                    branch(binary.getLeft(), jumpIf, target);
+                    branch(binary.getRight(), jumpIf, target);
+                } else {
+                    Label skip = new Label();
+                    branch(binary.getLeft(), !jumpIf, skip);
+                    branch(binary.getRight(), jumpIf, target);
+                    code.bind(skip);
+                }
+                return;
+            }
+
+            int opcode = compareOpcode(binary);
+            if (opcode != 0) {
+                binary.getLeft().accept(this);
+                binary.getRight().accept(this);
+                code.jump(jumpIf ? opcode : negate(opcode), target);
+                return;
+            }
+        }
+
+        if (condition instanceof UnaryExpr && ((UnaryExpr) condition).getOperator() == UnaryExpr.Operator.NOT) {
+            branch(((UnaryExpr) condition).getOperand(), !jumpIf, target);
+            return;
+        }
+
+        condition.accept(this);
+        if (isType(condition, Type.BaseType.STRING)) {
+            // a string is true if it is not empty
+            code.invokevirtual(STRING, "isEmpty", "()Z");
+            code.jump(jumpIf ? CodeBuilder.IFEQ : CodeBuilder.IFNE, target);
+        } else {
+            code.jump(jumpIf ? CodeBuilder.IFNE : CodeBuilder.IFEQ, target);
+        }
+    }
+
+    /**
+     * compare-and-jump opcode for a comparison (0 if it is not one or compares strings)
+     */
+    private int compareOpcode(BinaryExpr node) {
+        boolean objects = isType(node.getLeft(), Type.BaseType.CLASS);
+        switch (node.getOperator()) {
+            case LT:
+                return CodeBuilder.IF_ICMPLT;
+            case LEQ:
+                return CodeBuilder.IF_ICMPLE;
+            case GT:
+                return CodeBuilder.IF_ICMPGT;
+            case GEQ:
+                return CodeBuilder.IF_ICMPGE;
+            case EQ:
+                if (isType(node.getLeft(), Type.BaseType.STRING)) {
+                    return 0;
+                }
+                // objects are equal if they are the same instance
+                return objects ? CodeBuilder.IF_ACMPEQ : CodeBuilder.IF_ICMPEQ;
+            case NEQ:
+                if (isType(node.getLeft(), Type.BaseType.STRING)) {
+                    return 0;
+                }
+                return objects ? CodeBuilder.IF_ACMPNE : CodeBuilder.IF_ICMPNE;
+            default:
+                return 0;
+        }
+    }
+
+    private static int negate(int opcode) {
+        switch (opcode) {
+            case CodeBuilder.IF_ICMPEQ:
+                return CodeBuilder.IF_ICMPNE;
+            case CodeBuilder.IF_ICMPNE:
+                return CodeBuilder.IF_ICMPEQ;
+            case CodeBuilder.IF_ICMPLT:
+                return CodeBuilder.IF_ICMPGE;
+            case CodeBuilder.IF_ICMPGE:
+                return CodeBuilder.IF_ICMPLT;
+            case CodeBuilder.IF_ICMPGT:
+                return CodeBuilder.IF_ICMPLE;
+            case CodeBuilder.IF_ICMPLE:
+                return CodeBuilder.IF_ICMPGT;
+            case CodeBuilder.IF_ACMPEQ:
+                return CodeBuilder.IF_ACMPNE;
+            default:
+                return CodeBuilder.IF_ACMPEQ;
+        }
+    }
+
+    /**
+     * push the arguments of a call: references get the cell of the variable,
+     * objects passed by value are copied (sliced to the parameter type)
+     */
+    private void arguments(List<Parameter> params, List<Expression> arguments) {
+        for (int i = 0; i < arguments.size(); i++) {
+            Parameter param = params.get(i);
+            if (param.isReference()) {
+                reference(arguments.get(i));
+            } else {
+                arguments.get(i).accept(this);
+                copyIfObject(param.getType());
+            }
+        }
+    }
+
+    /**
+     * push the cell an expression refers to
+     */
+    private void reference(Expression expression) {
+        Type type = expression.getType();
+
+        if (expression instanceof VarExpr && ((VarExpr) expression).isReceiverField()) {
+            code.aload(0);
+            fieldCell(fieldType(currentClass, ((VarExpr) expression).getName()), ((VarExpr) expression).getName());
+            return;
+        }
+        if (expression instanceof VarExpr) {
+            Local local = locals[((VarExpr) expression).getSlot()];
+            int index = localBase + ((VarExpr) expression).getSlot();
+            if (local.kind == Local.Kind.CELL || local.kind == Local.Kind.REF) {
+                code.aload(index);
+                return;
+            }
+        } else if (expression instanceof MemberAccessExpr && !((MemberAccessExpr) expression).isMethodCall()) {
+            MemberAccessExpr memberAccess = (MemberAccessExpr) expression;
+            memberAccess.getObject().accept(this);
+            fieldCell(fieldType(staticClass(memberAccess.getObject()), memberAccess.getMemberName()),
+                    memberAccess.getMemberName());
+            return;
+        }
+
+        // not a variable: the reference gets its own cell
+        expression.accept(this);
+        box(type);
+    }
+
+    private void fieldCell(Type type, String fieldName) {
+        code.sconst(fieldName);
+        String refClass = refClass(type);
+        code.invokestatic(refClass, "field", "(Ljava/lang/Object;Ljava/lang/String;)L" + refClass + ";");
+    }
+
+    private void builtin(String name, List<Expression> arguments) {
+        arguments.get(0).accept(this);
+        switch (name) {
+            case "print_int":
+                code.invokestatic(RUNTIME, "printInt", "(I)V");
+                break;
+            case "print_bool":
+                code.invokestatic(RUNTIME, "printBool", "(Z)V");
+                break;
+            case "print_char":
+                code.invokestatic(RUNTIME, "printChar", "(C)V");
+                break;
+            case "print_string":
+                code.invokestatic(RUNTIME, "printString", "(Ljava/lang/String;)V");
+                break;
+            default:
+                // unknown built-ins fail when they are called, like in the interpreter
+                code.op(CodeBuilder.POP);
+                code.sconst(name);
+                code.invokestatic(RUNTIME, "unknownBuiltin", "(Ljava/lang/String;)V");
+                break;
+        }
+    }
+
+    private void copyIfObject(Type type) {
+        if (type.getBaseType() == Type.BaseType.CLASS) {
+            String name = PACKAGE + type.getClassName();
+            code.invokestatic(name, COPY, "(L" + name + ";)L" + name + ";");
+        }
+    }
+
+    private void pushDefault(Type type) {
+        switch (type.getBaseType()) {
+            case STRING:
+                code.sconst("");
+                break;
+            case CLASS: {
+                String name = PACKAGE + type.getClassName();
+                code.invokestatic(name, DEFAULT, "()L" + name + ";");
+                break;
+            }
+            default:
+                code.iconst(0);
+                break;
+        }
+    }
+
+    private void load(Type type, int index) {
+        if (isIntLike(type)) {
+            code.iload(index);
+        } else {
+            code.aload(index);
+        }
+    }
+
+    private void store(Type type, int index) {
+        if (isIntLike(type)) {
+            code.istore(index);
+        } else {
+            code.astore(index);
+        }
+    }
+
+    // cells
+
+    private static String refClass(Type type) {
+        return isIntLike(type) ? INT_REF : OBJECT_REF;
+    }
+
+    private void box(Type type) {
+        if (isIntLike(type)) {
+            code.invokestatic(INT_REF, "of", "(I)L" + INT_REF + ";");
+        } else {
+            code.invokestatic(OBJECT_REF, "of", "(Ljava/lang/Object;)L" + OBJECT_REF + ";");
+        }
+    }
+
+    private void getCell(Type type) {
+        if (isIntLike(type)) {
+            code.invokevirtual(INT_REF, "get", "()I");
+        } else {
+            code.invokevirtual(OBJECT_REF, "get", "()Ljava/lang/Object;");
+            code.typeOp(CodeBuilder.CHECKCAST, type.getBaseType() == Type.BaseType.STRING
+                    ? STRING : PACKAGE + type.getClassName());
+        }
+    }
+
+    private void setCell(Type type) {
+        if (isIntLike(type)) {
+            code.invokevirtual(INT_REF, "set", "(I)V");
+        } else {
+            code.invokevirtual(OBJECT_REF, "set", "(Ljava/lang/Object;)V");
+        }
+    }
+
+    // fields
+
+    /**
+     * the class that declares a field for the JVM (the oldest ancestor declaring it)
+     */
+    private static ClassSymbol fieldOwner(ClassSymbol classSymbol, String fieldName) {
+        ClassSymbol owner = null;
+        for (ClassSymbol current = classSymbol; current != null; current = current.getBaseClass()) {
+            if (current.getFields().containsKey(fieldName)) {
+                owner = current;
+            }
+        }
+        if (owner == null) {
+            throw new RuntimeError("field '" + fieldName + "' not found in class '" + classSymbol.getName() + "'");
+        }
+        return owner;
+    }
+
+    private static Type fieldType(ClassSymbol classSymbol, String fieldName) {
+        return fieldOwner(classSymbol, fieldName).getFields().get(fieldName).getType();
+    }
+
+    private void getField(ClassSymbol classSymbol, String fieldName) {
+        ClassSymbol owner = fieldOwner(classSymbol, fieldName);
+        code.getfield(internalName(owner), fieldName, descriptor(owner.getFields().get(fieldName).getType()));
+    }
+
+    private void putField(ClassSymbol classSymbol, String fieldName) {
+        ClassSymbol owner = fieldOwner(classSymbol, fieldName);
+        code.putfield(internalName(owner), fieldName, descriptor(owner.getFields().get(fieldName).getType()));
+    }
+
+    // symbols and types
+
+    private ClassSymbol staticClass(Expression object) {
+        return classes.get(object.getType().getClassName());
+    }
+
+    static MethodSymbol resolveMethod(Map<String, ClassSymbol> classes, MemberAccessExpr node) {
+        // use resolved method from semantic analysis (handles overloading)
+        MethodSymbol method = node.getResolvedMethod();
+        if (method == null) {
+            method = classes.get(node.getObject().getType().getClassName()).lookupMethod(node.getMemberName());
+        }
+        if (method == null) {
+            throw new RuntimeError("method '" + node.getMemberName() + "' not found");
+        }
+        return method;
+    }
+
+    private static boolean producesValue(Expression expression) {
+        if (expression instanceof ConstructorCallExpr
+                && ((ConstructorCallExpr) expression).getClassName().startsWith("print_")) {
+            return false;
+        }
+        return expression.getType() != null && !expression.getType().isVoid();
+    }
+
+    private static boolean isType(Expression expression, Type.BaseType baseType) {
+        return expression.getType() != null && expression.getType().getBaseType() == baseType;
+    }
+
+    private static boolean isIntLike(Type type) {
+        switch (type.getBaseType()) {
+            case INT:
+            case BOOL:
+            case CHAR:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static int returnOpcode(Type type) {
+        if (type.isVoid()) {
+            return CodeBuilder.RETURN;
+        }
+        return isIntLike(type) ? CodeBuilder.IRETURN : CodeBuilder.ARETURN;
+    }
+
+    private static String internalName(ClassSymbol classSymbol) {
+        return PACKAGE + classSymbol.getName();
+    }
+
+    private static String descriptor(Type type) {
+        switch (type.getBaseType()) {
+            case INT:
+                return "I";
+            case BOOL:
+                return "Z";
+            case CHAR:
+                return "C";
+            case STRING:
+                return "Ljava/lang/String;";
+            case VOID:
+                return "V";
+            default:
+                return "L" + PACKAGE + type.getClassName() + ";";
+        }
+    }
+
+    /**
+     * @param receiver the class of the object parameter (null for functions and instance methods)
+     */
+    private static String methodDescriptor(ClassSymbol receiver, List<Parameter> params, Type returnType) {
+        StringBuilder sb = new StringBuilder("(");
+        if (receiver != null) {
+            sb.append("L").append(internalName(receiver)).append(";");
+        }
+        for (Parameter param : params) {
+            if (param.isReference()) {
+                sb.append("L").append(refClass(param.getType())).append(";");
+            } else {
+                sb.append(descriptor(param.getType()));
+            }
+        }
+        return sb.append(")").append(descriptor(returnType)).toString();
+    }
+
+    /**
+     * JVM name of a function, method or constructor: the parameter types are part
+     * of the name, so overloads and overriding methods line up (e.g. "add$int$int&")
+     */
+    private static String mangle(String name, List<Parameter> params) {
+        List<String> parts = new ArrayList<>();
+        parts.add(name);
+        for (Parameter param : params) {
+            parts.add(param.getType() + (param.isReference() ? "&" : ""));
+        }
+        return params.isEmpty() ? name + "$" : String.join("$", parts);
+    }
+}
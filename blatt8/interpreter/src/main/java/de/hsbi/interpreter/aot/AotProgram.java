@@ -0,0 +1,67 @@
+package de.hsbi.interpreter.aot;
+
+import de.hsbi.interpreter.runtime.RuntimeError;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * result of the ahead-of-time compiler: the generated class files
+ */
+public class AotProgram {
+    // runtime classes the generated code depends on (copied into the jar)
+    private static final Class<?>[] RUNTIME_CLASSES = {
+            AotRuntime.class, IntRef.class, IntFieldRef.class, ObjectRef.class, ObjectFieldRef.class,
+            RuntimeError.class
+    };
+
+    private Map<String, byte[]> classes; // internal name -> class file
+    private String mainClass;
+
+    public AotProgram(Map<String, byte[]> classes, String mainClass) {
+        this.classes = classes;
+        this.mainClass = mainClass;
+    }
+
+    public Map<String, byte[]> getClasses() {
+        return classes;
+    }
+
+    public String getMainClass() {
+        return mainClass;
+    }
+
+    /**
+     * write a runnable jar (java -jar filename) with the generated classes and the runtime
+     */
+    public void writeJar(String filename) throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, mainClass.replace('/', '.'));
+
+        try (JarOutputStream jar = new JarOutputStream(new FileOutputStream(filename), manifest)) {
+            for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+                jar.putNextEntry(new JarEntry(entry.getKey() + ".class"));
+                jar.write(entry.getValue());
+                jar.closeEntry();
+            }
+            for (Class<?> runtimeClass : RUNTIME_CLASSES) {
+                String path = runtimeClass.getName().replace('.', '/') + ".class";
+                try (InputStream in = runtimeClass.getClassLoader().getResourceAsStream(path)) {
+                    if (in == null) {
+                        throw new IOException("runtime class not found: " + path);
+                    }
+                    jar.putNextEntry(new JarEntry(path));
+                    jar.write(in.readAllBytes());
+                    jar.closeEntry();
+                }
+            }
+        }
+    }
+}
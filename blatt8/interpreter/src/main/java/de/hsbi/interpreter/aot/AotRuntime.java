@@ -0,0 +1,63 @@
+package de.hsbi.interpreter.aot;
+
+import de.hsbi.interpreter.runtime.RuntimeError;
+
+/**
+ * helpers called from ahead-of-time compiled programs
+ *
+ * this class is copied into every generated jar, so it must only depend on
+ * the jdk and the other runtime classes listed in AotProgram
+ */
+public final class AotRuntime {
+    private AotRuntime() {
+    }
+
+    /**
+     * run the program's main function and report runtime errors like the interpreter
+     */
+    public static void execute(Runnable main) {
+        try {
+            main.run();
+        } catch (RuntimeError e) {
+            System.out.flush();
+            System.err.println("Runtime error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    public static int div(int dividend, int divisor) {
+        if (divisor == 0) {
+            throw new RuntimeError("division by zero");
+        }
+        return dividend / divisor;
+    }
+
+    public static int mod(int dividend, int divisor) {
+        if (divisor == 0) {
+            throw new RuntimeError("modulo by zero");
+        }
+        return dividend % divisor;
+    }
+
+    // built-ins
+
+    public static void printInt(int value) {
+        System.out.println(value);
+    }
+
+    public static void printBool(boolean value) {
+        System.out.println(value);
+    }
+
+    public static void printChar(char value) {
+        System.out.println(value);
+    }
+
+    public static void printString(String value) {
+        System.out.println(value);
+    }
+
+    public static void unknownBuiltin(String name) {
+        throw new RuntimeError("unknown built-in function: " + name);
+    }
+}
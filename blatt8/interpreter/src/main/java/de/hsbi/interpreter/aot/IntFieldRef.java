@@ -0,0 +1,49 @@
+package de.hsbi.interpreter.aot;
+
+import java.lang.reflect.Field;
+
+/**
+ * reference to an int, bool or char field
+ */
+class IntFieldRef extends IntRef {
+    private final Object target;
+    private final Field field;
+
+    IntFieldRef(Object target, String name) {
+        super(0);
+        this.target = target;
+        this.field = ObjectFieldRef.lookup(target, name);
+    }
+
+    @Override
+    public int get() {
+        try {
+            Class<?> type = field.getType();
+            if (type == boolean.class) {
+                return field.getBoolean(target) ? 1 : 0;
+            }
+            if (type == char.class) {
+                return field.getChar(target);
+            }
+            return field.getInt(target);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void set(int value) {
+        try {
+            Class<?> type = field.getType();
+            if (type == boolean.class) {
+                field.setBoolean(target, value != 0);
+            } else if (type == char.class) {
+                field.setChar(target, (char) value);
+            } else {
+                field.setInt(target, value);
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package de.hsbi.interpreter.aot;
+
+/**
+ * cell for an int, bool or char variable that is bound to a reference
+ * (bool is stored as 0/1, like on the JVM stack)
+ */
+public class IntRef {
+    private int value;
+
+    protected IntRef(int value) {
+        this.value = value;
+    }
+
+    public static IntRef of(int value) {
+        return new IntRef(value);
+    }
+
+    /**
+     * reference to a field of a generated class
+     */
+    public static IntRef field(Object target, String name) {
+        return new IntFieldRef(target, name);
+    }
+
+    public int get() {
+        return value;
+    }
+
+    public void set(int value) {
+        this.value = value;
+    }
+}
@@ -0,0 +1,44 @@
+package de.hsbi.interpreter.aot;
+
+import java.lang.reflect.Field;
+
+/**
+ * reference to a string or object field
+ */
+class ObjectFieldRef extends ObjectRef {
+    private final Object target;
+    private final Field field;
+
+    ObjectFieldRef(Object target, String name) {
+        super(null);
+        this.target = target;
+        this.field = lookup(target, name);
+    }
+
+    // fields of generated classes are public, inherited ones included
+    static Field lookup(Object target, String name) {
+        try {
+            return target.getClass().getField(name);
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException("field '" + name + "' not found", e);
+        }
+    }
+
+    @Override
+    public Object get() {
+        try {
+            return field.get(target);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void set(Object value) {
+        try {
+            field.set(target, value);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package de.hsbi.interpreter.aot;
+
+/**
+ * cell for a string or object variable that is bound to a reference
+ */
+public class ObjectRef {
+    private Object value;
+
+    protected ObjectRef(Object value) {
+        this.value = value;
+    }
+
+    public static ObjectRef of(Object value) {
+        return new ObjectRef(value);
+    }
+
+    /**
+     * reference to a field of a generated class
+     */
+    public static ObjectRef field(Object target, String name) {
+        return new ObjectFieldRef(target, name);
+    }
+
+    public Object get() {
+        return value;
+    }
+
+    public void set(Object value) {
+        this.value = value;
+    }
+}
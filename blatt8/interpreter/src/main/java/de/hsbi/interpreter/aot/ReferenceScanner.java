@@ -0,0 +1,215 @@
+package de.hsbi.interpreter.aot;
+
+import de.hsbi.interpreter.ast.*;
+import de.hsbi.interpreter.symbols.ClassSymbol;
+import de.hsbi.interpreter.symbols.ConstructorSymbol;
+import de.hsbi.interpreter.symbols.MethodSymbol;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * finds the locals and parameters of one function body that are bound to a
+ * reference (int& r = x; or f(x) with a reference parameter)
+ *
+ * only these variables need a cell object in the generated code, all
+ * others live directly in JVM locals
+ */
+class ReferenceScanner implements ASTVisitor<Void> {
+    private Map<String, ClassSymbol> classes;
+    private Object[] declarations; // slot -> visible VarDecl or Parameter (null for fields)
+    private Set<Object> bound;
+
+    ReferenceScanner(Map<String, ClassSymbol> classes) {
+        this.classes = classes;
+    }
+
+    /**
+     * @return the VarDecl and Parameter nodes whose variable is bound to a reference
+     */
+    Set<Object> scan(List<Parameter> parameters, BlockStmt body, int frameSize) {
+        declarations = new Object[frameSize];
+        bound = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Parameter param : parameters) {
+            declarations[param.getSlot()] = param;
+        }
+        if (body != null) {
+            body.accept(this);
+        }
+        return bound;
+    }
+
+    private void bind(Expression target) {
+        if (target instanceof VarExpr && !((VarExpr) target).isReceiverField()) {
+            Object declaration = declarations[((VarExpr) target).getSlot()];
+            // reference variables already hold a cell
+            if (declaration instanceof VarDecl && !((VarDecl) declaration).isReference()
+                    || declaration instanceof Parameter && !((Parameter) declaration).isReference()) {
+                bound.add(declaration);
+            }
+        }
+    }
+
+    private void arguments(List<Parameter> parameters, List<Expression> arguments) {
+        for (int i = 0; i < arguments.size(); i++) {
+            if (parameters != null && parameters.get(i).isReference()) {
+                bind(arguments.get(i));
+            }
+            arguments.get(i).accept(this);
+        }
+    }
+
+    @Override
+    public Void visitProgram(Program node) {
+        return null;
+    }
+
+    @Override
+    public Void visitClassDecl(ClassDecl node) {
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionDecl(FunctionDecl node) {
+        return null;
+    }
+
+    @Override
+    public Void visitMethodDecl(MethodDecl node) {
+        return null;
+    }
+
+    @Override
+    public Void visitConstructorDecl(ConstructorDecl node) {
+        return null;
+    }
+
+    @Override
+    public Void visitVarDecl(VarDecl node) {
+        if (node.getInitializer() != null) {
+            if (node.isReference()) {
+                bind(node.getInitializer());
+            }
+            node.getInitializer().accept(this);
+        }
+        declarations[node.getSlot()] = node;
+        return null;
+    }
+
+    @Override
+    public Void visitParameter(Parameter node) {
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(BlockStmt node) {
+        Object[] outer = declarations.clone();
+        for (Statement statement : node.getStatements()) {
+            statement.accept(this);
+        }
+        declarations = outer;
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(IfStmt node) {
+        node.getCondition().accept(this);
+        node.getThenStmt().accept(this);
+        if (node.getElseStmt() != null) {
+            node.getElseStmt().accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(WhileStmt node) {
+        node.getCondition().accept(this);
+        node.getBody().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(ReturnStmt node) {
+        if (node.getValue() != null) {
+            node.getValue().accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitExprStmt(ExprStmt node) {
+        node.getExpression().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(BinaryExpr node) {
+        node.getLeft().accept(this);
+        node.getRight().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(UnaryExpr node) {
+        node.getOperand().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitAssignExpr(AssignExpr node) {
+        node.getTarget().accept(this);
+        node.getValue().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitVarExpr(VarExpr node) {
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(CallExpr node) {
+        // not produced by the ASTBuilder (calls are ConstructorCallExprs)
+        arguments(null, node.getArguments());
+        return null;
+    }
+
+    @Override
+    public Void visitMemberAccessExpr(MemberAccessExpr node) {
+        node.getObject().accept(this);
+        if (node.isMethodCall()) {
+            MethodSymbol method = AotCompiler.resolveMethod(classes, node);
+            arguments(method.getParameters(), node.getArguments());
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitConstructorCallExpr(ConstructorCallExpr node) {
+        if (node.getClassName().startsWith("print_") || node.isImplicitCopy()) {
+            arguments(null, node.getArguments());
+        } else if (node.isFunctionCall()) {
+            arguments(node.getResolvedFunction().getParameters(), node.getArguments());
+        } else {
+            ConstructorSymbol constructor = node.getResolvedConstructor();
+            // arguments are not evaluated if there is no matching constructor
+            if (constructor != null) {
+                arguments(constructor.getParameters(), node.getArguments());
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(LiteralExpr node) {
+        return null;
+    }
+
+    @Override
+    public Void visitType(Type node) {
+        return null;
+    }
+}
@@ -16,6 +16,7 @@ public class BinaryExpr extends Expression {
     private Operator operator;
     private Expression left;
     private Expression right;
+    private Operation operation; // operator for the operand types (set by the OperatorLowering)
 
     public BinaryExpr(Operator operator, Expression left, Expression right) {
         this.operator = operator;
@@ -35,6 +36,14 @@ public class BinaryExpr extends Expression {
         return right;
     }
 
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public void setOperation(Operation operation) {
+        this.operation = operation;
+    }
+
     @Override
     public <T> T accept(ASTVisitor<T> visitor) {
         return visitor.visitBinaryExpr(this);
@@ -1,5 +1,7 @@
 package de.hsbi.interpreter.ast;
 
+import de.hsbi.interpreter.symbols.FunctionSymbol;
+
 import java.util.List;
 
 /**
@@ -8,6 +10,7 @@ import java.util.List;
 public class CallExpr extends Expression {
     private String functionName;
     private List<Expression> arguments;
+    private FunctionSymbol resolvedFunction; // called function (set during semantic analysis)
 
     public CallExpr(String functionName, List<Expression> arguments) {
         this.functionName = functionName;
@@ -22,6 +25,14 @@ public class CallExpr extends Expression {
         return arguments;
     }
 
+    public FunctionSymbol getResolvedFunction() {
+        return resolvedFunction;
+    }
+
+    public void setResolvedFunction(FunctionSymbol resolvedFunction) {
+        this.resolvedFunction = resolvedFunction;
+    }
+
     @Override
     public <T> T accept(ASTVisitor<T> visitor) {
         return visitor.visitCallExpr(this);
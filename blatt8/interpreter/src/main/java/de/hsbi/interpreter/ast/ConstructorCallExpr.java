@@ -1,5 +1,6 @@
 package de.hsbi.interpreter.ast;
 
+import de.hsbi.interpreter.symbols.ConstructorSymbol;
 import de.hsbi.interpreter.symbols.FunctionSymbol;
 
 import java.util.List;
@@ -13,6 +14,9 @@ public class ConstructorCallExpr extends Expression {
     private List<Expression> arguments;
     private FunctionSymbol resolvedFunction; // set if this is actually a function call
     private boolean implicitCopy; // set if this is an implicit copy constructor call
+    private ConstructorSymbol resolvedConstructor; // constructor to run after the base constructors (null if none)
+    private boolean temporary; // the new object is only copied into a variable or parameter (set by the EscapeAnalyzer)
+    private int regionIndex = -1; // object of the call's Region to construct in, -1 = new object (set by the RegionAnalyzer)
 
     public ConstructorCallExpr(String className, List<Expression> arguments) {
         this.className = className;
@@ -48,6 +52,33 @@ public class ConstructorCallExpr extends Expression {
         this.implicitCopy = implicitCopy;
     }
 
+    public ConstructorSymbol getResolvedConstructor() {
+        return resolvedConstructor;
+    }
+
+    public void setResolvedConstructor(ConstructorSymbol resolvedConstructor) {
+        this.resolvedConstructor = resolvedConstructor;
+    }
+
+    /**
+     * true if the new object can be moved into its destination instead of copied
+     */
+    public boolean isTemporary() {
+        return temporary;
+    }
+
+    public void setTemporary(boolean temporary) {
+        this.temporary = temporary;
+    }
+
+    public int getRegionIndex() {
+        return regionIndex;
+    }
+
+    public void setRegionIndex(int regionIndex) {
+        this.regionIndex = regionIndex;
+    }
+
     @Override
     public <T> T accept(ASTVisitor<T> visitor) {
         return visitor.visitConstructorCallExpr(this);
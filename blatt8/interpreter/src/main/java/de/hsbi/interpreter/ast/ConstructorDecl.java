@@ -9,6 +9,7 @@ public class ConstructorDecl extends ASTNode {
     private String name; // same as class name
     private List<Parameter> parameters;
     private BlockStmt body;
+    private int frameSize; // number of frame slots (set during semantic analysis)
 
     public ConstructorDecl(String name, List<Parameter> parameters, BlockStmt body) {
         this.name = name;
@@ -28,6 +29,14 @@ public class ConstructorDecl extends ASTNode {
         return body;
     }
 
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    public void setFrameSize(int frameSize) {
+        this.frameSize = frameSize;
+    }
+
     @Override
     public <T> T accept(ASTVisitor<T> visitor) {
         return visitor.visitConstructorDecl(this);
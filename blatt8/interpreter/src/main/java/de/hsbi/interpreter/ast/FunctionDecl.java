@@ -10,6 +10,7 @@ public class FunctionDecl extends ASTNode {
     private String name;
     private List<Parameter> parameters;
     private BlockStmt body;
+    private int frameSize; // number of frame slots (set during semantic analysis)
 
     public FunctionDecl(Type returnType, String name, List<Parameter> parameters, BlockStmt body) {
         this.returnType = returnType;
@@ -22,6 +23,10 @@ public class FunctionDecl extends ASTNode {
         return returnType;
     }
 
+    public void setReturnType(Type returnType) {
+        this.returnType = returnType;
+    }
+
     public String getName() {
         return name;
     }
@@ -34,6 +39,14 @@ public class FunctionDecl extends ASTNode {
         return body;
     }
 
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    public void setFrameSize(int frameSize) {
+        this.frameSize = frameSize;
+    }
+
     @Override
     public <T> T accept(ASTVisitor<T> visitor) {
         return visitor.visitFunctionDecl(this);
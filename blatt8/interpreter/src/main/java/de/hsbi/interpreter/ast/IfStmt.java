@@ -7,6 +7,7 @@ public class IfStmt extends Statement {
     private Expression condition;
     private Statement thenStmt;
     private Statement elseStmt; // can be null
+    private Operation conditionTest; // conversion of the condition to bool (set by the OperatorLowering)
 
     public IfStmt(Expression condition, Statement thenStmt, Statement elseStmt) {
         this.condition = condition;
@@ -18,6 +19,14 @@ public class IfStmt extends Statement {
         return condition;
     }
 
+    public Operation getConditionTest() {
+        return conditionTest;
+    }
+
+    public void setConditionTest(Operation conditionTest) {
+        this.conditionTest = conditionTest;
+    }
+
     public Statement getThenStmt() {
         return thenStmt;
     }
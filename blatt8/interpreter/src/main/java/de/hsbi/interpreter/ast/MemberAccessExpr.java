@@ -13,6 +13,10 @@ public class MemberAccessExpr extends Expression {
     private boolean isMethodCall;
     private List<Expression> arguments; // null if not a method call
     private MethodSymbol resolvedMethod; // resolved method overload (set during semantic analysis)
+    private int fieldOffset = -1; // object layout offset of the field (set during semantic analysis)
+    private Expression pathRoot; // first object of a chain of field accesses (set during semantic analysis)
+    private int[] fieldPath;     // offsets from the path root down to this field
+    private int vtableSlot = -1; // vtable slot of a virtual call, -1 for static calls (set during semantic analysis)
 
     // for field access
     public MemberAccessExpr(Expression object, String memberName) {
@@ -54,6 +58,45 @@ public class MemberAccessExpr extends Expression {
         this.resolvedMethod = resolvedMethod;
     }
 
+    public int getFieldOffset() {
+        return fieldOffset;
+    }
+
+    public void setFieldOffset(int fieldOffset) {
+        this.fieldOffset = fieldOffset;
+    }
+
+    /**
+     * a field access chain a.b.c is resolved as one path: the root a and the
+     * offsets of b and c (for a single access, the object and the field offset).
+     * nested objects are separate objects, so the engines still go through the
+     * object of every step; the path only saves evaluating the inner access nodes
+     */
+    public Expression getPathRoot() {
+        return pathRoot;
+    }
+
+    public int[] getFieldPath() {
+        return fieldPath;
+    }
+
+    public void setFieldPath(Expression pathRoot, int[] fieldPath) {
+        this.pathRoot = pathRoot;
+        this.fieldPath = fieldPath;
+    }
+
+    public boolean isVirtualCall() {
+        return vtableSlot >= 0;
+    }
+
+    public int getVtableSlot() {
+        return vtableSlot;
+    }
+
+    public void setVtableSlot(int vtableSlot) {
+        this.vtableSlot = vtableSlot;
+    }
+
     @Override
     public <T> T accept(ASTVisitor<T> visitor) {
         return visitor.visitMemberAccessExpr(this);
@@ -11,6 +11,7 @@ public class MethodDecl extends ASTNode {
     private String name;
     private List<Parameter> parameters;
     private BlockStmt body;
+    private int frameSize; // number of frame slots (set during semantic analysis)
 
     public MethodDecl(boolean isVirtual, Type returnType, String name,
                       List<Parameter> parameters, BlockStmt body) {
@@ -29,6 +30,10 @@ public class MethodDecl extends ASTNode {
         return returnType;
     }
 
+    public void setReturnType(Type returnType) {
+        this.returnType = returnType;
+    }
+
     public String getName() {
         return name;
     }
@@ -41,6 +46,14 @@ public class MethodDecl extends ASTNode {
         return body;
     }
 
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    public void setFrameSize(int frameSize) {
+        this.frameSize = frameSize;
+    }
+
     @Override
     public <T> T accept(ASTVisitor<T> visitor) {
         return visitor.visitMethodDecl(this);
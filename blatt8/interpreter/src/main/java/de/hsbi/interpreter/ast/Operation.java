@@ -0,0 +1,25 @@
+package de.hsbi.interpreter.ast;
+
+/**
+ * an operator for the static types of its operands (see OperatorLowering)
+ *
+ * binary and unary expressions and the conditions of if/while statements are
+ * lowered to an operation after the semantic analysis, so the engines run them
+ * without looking at the types of the values
+ */
+public enum Operation {
+    // int arithmetic
+    INT_ADD, INT_SUB, INT_MUL, INT_DIV, INT_MOD, INT_PLUS, INT_NEG,
+    // relational
+    INT_LT, INT_LEQ, INT_GT, INT_GEQ,
+    CHAR_LT, CHAR_LEQ, CHAR_GT, CHAR_GEQ,
+    // equality (objects compare by identity)
+    INT_EQ, INT_NEQ, BOOL_EQ, BOOL_NEQ, CHAR_EQ, CHAR_NEQ,
+    STRING_EQ, STRING_NEQ, OBJECT_EQ, OBJECT_NEQ,
+    // equality of any other operands (see RuntimeSupport.valuesEqual)
+    VALUE_EQ, VALUE_NEQ,
+    // logical
+    BOOL_AND, BOOL_OR, BOOL_NOT,
+    // conditions: conversion of the value to bool
+    BOOL_TEST, INT_TEST, CHAR_TEST, STRING_TEST
+}
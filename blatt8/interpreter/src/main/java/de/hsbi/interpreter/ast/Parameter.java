@@ -7,17 +7,23 @@ public class Parameter extends ASTNode {
     private Type type;
     private boolean isReference;
     private String name;
+    private int slot; // frame slot (set during semantic analysis)
 
     public Parameter(Type type, boolean isReference, String name) {
         this.type = type;
         this.isReference = isReference;
         this.name = name;
+        this.slot = -1;
     }
 
     public Type getType() {
         return type;
     }
 
+    public void setType(Type type) {
+        this.type = type;
+    }
+
     public boolean isReference() {
         return isReference;
     }
@@ -26,6 +32,14 @@ public class Parameter extends ASTNode {
         return name;
     }
 
+    public int getSlot() {
+        return slot;
+    }
+
+    public void setSlot(int slot) {
+        this.slot = slot;
+    }
+
     @Override
     public <T> T accept(ASTVisitor<T> visitor) {
         return visitor.visitParameter(this);
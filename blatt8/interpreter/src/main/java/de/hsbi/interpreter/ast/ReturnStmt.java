@@ -5,6 +5,7 @@ package de.hsbi.interpreter.ast;
  */
 public class ReturnStmt extends Statement {
     private Expression value; // can be null for void returns
+    private boolean tailCall; // returns the result of a function call as it is (set during semantic analysis)
 
     public ReturnStmt(Expression value) {
         this.value = value;
@@ -18,6 +19,23 @@ public class ReturnStmt extends Statement {
         return value != null;
     }
 
+    /**
+     * true for return f(...) in a function: the engines run the call in place
+     * of the returning one, so tail recursion needs no stack
+     */
+    public boolean isTailCall() {
+        return tailCall;
+    }
+
+    public void setTailCall(boolean tailCall) {
+        this.tailCall = tailCall;
+    }
+
+    // the call of a tail call
+    public ConstructorCallExpr getTailCall() {
+        return (ConstructorCallExpr) value;
+    }
+
     @Override
     public <T> T accept(ASTVisitor<T> visitor) {
         return visitor.visitReturnStmt(this);
@@ -1,28 +1,69 @@
 package de.hsbi.interpreter.ast;
 
+import de.hsbi.interpreter.symbols.ClassSymbol;
+
 /**
  * represents a type in the language
+ *
+ * primitive types are singletons (Type.INT, ...), so they can be compared with ==.
+ * every class has one canonical type (ClassSymbol.getType()) that carries the class
+ * symbol; the parser creates name-only class types which the symbol table builder
+ * and semantic analyzer replace by the canonical one (see SymbolTable.resolveType)
  */
 public class Type extends ASTNode {
     public enum BaseType {
         BOOL, INT, CHAR, STRING, VOID, CLASS
     }
 
+    public static final Type BOOL = new Type(BaseType.BOOL);
+    public static final Type INT = new Type(BaseType.INT);
+    public static final Type CHAR = new Type(BaseType.CHAR);
+    public static final Type STRING = new Type(BaseType.STRING);
+    public static final Type VOID = new Type(BaseType.VOID);
+
     private BaseType baseType;
     private String className; // for class types
+    private ClassSymbol classSymbol; // only set for canonical class types
 
-    // for primitive types
-    public Type(BaseType baseType) {
+    // for primitive types (use the constants / of())
+    private Type(BaseType baseType) {
         this.baseType = baseType;
         this.className = null;
     }
 
-    // for class types
+    // for class types that are not resolved yet (parser)
     public Type(String className) {
         this.baseType = BaseType.CLASS;
         this.className = className;
     }
 
+    // canonical type of a class
+    public Type(ClassSymbol classSymbol) {
+        this.baseType = BaseType.CLASS;
+        this.className = classSymbol.getName();
+        this.classSymbol = classSymbol;
+    }
+
+    /**
+     * the singleton for a primitive base type
+     */
+    public static Type of(BaseType baseType) {
+        switch (baseType) {
+            case BOOL:
+                return BOOL;
+            case INT:
+                return INT;
+            case CHAR:
+                return CHAR;
+            case STRING:
+                return STRING;
+            case VOID:
+                return VOID;
+            default:
+                throw new IllegalArgumentException("class types need a class name");
+        }
+    }
+
     public BaseType getBaseType() {
         return baseType;
     }
@@ -31,6 +72,13 @@ public class Type extends ASTNode {
         return className;
     }
 
+    /**
+     * the class of a canonical class type (null for primitive and unresolved types)
+     */
+    public ClassSymbol getClassSymbol() {
+        return classSymbol;
+    }
+
     public boolean isPrimitive() {
         return baseType != BaseType.CLASS;
     }
@@ -59,6 +107,10 @@ public class Type extends ASTNode {
         Type other = (Type) obj;
         if (baseType != other.baseType) return false;
         if (baseType == BaseType.CLASS) {
+            // canonical class types are unique, only unresolved ones need the name
+            if (classSymbol != null && other.classSymbol != null) {
+                return false;
+            }
             return className.equals(other.className);
         }
         return true;
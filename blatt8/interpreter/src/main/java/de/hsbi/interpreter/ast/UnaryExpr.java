@@ -10,6 +10,7 @@ public class UnaryExpr extends Expression {
 
     private Operator operator;
     private Expression operand;
+    private Operation operation; // operator for the operand type (set by the OperatorLowering)
 
     public UnaryExpr(Operator operator, Expression operand) {
         this.operator = operator;
@@ -24,6 +25,14 @@ public class UnaryExpr extends Expression {
         return operand;
     }
 
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public void setOperation(Operation operation) {
+        this.operation = operation;
+    }
+
     @Override
     public <T> T accept(ASTVisitor<T> visitor) {
         return visitor.visitUnaryExpr(this);
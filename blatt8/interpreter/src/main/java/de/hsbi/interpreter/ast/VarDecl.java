@@ -8,18 +8,25 @@ public class VarDecl extends Statement {
     private boolean isReference;
     private String name;
     private Expression initializer; // can be null
+    private int slot; // frame slot (set during semantic analysis)
+    private int regionIndex = -1; // object of the call's Region to default-construct in, -1 = new object (set by the RegionAnalyzer)
 
     public VarDecl(Type type, boolean isReference, String name, Expression initializer) {
         this.type = type;
         this.isReference = isReference;
         this.name = name;
         this.initializer = initializer;
+        this.slot = -1;
     }
 
     public Type getType() {
         return type;
     }
 
+    public void setType(Type type) {
+        this.type = type;
+    }
+
     public boolean isReference() {
         return isReference;
     }
@@ -36,6 +43,22 @@ public class VarDecl extends Statement {
         return initializer != null;
     }
 
+    public int getSlot() {
+        return slot;
+    }
+
+    public void setSlot(int slot) {
+        this.slot = slot;
+    }
+
+    public int getRegionIndex() {
+        return regionIndex;
+    }
+
+    public void setRegionIndex(int regionIndex) {
+        this.regionIndex = regionIndex;
+    }
+
     @Override
     public <T> T accept(ASTVisitor<T> visitor) {
         return visitor.visitVarDecl(this);
@@ -5,15 +5,42 @@ package de.hsbi.interpreter.ast;
  */
 public class VarExpr extends Expression {
     private String name;
+    private int slot; // frame slot (set during semantic analysis)
+    private int fieldOffset; // receiver field offset if the name is a field (set during semantic analysis)
 
     public VarExpr(String name) {
         this.name = name;
+        this.slot = -1;
+        this.fieldOffset = -1;
     }
 
     public String getName() {
         return name;
     }
 
+    public int getSlot() {
+        return slot;
+    }
+
+    public void setSlot(int slot) {
+        this.slot = slot;
+    }
+
+    /**
+     * true if the name refers to a field of the receiver (inside a method or constructor)
+     */
+    public boolean isReceiverField() {
+        return fieldOffset >= 0;
+    }
+
+    public int getFieldOffset() {
+        return fieldOffset;
+    }
+
+    public void setFieldOffset(int fieldOffset) {
+        this.fieldOffset = fieldOffset;
+    }
+
     @Override
     public <T> T accept(ASTVisitor<T> visitor) {
         return visitor.visitVarExpr(this);
@@ -6,6 +6,7 @@ package de.hsbi.interpreter.ast;
 public class WhileStmt extends Statement {
     private Expression condition;
     private Statement body;
+    private Operation conditionTest; // conversion of the condition to bool (set by the OperatorLowering)
 
     public WhileStmt(Expression condition, Statement body) {
         this.condition = condition;
@@ -16,6 +17,14 @@ public class WhileStmt extends Statement {
         return condition;
     }
 
+    public Operation getConditionTest() {
+        return conditionTest;
+    }
+
+    public void setConditionTest(Operation conditionTest) {
+        this.conditionTest = conditionTest;
+    }
+
     public Statement getBody() {
         return body;
     }
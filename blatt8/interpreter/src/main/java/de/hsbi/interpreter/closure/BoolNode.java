@@ -0,0 +1,16 @@
+package de.hsbi.interpreter.closure;
+
+import de.hsbi.interpreter.runtime.Value;
+
+/**
+ * compiled expression of static type bool (or a condition)
+ */
+@FunctionalInterface
+public interface BoolNode extends ExprNode {
+    boolean evalBool(Frame frame);
+
+    @Override
+    default Value eval(Frame frame) {
+        return Value.ofBool(evalBool(frame));
+    }
+}
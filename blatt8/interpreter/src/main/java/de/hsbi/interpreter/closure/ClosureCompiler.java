@@ -0,0 +1,900 @@
+package de.hsbi.interpreter.closure;
+
+import de.hsbi.interpreter.ast.*;
+import de.hsbi.interpreter.runtime.InlineCache;
+import de.hsbi.interpreter.runtime.InstantiationPlan;
+import de.hsbi.interpreter.runtime.ObjectValue;
+import de.hsbi.interpreter.runtime.RegionStack;
+import de.hsbi.interpreter.runtime.RuntimeError;
+import de.hsbi.interpreter.runtime.RuntimeSupport;
+import de.hsbi.interpreter.runtime.Value;
+import de.hsbi.interpreter.symbols.*;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * compiles an analyzed program into trees of pre-bound closures
+ *
+ * every decision the tree-walking Interpreter makes per evaluation (operator,
+ * built-in, overload, constructor, static types) is made once here; int and
+ * bool expressions are evaluated through IntNode/BoolNode without boxing
+ * intermediate results into values
+ *
+ * visit methods return an ExprNode for expressions and a StmtNode for statements
+ */
+public class ClosureCompiler implements ASTVisitor<Object> {
+    private static final Value[] NO_ARGS = new Value[0];
+
+    private Map<String, ClassSymbol> classes;
+    private RuntimeSupport support;
+
+    private Map<FunctionDecl, CompiledFunction> functions;
+    private Map<String, FunctionDecl> functionsByName;
+    private Map<MethodSymbol, CompiledFunction> methods;
+    private Map<ConstructorDecl, CompiledFunction> constructors;
+    private Map<ClassSymbol, CompiledFunction> defaultConstructors;
+
+    // regions of the running calls (see RegionAnalyzer)
+    private final RegionStack regions = new RegionStack();
+    private boolean usesRegion; // the body being compiled has region variables
+
+    public ClosureCompiler(SymbolTable symbolTable) {
+        this.classes = symbolTable.getClasses();
+        this.support = new RuntimeSupport();
+        this.functions = new IdentityHashMap<>();
+        this.functionsByName = new HashMap<>();
+        this.methods = new HashMap<>();
+        this.constructors = new IdentityHashMap<>();
+        this.defaultConstructors = new HashMap<>();
+    }
+
+    /**
+     * compile all functions, methods and constructors
+     */
+    public ClosureProgram compile(Program program) {
+        // create all functions first, so calls can refer to functions that are compiled later
+        for (FunctionDecl func : program.getFunctions()) {
+            functions.put(func, new CompiledFunction(func.getName(), func.getParameters(),
+                    func.getFrameSize(), func.getReturnType()));
+            functionsByName.put(func.getName(), func);
+        }
+        for (ClassSymbol classSymbol : classes.values()) {
+            for (List<MethodSymbol> overloads : classSymbol.getMethods().values()) {
+                for (MethodSymbol method : overloads) {
+                    MethodDecl decl = method.getDeclaration();
+                    methods.put(method, new CompiledFunction(classSymbol.getName() + "::" + decl.getName(),
+                            decl.getParameters(), decl.getFrameSize(), decl.getReturnType()));
+                }
+            }
+            for (ConstructorSymbol constructor : classSymbol.getConstructors()) {
+                ConstructorDecl decl = constructor.getDeclaration();
+                constructors.put(decl, new CompiledFunction(classSymbol.getName() + "::" + decl.getName(),
+                        decl.getParameters(), decl.getFrameSize(), Type.VOID));
+            }
+        }
+        for (ClassSymbol classSymbol : classes.values()) {
+            ConstructorSymbol constructor = classSymbol.getDefaultConstructor();
+            if (constructor != null) {
+                defaultConstructors.put(classSymbol, constructors.get(constructor.getDeclaration()));
+            }
+        }
+
+        // compile bodies
+        for (Map.Entry<FunctionDecl, CompiledFunction> entry : functions.entrySet()) {
+            compileBody(entry.getValue(), entry.getKey().getBody());
+        }
+        for (Map.Entry<MethodSymbol, CompiledFunction> entry : methods.entrySet()) {
+            compileBody(entry.getValue(), entry.getKey().getDeclaration().getBody());
+        }
+        for (Map.Entry<ConstructorDecl, CompiledFunction> entry : constructors.entrySet()) {
+            compileBody(entry.getValue(), entry.getKey().getBody());
+        }
+
+        // main is the last function named "main" (same as the interpreter)
+        FunctionDecl main = functionsByName.get("main");
+        return new ClosureProgram(main != null ? functions.get(main) : null);
+    }
+
+    private void compileBody(CompiledFunction function, BlockStmt body) {
+        usesRegion = false;
+        function.setBody(body != null ? stmt(body) : null);
+        if (usesRegion) {
+            function.setRegions(regions);
+        }
+    }
+
+    @Override
+    public Object visitProgram(Program node) {
+        // programs are compiled through compile()
+        return null;
+    }
+
+    @Override
+    public Object visitClassDecl(ClassDecl node) {
+        // classes are compiled through their symbols
+        return null;
+    }
+
+    @Override
+    public Object visitFunctionDecl(FunctionDecl node) {
+        // functions are compiled through compile()
+        return null;
+    }
+
+    @Override
+    public Object visitMethodDecl(MethodDecl node) {
+        // methods are compiled through compile()
+        return null;
+    }
+
+    @Override
+    public Object visitConstructorDecl(ConstructorDecl node) {
+        // constructors are compiled through compile()
+        return null;
+    }
+
+    @Override
+    public Object visitVarDecl(VarDecl node) {
+        int slot = node.getSlot();
+        Type type = node.getType();
+
+        if (node.getInitializer() != null) {
+            if (node.isReference()) {
+                // the reference shares the cell of the value
+                ExprNode init = reference(node.getInitializer());
+                return (StmtNode) frame -> {
+                    frame.locals[slot] = init.eval(frame);
+                    return false;
+                };
+            }
+
+            if (type.getBaseType() == Type.BaseType.INT) {
+                IntNode init = intExpr(node.getInitializer());
+                return (StmtNode) frame -> {
+                    frame.locals[slot] = Value.ofInt(init.evalInt(frame));
+                    return false;
+                };
+            }
+
+            // copy the value (with slicing if assigning derived to base)
+            ExprNode init = expr(node.getInitializer());
+            return (StmtNode) frame -> {
+                frame.locals[slot] = support.copyValueWithSlicing(init.eval(frame), type);
+                return false;
+            };
+        }
+
+        // no initializer - use default value or call default constructor for classes
+        ClassSymbol classSymbol = type.getBaseType() == Type.BaseType.CLASS ? classes.get(type.getClassName()) : null;
+        if (classSymbol != null && node.getRegionIndex() >= 0) {
+            int regionIndex = node.getRegionIndex();
+            usesRegion = true;
+            return (StmtNode) frame -> {
+                ObjectValue obj = frame.region.allocate(regionIndex, classSymbol);
+                frame.locals[slot] = new Value(type, defaultConstruct(classSymbol, obj));
+                return false;
+            };
+        }
+        if (classSymbol != null) {
+            return (StmtNode) frame -> {
+                frame.locals[slot] = new Value(type, defaultConstruct(classSymbol));
+                return false;
+            };
+        }
+        return (StmtNode) frame -> {
+            frame.locals[slot] = Value.defaultValue(type);
+            return false;
+        };
+    }
+
+    @Override
+    public Object visitParameter(Parameter node) {
+        // parameters are bound by CompiledFunction.invoke
+        return null;
+    }
+
+    @Override
+    public Object visitBlockStmt(BlockStmt node) {
+        List<Statement> statements = node.getStatements();
+        StmtNode[] body = new StmtNode[statements.size()];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = stmt(statements.get(i));
+        }
+
+        return (StmtNode) frame -> {
+            for (StmtNode stmt : body) {
+                if (stmt.exec(frame)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    @Override
+    public Object visitIfStmt(IfStmt node) {
+        BoolNode condition = condition(node.getCondition(), node.getConditionTest());
+        StmtNode thenStmt = stmt(node.getThenStmt());
+
+        if (node.getElseStmt() == null) {
+            return (StmtNode) frame -> condition.evalBool(frame) && thenStmt.exec(frame);
+        }
+
+        StmtNode elseStmt = stmt(node.getElseStmt());
+        return (StmtNode) frame -> condition.evalBool(frame) ? thenStmt.exec(frame) : elseStmt.exec(frame);
+    }
+
+    @Override
+    public Object visitWhileStmt(WhileStmt node) {
+        BoolNode condition = condition(node.getCondition(), node.getConditionTest());
+        StmtNode body = stmt(node.getBody());
+
+        return (StmtNode) frame -> {
+            while (condition.evalBool(frame)) {
+                if (body.exec(frame)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    @Override
+    public Object visitReturnStmt(ReturnStmt node) {
+        if (node.getValue() == null) {
+            return (StmtNode) frame -> {
+                frame.returnValue = Value.defaultValue(Type.VOID);
+                return true;
+            };
+        }
+
+        if (node.isTailCall()) {
+            // the call runs after this one has ended (see CompiledFunction.invoke)
+            FunctionDecl func = node.getTailCall().getResolvedFunction().getDeclaration();
+            CompiledFunction target = functions.get(func);
+            ExprNode[] argNodes = args(node.getTailCall().getArguments(), func.getParameters());
+            return (StmtNode) frame -> {
+                frame.tailArguments = evalArgs(argNodes, frame);
+                frame.tailCall = target;
+                return true;
+            };
+        }
+
+        ExprNode value = expr(node.getValue());
+        return (StmtNode) frame -> {
+            frame.returnValue = value.eval(frame);
+            return true;
+        };
+    }
+
+    @Override
+    public Object visitExprStmt(ExprStmt node) {
+        ExprNode expression = expr(node.getExpression());
+        return (StmtNode) frame -> {
+            expression.eval(frame);
+            return false;
+        };
+    }
+
+    @Override
+    public Object visitBinaryExpr(BinaryExpr node) {
+        Expression leftExpr = node.getLeft();
+        Expression rightExpr = node.getRight();
+
+        // the operation is already chosen for the operand types (see OperatorLowering)
+        switch (node.getOperation()) {
+            // short-circuit evaluation for && and ||
+            case BOOL_AND: {
+                BoolNode left = boolExpr(leftExpr);
+                BoolNode right = boolExpr(rightExpr);
+                return (BoolNode) frame -> left.evalBool(frame) && right.evalBool(frame);
+            }
+            case BOOL_OR: {
+                BoolNode left = boolExpr(leftExpr);
+                BoolNode right = boolExpr(rightExpr);
+                return (BoolNode) frame -> left.evalBool(frame) || right.evalBool(frame);
+            }
+
+            case INT_ADD: {
+                IntNode left = intExpr(leftExpr);
+                IntNode right = intExpr(rightExpr);
+                return (IntNode) frame -> left.evalInt(frame) + right.evalInt(frame);
+            }
+            case INT_SUB: {
+                IntNode left = intExpr(leftExpr);
+                IntNode right = intExpr(rightExpr);
+                return (IntNode) frame -> left.evalInt(frame) - right.evalInt(frame);
+            }
+            case INT_MUL: {
+                IntNode left = intExpr(leftExpr);
+                IntNode right = intExpr(rightExpr);
+                return (IntNode) frame -> left.evalInt(frame) * right.evalInt(frame);
+            }
+            case INT_DIV: {
+                IntNode left = intExpr(leftExpr);
+                IntNode right = intExpr(rightExpr);
+                return (IntNode) frame -> {
+                    int dividend = left.evalInt(frame);
+                    int divisor = right.evalInt(frame);
+                    if (divisor == 0) {
+                        throw new RuntimeError("division by zero");
+                    }
+                    return dividend / divisor;
+                };
+            }
+            case INT_MOD: {
+                IntNode left = intExpr(leftExpr);
+                IntNode right = intExpr(rightExpr);
+                return (IntNode) frame -> {
+                    int dividend = left.evalInt(frame);
+                    int divisor = right.evalInt(frame);
+                    if (divisor == 0) {
+                        throw new RuntimeError("modulo by zero");
+                    }
+                    return dividend % divisor;
+                };
+            }
+
+            case INT_LT:
+            case INT_LEQ:
+            case INT_GT:
+            case INT_GEQ:
+            case INT_EQ:
+            case INT_NEQ:
+                return compileIntComparison(node);
+
+            case CHAR_LT:
+            case CHAR_LEQ:
+            case CHAR_GT:
+            case CHAR_GEQ:
+            case CHAR_EQ:
+            case CHAR_NEQ:
+                return compileCharComparison(node);
+
+            default:
+                return compileEquality(node);
+        }
+    }
+
+    private BoolNode compileIntComparison(BinaryExpr node) {
+        IntNode left = intExpr(node.getLeft());
+        IntNode right = intExpr(node.getRight());
+        switch (node.getOperation()) {
+            case INT_LT:
+                return frame -> left.evalInt(frame) < right.evalInt(frame);
+            case INT_LEQ:
+                return frame -> left.evalInt(frame) <= right.evalInt(frame);
+            case INT_GT:
+                return frame -> left.evalInt(frame) > right.evalInt(frame);
+            case INT_GEQ:
+                return frame -> left.evalInt(frame) >= right.evalInt(frame);
+            case INT_EQ:
+                return frame -> left.evalInt(frame) == right.evalInt(frame);
+            default:
+                return frame -> left.evalInt(frame) != right.evalInt(frame);
+        }
+    }
+
+    private BoolNode compileCharComparison(BinaryExpr node) {
+        ExprNode left = expr(node.getLeft());
+        ExprNode right = expr(node.getRight());
+        switch (node.getOperation()) {
+            case CHAR_LT:
+                return frame -> left.eval(frame).getCharValue() < right.eval(frame).getCharValue();
+            case CHAR_LEQ:
+                return frame -> left.eval(frame).getCharValue() <= right.eval(frame).getCharValue();
+            case CHAR_GT:
+                return frame -> left.eval(frame).getCharValue() > right.eval(frame).getCharValue();
+            case CHAR_GEQ:
+                return frame -> left.eval(frame).getCharValue() >= right.eval(frame).getCharValue();
+            case CHAR_EQ:
+                return frame -> left.eval(frame).getCharValue() == right.eval(frame).getCharValue();
+            default:
+                return frame -> left.eval(frame).getCharValue() != right.eval(frame).getCharValue();
+        }
+    }
+
+    /**
+     * == and != on bools, strings, objects (identity) or other values
+     */
+    private BoolNode compileEquality(BinaryExpr node) {
+        switch (node.getOperation()) {
+            case BOOL_EQ:
+            case BOOL_NEQ: {
+                BoolNode left = boolExpr(node.getLeft());
+                BoolNode right = boolExpr(node.getRight());
+                return node.getOperation() == Operation.BOOL_NEQ
+                        ? frame -> left.evalBool(frame) != right.evalBool(frame)
+                        : frame -> left.evalBool(frame) == right.evalBool(frame);
+            }
+            default:
+                break;
+        }
+
+        ExprNode left = expr(node.getLeft());
+        ExprNode right = expr(node.getRight());
+        switch (node.getOperation()) {
+            case STRING_EQ:
+                return frame -> left.eval(frame).getStringValue().equals(right.eval(frame).getStringValue());
+            case STRING_NEQ:
+                return frame -> !left.eval(frame).getStringValue().equals(right.eval(frame).getStringValue());
+            case OBJECT_EQ:
+                return frame -> left.eval(frame).getObjectValue() == right.eval(frame).getObjectValue();
+            case OBJECT_NEQ:
+                return frame -> left.eval(frame).getObjectValue() != right.eval(frame).getObjectValue();
+            case VALUE_EQ:
+                return frame -> RuntimeSupport.valuesEqual(left.eval(frame), right.eval(frame));
+            case VALUE_NEQ:
+                return frame -> !RuntimeSupport.valuesEqual(left.eval(frame), right.eval(frame));
+            default:
+                throw new RuntimeError("unknown binary operation: " + node.getOperation());
+        }
+    }
+
+    @Override
+    public Object visitUnaryExpr(UnaryExpr node) {
+        switch (node.getOperation()) {
+            case INT_PLUS: {
+                IntNode operand = intExpr(node.getOperand());
+                return (IntNode) operand::evalInt;
+            }
+            case INT_NEG: {
+                IntNode operand = intExpr(node.getOperand());
+                return (IntNode) frame -> -operand.evalInt(frame);
+            }
+            case BOOL_NOT: {
+                BoolNode operand = boolExpr(node.getOperand());
+                return (BoolNode) frame -> !operand.evalBool(frame);
+            }
+            default:
+                throw new RuntimeError("unknown unary operation: " + node.getOperation());
+        }
+    }
+
+    @Override
+    public Object visitAssignExpr(AssignExpr node) {
+        ExprNode target = lvalue(node.getTarget());
+        ExprNode value = expr(node.getValue());
+
+        return (ExprNode) frame -> {
+            Value targetValue = target.eval(frame);
+            Value newValue = value.eval(frame);
+
+            // assignment writes through references
+            targetValue.assign(newValue);
+            return newValue;
+        };
+    }
+
+    @Override
+    public Object visitVarExpr(VarExpr node) {
+        if (node.isReceiverField()) {
+            int offset = node.getFieldOffset();
+            return typed(node.getType(), frame -> frame.receiver.getField(offset));
+        }
+        int slot = node.getSlot();
+        return typed(node.getType(), frame -> frame.locals[slot]);
+    }
+
+    @Override
+    public Object visitCallExpr(CallExpr node) {
+        // check for built-in functions
+        if (node.getFunctionName().startsWith("print_")) {
+            return compileBuiltin(node.getFunctionName(), node.getArguments());
+        }
+
+        FunctionDecl func = functionsByName.get(node.getFunctionName());
+        if (func == null) {
+            throw new RuntimeError("function '" + node.getFunctionName() + "' not found");
+        }
+        return compileFunctionCall(func, node.getArguments());
+    }
+
+    @Override
+    public Object visitMemberAccessExpr(MemberAccessExpr node) {
+        if (!node.isMethodCall()) {
+            // field access, a chain a.b.c along its offset path from the root
+            String name = node.getMemberName();
+            ExprNode root = expr(node.getPathRoot());
+            int[] path = node.getFieldPath();
+            if (path.length > 1) {
+                return typed(node.getType(), frame -> root.eval(frame).getObjectValue().getField(path));
+            }
+            int offset = path[0];
+            return typed(node.getType(), frame -> {
+                ObjectValue obj = root.eval(frame).getObjectValue();
+                Value field = obj.getField(offset);
+                if (field == null) {
+                    throw new RuntimeError("field '" + name + "' not found in class '" + obj.getClassSymbol().getName() + "'");
+                }
+                return field;
+            });
+        }
+
+        ExprNode object = expr(node.getObject());
+
+        // Get the STATIC type from the expression (the declared type of the reference/variable)
+        ClassSymbol staticClass = classes.get(node.getObject().getType().getClassName());
+
+        // Use resolved method from semantic analysis (handles overloading)
+        MethodSymbol method = node.getResolvedMethod();
+        if (method == null) {
+            method = staticClass.lookupMethod(node.getMemberName());
+        }
+        if (method == null) {
+            throw new RuntimeError("method '" + node.getMemberName() + "' not found");
+        }
+
+        return new MethodCallNode(object, method, node.getVtableSlot(), args(node.getArguments(), method.getParameters()));
+    }
+
+    @Override
+    public Object visitConstructorCallExpr(ConstructorCallExpr node) {
+        // built-ins, functions and overloads are resolved here once instead of on every call
+        if (node.getClassName().startsWith("print_")) {
+            return compileBuiltin(node.getClassName(), node.getArguments());
+        }
+
+        if (node.isFunctionCall()) {
+            return compileFunctionCall(node.getResolvedFunction().getDeclaration(), node.getArguments());
+        }
+
+        // otherwise, it's a constructor call
+        ClassSymbol classSymbol = classes.get(node.getClassName());
+        if (classSymbol == null) {
+            throw new RuntimeError("class '" + node.getClassName() + "' not found");
+        }
+        Type type = classSymbol.getType();
+        boolean temporary = node.isTemporary();
+
+        // implicit copy constructor
+        if (node.isImplicitCopy()) {
+            ExprNode source = expr(node.getArguments().get(0));
+            return (ExprNode) frame -> {
+                ObjectValue obj = support.copyObject(source.eval(frame).getObjectValue(), classSymbol);
+                if (temporary) {
+                    obj.markTemporary();
+                }
+                return new Value(type, obj);
+            };
+        }
+
+        // constructor bound by the semantic analysis
+        CompiledFunction constructor = null;
+        ExprNode[] arguments = new ExprNode[0];
+        ConstructorSymbol constructorSymbol = node.getResolvedConstructor();
+        if (constructorSymbol != null) {
+            constructor = constructors.get(constructorSymbol.getDeclaration());
+            arguments = args(node.getArguments(), constructorSymbol.getParameters());
+        }
+
+        CompiledFunction target = constructor;
+        ExprNode[] targetArguments = arguments;
+        int regionIndex = node.getRegionIndex();
+        usesRegion |= regionIndex >= 0;
+        return (ExprNode) frame -> {
+            ObjectValue obj = regionIndex >= 0
+                    ? newObject(classSymbol, frame.region.allocate(regionIndex, classSymbol))
+                    : newObject(classSymbol);
+            if (target != null) {
+                target.invoke(obj, evalArgs(targetArguments, frame));
+            }
+            if (temporary) {
+                obj.markTemporary();
+            }
+            return new Value(type, obj);
+        };
+    }
+
+    @Override
+    public Object visitLiteralExpr(LiteralExpr node) {
+        switch (node.getLiteralType()) {
+            case INT: {
+                int intValue = node.getIntValue();
+                Value value = RuntimeSupport.literalValue(node);
+                return new IntNode() {
+                    @Override
+                    public int evalInt(Frame frame) {
+                        return intValue;
+                    }
+
+                    @Override
+                    public Value eval(Frame frame) {
+                        return value;
+                    }
+                };
+            }
+            case BOOL: {
+                boolean boolValue = node.getBoolValue();
+                Value value = RuntimeSupport.literalValue(node);
+                return new BoolNode() {
+                    @Override
+                    public boolean evalBool(Frame frame) {
+                        return boolValue;
+                    }
+
+                    @Override
+                    public Value eval(Frame frame) {
+                        return value;
+                    }
+                };
+            }
+            case CHAR:
+            case STRING: {
+                Value value = RuntimeSupport.literalValue(node);
+                return (ExprNode) frame -> value;
+            }
+            default:
+                throw new RuntimeError("unknown literal type");
+        }
+    }
+
+    @Override
+    public Object visitType(Type node) {
+        // types are not compiled
+        return null;
+    }
+
+    // helper methods
+
+    private StmtNode stmt(Statement statement) {
+        return (StmtNode) statement.accept(this);
+    }
+
+    private ExprNode expr(Expression expression) {
+        return (ExprNode) expression.accept(this);
+    }
+
+    private IntNode intExpr(Expression expression) {
+        ExprNode node = expr(expression);
+        if (node instanceof IntNode) {
+            return (IntNode) node;
+        }
+        return frame -> node.eval(frame).getIntValue();
+    }
+
+    private BoolNode boolExpr(Expression expression) {
+        ExprNode node = expr(expression);
+        if (node instanceof BoolNode) {
+            return (BoolNode) node;
+        }
+        return frame -> node.eval(frame).getBoolValue();
+    }
+
+    // condition converted to bool by its test (see OperatorLowering)
+    private BoolNode condition(Expression expression, Operation test) {
+        switch (test) {
+            case BOOL_TEST:
+                return boolExpr(expression);
+            case INT_TEST: {
+                IntNode node = intExpr(expression);
+                return frame -> node.evalInt(frame) != 0;
+            }
+            default: {
+                ExprNode node = expr(expression);
+                return frame -> RuntimeSupport.test(test, node.eval(frame));
+            }
+        }
+    }
+
+    /**
+     * wrap a node that returns a variable or field so int and bool values can be
+     * read directly (eval still returns the variable itself, e.g. for references)
+     */
+    private ExprNode typed(Type type, ExprNode node) {
+        Type.BaseType baseType = type != null ? type.getBaseType() : null;
+        if (baseType == Type.BaseType.INT) {
+            return new IntNode() {
+                @Override
+                public int evalInt(Frame frame) {
+                    return node.eval(frame).getIntValue();
+                }
+
+                @Override
+                public Value eval(Frame frame) {
+                    return node.eval(frame);
+                }
+            };
+        }
+        if (baseType == Type.BaseType.BOOL) {
+            return new BoolNode() {
+                @Override
+                public boolean evalBool(Frame frame) {
+                    return node.eval(frame).getBoolValue();
+                }
+
+                @Override
+                public Value eval(Frame frame) {
+                    return node.eval(frame);
+                }
+            };
+        }
+        return node;
+    }
+
+    private ExprNode lvalue(Expression expression) {
+        if (expression instanceof VarExpr) {
+            VarExpr varExpr = (VarExpr) expression;
+            if (varExpr.isReceiverField()) {
+                int offset = varExpr.getFieldOffset();
+                return frame -> frame.receiver.getFieldForWrite(offset);
+            }
+            int slot = varExpr.getSlot();
+            return frame -> frame.locals[slot];
+        } else if (expression instanceof MemberAccessExpr && !((MemberAccessExpr) expression).isMethodCall()) {
+            MemberAccessExpr memberAccess = (MemberAccessExpr) expression;
+            ExprNode root = expr(memberAccess.getPathRoot());
+            int[] path = memberAccess.getFieldPath();
+            if (path.length > 1) {
+                return frame -> root.eval(frame).getObjectValue().getFieldForWrite(path);
+            }
+            int offset = path[0];
+            return frame -> root.eval(frame).getObjectValue().getFieldForWrite(offset);
+        } else {
+            throw new RuntimeError("expression is not an lvalue");
+        }
+    }
+
+    /**
+     * the value a reference gets bound to; fields on the way are pinned in their
+     * objects, so writes through the reference never reach a copy
+     */
+    private ExprNode reference(Expression expression) {
+        if (expression instanceof VarExpr && ((VarExpr) expression).isReceiverField()) {
+            int offset = ((VarExpr) expression).getFieldOffset();
+            return frame -> frame.receiver.getFieldForReference(offset);
+        } else if (expression instanceof MemberAccessExpr && !((MemberAccessExpr) expression).isMethodCall()) {
+            MemberAccessExpr memberAccess = (MemberAccessExpr) expression;
+            ExprNode root = reference(memberAccess.getPathRoot());
+            int[] path = memberAccess.getFieldPath();
+            return frame -> root.eval(frame).getObjectValue().getFieldForReference(path);
+        }
+        return expr(expression);
+    }
+
+    // a value parameter gets its copy when its argument is evaluated, so a later
+    // argument cannot change it (f(id(x), bump(x)) with id returning x's cell)
+    private ExprNode[] args(List<Expression> arguments, List<Parameter> parameters) {
+        ExprNode[] nodes = new ExprNode[arguments.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            Parameter param = parameters.get(i);
+            if (param.isReference()) {
+                nodes[i] = reference(arguments.get(i));
+            } else {
+                ExprNode value = expr(arguments.get(i));
+                Type type = param.getType();
+                nodes[i] = frame -> support.copyValueWithSlicing(value.eval(frame), type);
+            }
+        }
+        return nodes;
+    }
+
+    private static Value[] evalArgs(ExprNode[] arguments, Frame frame) {
+        if (arguments.length == 0) {
+            return NO_ARGS;
+        }
+        Value[] values = new Value[arguments.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = arguments[i].eval(frame);
+        }
+        return values;
+    }
+
+    private ExprNode compileFunctionCall(FunctionDecl func, List<Expression> arguments) {
+        CompiledFunction target = functions.get(func);
+        ExprNode[] argNodes = args(arguments, func.getParameters());
+        return frame -> target.invoke(null, evalArgs(argNodes, frame));
+    }
+
+    private ExprNode compileBuiltin(String name, List<Expression> arguments) {
+        Expression arg = arguments.get(0);
+        switch (name) {
+            case "print_int": {
+                IntNode value = intExpr(arg);
+                return frame -> {
+                    System.out.println(value.evalInt(frame));
+                    return Value.defaultValue(Type.VOID);
+                };
+            }
+            case "print_bool": {
+                BoolNode value = boolExpr(arg);
+                return frame -> {
+                    System.out.println(value.evalBool(frame));
+                    return Value.defaultValue(Type.VOID);
+                };
+            }
+            case "print_char": {
+                ExprNode value = expr(arg);
+                return frame -> {
+                    System.out.println(value.eval(frame).getCharValue());
+                    return Value.defaultValue(Type.VOID);
+                };
+            }
+            case "print_string": {
+                ExprNode value = expr(arg);
+                return frame -> {
+                    System.out.println(value.eval(frame).getStringValue());
+                    return Value.defaultValue(Type.VOID);
+                };
+            }
+            default: {
+                // unknown built-ins fail when they are called, like in the interpreter
+                ExprNode value = expr(arg);
+                return frame -> RuntimeSupport.executeBuiltin(name, value.eval(frame));
+            }
+        }
+    }
+
+    // object creation (same order as the interpreter)
+
+    /**
+     * new object with initialized fields and base constructors already run
+     * (following the instantiation plan of the class)
+     */
+    private ObjectValue newObject(ClassSymbol classSymbol) {
+        return newObject(classSymbol, classSymbol.getInstantiationPlan().instantiate());
+    }
+
+    // set up an instantiated object (or one from a Region)
+    private ObjectValue newObject(ClassSymbol classSymbol, ObjectValue obj) {
+        InstantiationPlan plan = classSymbol.getInstantiationPlan();
+        for (int i = 0; i < plan.getObjectFieldCount(); i++) {
+            ClassSymbol fieldClass = plan.getObjectFieldClass(i);
+            if (!plan.isLazyObjectField(i)) {
+                plan.setObjectField(obj, i, defaultConstruct(fieldClass));
+            } else if (fieldClass.getInstantiationPlan().getTemplate() == null) {
+                // lazy field: constructed on first access from the template
+                fieldClass.getInstantiationPlan().setTemplate(defaultConstruct(fieldClass));
+            }
+        }
+        for (ConstructorSymbol constructor : plan.getBaseConstructors()) {
+            constructors.get(constructor.getDeclaration()).invoke(obj, NO_ARGS);
+        }
+        return obj;
+    }
+
+    /**
+     * new object with its default constructor run (if it has one)
+     */
+    private ObjectValue defaultConstruct(ClassSymbol classSymbol) {
+        return defaultConstruct(classSymbol, classSymbol.getInstantiationPlan().instantiate());
+    }
+
+    private ObjectValue defaultConstruct(ClassSymbol classSymbol, ObjectValue obj) {
+        newObject(classSymbol, obj);
+        CompiledFunction constructor = defaultConstructors.get(classSymbol);
+        if (constructor != null) {
+            constructor.invoke(obj, NO_ARGS);
+        }
+        return obj;
+    }
+
+
+
+    /**
+     * obj.method(args) with an inline cache for virtual dispatch
+     */
+    private class MethodCallNode implements ExprNode {
+        private final ExprNode object;
+        private final CompiledFunction staticTarget;     // null for virtual calls
+        private final InlineCache<CompiledFunction> cache;
+        private final ExprNode[] arguments;
+
+        MethodCallNode(ExprNode object, MethodSymbol method, int vtableSlot, ExprNode[] arguments) {
+            this.object = object;
+            this.staticTarget = vtableSlot >= 0 ? null : methods.get(method);
+            this.cache = vtableSlot >= 0 ? new InlineCache<>(vtableSlot, methods::get) : null;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public Value eval(Frame frame) {
+            ObjectValue obj = object.eval(frame).getObjectValue();
+            CompiledFunction target = staticTarget != null ? staticTarget : cache.lookup(obj.getClassSymbol());
+            return target.invoke(obj, evalArgs(arguments, frame));
+        }
+    }
+}
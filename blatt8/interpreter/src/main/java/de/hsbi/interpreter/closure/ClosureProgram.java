@@ -0,0 +1,27 @@
+package de.hsbi.interpreter.closure;
+
+import de.hsbi.interpreter.runtime.Value;
+
+/**
+ * result of the closure compiler
+ */
+public class ClosureProgram {
+    private CompiledFunction main; // null if the program has no main function
+
+    public ClosureProgram(CompiledFunction main) {
+        this.main = main;
+    }
+
+    public CompiledFunction getMain() {
+        return main;
+    }
+
+    /**
+     * run the main function (if it exists)
+     */
+    public void run() {
+        if (main != null) {
+            main.invoke(null, new Value[0]);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package de.hsbi.interpreter.closure;
+
+import de.hsbi.interpreter.ast.Parameter;
+import de.hsbi.interpreter.ast.Type;
+import de.hsbi.interpreter.runtime.ObjectValue;
+import de.hsbi.interpreter.runtime.Region;
+import de.hsbi.interpreter.runtime.RegionStack;
+import de.hsbi.interpreter.runtime.Value;
+
+import java.util.List;
+
+/**
+ * a function, method or constructor compiled to a closure tree
+ */
+public class CompiledFunction {
+    private String name;
+    private int frameSize;
+    private Type returnType;
+    private StmtNode body;
+    private RegionStack regions; // set if the body has region variables
+
+    // parameter slots (copied from the declaration for fast access)
+    private int[] paramSlots;
+
+    public CompiledFunction(String name, List<Parameter> parameters, int frameSize, Type returnType) {
+        this.name = name;
+        this.frameSize = frameSize;
+        this.returnType = returnType;
+
+        int paramCount = parameters.size();
+        this.paramSlots = new int[paramCount];
+        for (int i = 0; i < paramCount; i++) {
+            paramSlots[i] = parameters.get(i).getSlot();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // bodies are set after all functions exist, so calls can refer to any function
+    void setBody(StmtNode body) {
+        this.body = body;
+    }
+
+    void setRegions(RegionStack regions) {
+        this.regions = regions;
+    }
+
+    /**
+     * run the function
+     * @param receiver the object for methods and constructors, null for functions
+     * @param arguments the cells the parameters bind to: the argument's own cell for a
+     *                  reference parameter, a copy of the argument otherwise (see ClosureCompiler.args)
+     */
+    public Value invoke(ObjectValue receiver, Value[] arguments) {
+        Frame frame = execute(receiver, arguments);
+        // a tail call runs after the call that made it has ended
+        while (frame.tailCall != null) {
+            frame = frame.tailCall.execute(null, frame.tailArguments);
+        }
+        return frame.getReturnValue();
+    }
+
+    // run the body in a new frame, which holds the result or the tail call afterwards
+    private Frame execute(ObjectValue receiver, Value[] arguments) {
+        if (regions == null) {
+            Frame frame = new Frame(frameSize, receiver, null);
+            run(frame, arguments);
+            return frame;
+        }
+        Region region = regions.enter();
+        try {
+            Frame frame = new Frame(frameSize, receiver, region);
+            run(frame, arguments);
+            return frame;
+        } finally {
+            regions.exit();
+        }
+    }
+
+    private void run(Frame frame, Value[] arguments) {
+        Value[] locals = frame.locals;
+
+        // bind parameters
+        for (int i = 0; i < arguments.length; i++) {
+            locals[paramSlots[i]] = arguments[i];
+        }
+
+        boolean returned = body != null && body.exec(frame);
+
+        // if no return, return default value
+        if (!returned) {
+            frame.returnValue = Value.defaultValue(returnType);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<function " + name + ">";
+    }
+}
@@ -0,0 +1,11 @@
+package de.hsbi.interpreter.closure;
+
+import de.hsbi.interpreter.runtime.Value;
+
+/**
+ * compiled expression
+ */
+@FunctionalInterface
+public interface ExprNode {
+    Value eval(Frame frame);
+}
@@ -0,0 +1,28 @@
+package de.hsbi.interpreter.closure;
+
+import de.hsbi.interpreter.runtime.ObjectValue;
+import de.hsbi.interpreter.runtime.Region;
+import de.hsbi.interpreter.runtime.Value;
+
+/**
+ * activation record of one call in the closure engine
+ */
+public class Frame {
+    // accessed directly by the compiled nodes
+    final Value[] locals;
+    final ObjectValue receiver; // object of a method/constructor, null for functions
+    final Region region; // objects of the region variables, null if the call has none
+    Value returnValue; // set by a return statement
+    CompiledFunction tailCall; // set by return f(...) instead of the return value
+    Value[] tailArguments;
+
+    public Frame(int frameSize, ObjectValue receiver, Region region) {
+        this.locals = new Value[frameSize];
+        this.receiver = receiver;
+        this.region = region;
+    }
+
+    public Value getReturnValue() {
+        return returnValue;
+    }
+}
@@ -0,0 +1,17 @@
+package de.hsbi.interpreter.closure;
+
+import de.hsbi.interpreter.runtime.Value;
+
+/**
+ * compiled expression of static type int
+ * nested int expressions are evaluated without creating intermediate values
+ */
+@FunctionalInterface
+public interface IntNode extends ExprNode {
+    int evalInt(Frame frame);
+
+    @Override
+    default Value eval(Frame frame) {
+        return Value.ofInt(evalInt(frame));
+    }
+}
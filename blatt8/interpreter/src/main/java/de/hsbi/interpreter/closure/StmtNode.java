@@ -0,0 +1,12 @@
+package de.hsbi.interpreter.closure;
+
+/**
+ * compiled statement
+ */
+@FunctionalInterface
+public interface StmtNode {
+    /**
+     * @return true if a return statement was executed (the value is in the frame)
+     */
+    boolean exec(Frame frame);
+}
@@ -0,0 +1,342 @@
+package de.hsbi.interpreter.jit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * builds the code of one JVM method
+ * keeps track of the operand stack depth to compute max_stack
+ */
+public class CodeBuilder {
+    // opcodes (only the ones the compilers need)
+    public static final int ACONST_NULL = 0x01;
+    public static final int ICONST_0 = 0x03;
+    public static final int BIPUSH = 0x10;
+    public static final int SIPUSH = 0x11;
+    public static final int LDC = 0x12;
+    public static final int LDC_W = 0x13;
+    public static final int ILOAD = 0x15;
+    public static final int ALOAD = 0x19;
+    public static final int AALOAD = 0x32;
+    public static final int ISTORE = 0x36;
+    public static final int ASTORE = 0x3a;
+    public static final int AASTORE = 0x53;
+    public static final int POP = 0x57;
+    public static final int DUP = 0x59;
+    public static final int DUP_X1 = 0x5a;
+    public static final int IADD = 0x60;
+    public static final int ISUB = 0x64;
+    public static final int IMUL = 0x68;
+    public static final int INEG = 0x74;
+    public static final int IXOR = 0x82;
+    public static final int IFEQ = 0x99;
+    public static final int IFNE = 0x9a;
+    public static final int IF_ICMPEQ = 0x9f;
+    public static final int IF_ICMPNE = 0xa0;
+    public static final int IF_ICMPLT = 0xa1;
+    public static final int IF_ICMPGE = 0xa2;
+    public static final int IF_ICMPGT = 0xa3;
+    public static final int IF_ICMPLE = 0xa4;
+    public static final int IF_ACMPEQ = 0xa5;
+    public static final int IF_ACMPNE = 0xa6;
+    public static final int GOTO = 0xa7;
+    public static final int IRETURN = 0xac;
+    public static final int ARETURN = 0xb0;
+    public static final int RETURN = 0xb1;
+    public static final int GETSTATIC = 0xb2;
+    public static final int PUTSTATIC = 0xb3;
+    public static final int GETFIELD = 0xb4;
+    public static final int PUTFIELD = 0xb5;
+    public static final int INVOKEVIRTUAL = 0xb6;
+    public static final int INVOKESPECIAL = 0xb7;
+    public static final int INVOKESTATIC = 0xb8;
+    public static final int INVOKEINTERFACE = 0xb9;
+    public static final int NEW = 0xbb;
+    public static final int ANEWARRAY = 0xbd;
+    public static final int CHECKCAST = 0xc0;
+    private static final int WIDE = 0xc4;
+
+    // branch offsets are signed 16 bit, so longer methods are not supported
+    private static final int MAX_CODE_LENGTH = Short.MAX_VALUE;
+
+    /**
+     * jump target; branches to unbound labels are patched when the label is bound
+     */
+    public static class Label {
+        private int position = -1;
+        private List<int[]> pendingBranches = new ArrayList<>(); // {instruction start, offset position}
+    }
+
+    private ClassFileWriter classFile;
+    private byte[] code;
+    private int size;
+    private int depth;
+    private int maxStack;
+    private int maxLocals;
+
+    CodeBuilder(ClassFileWriter classFile) {
+        this.classFile = classFile;
+        this.code = new byte[64];
+    }
+
+    public int getMaxStack() {
+        return maxStack;
+    }
+
+    public int getMaxLocals() {
+        return maxLocals;
+    }
+
+    public void setMaxLocals(int maxLocals) {
+        this.maxLocals = Math.max(this.maxLocals, maxLocals);
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * set the stack depth explicitly (after an unconditional jump the
+     * following code is reached from a branch with a different depth)
+     */
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(code, size);
+    }
+
+    // instructions
+
+    public void op(int opcode) {
+        write(opcode);
+        adjust(stackEffect(opcode));
+    }
+
+    public void iconst(int value) {
+        if (value >= -1 && value <= 5) {
+            write(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            write(BIPUSH);
+            write(value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            write(SIPUSH);
+            writeShort(value);
+        } else {
+            ldc(classFile.integer(value));
+            return;
+        }
+        adjust(1);
+    }
+
+    public void sconst(String value) {
+        ldc(classFile.string(value));
+    }
+
+    private void ldc(int index) {
+        if (index <= 0xFF) {
+            write(LDC);
+            write(index);
+        } else {
+            write(LDC_W);
+            writeShort(index);
+        }
+        adjust(1);
+    }
+
+    public void iload(int local) {
+        local(ILOAD, local);
+        adjust(1);
+    }
+
+    public void istore(int local) {
+        local(ISTORE, local);
+        adjust(-1);
+    }
+
+    public void aload(int local) {
+        local(ALOAD, local);
+        adjust(1);
+    }
+
+    public void astore(int local) {
+        local(ASTORE, local);
+        adjust(-1);
+    }
+
+    private void local(int opcode, int local) {
+        if (local > 0xFF) {
+            write(WIDE);
+            write(opcode);
+            writeShort(local);
+        } else {
+            write(opcode);
+            write(local);
+        }
+        setMaxLocals(local + 1);
+    }
+
+    public void jump(int opcode, Label target) {
+        int start = size;
+        write(opcode);
+        if (target.position >= 0) {
+            writeShort(target.position - start);
+        } else {
+            target.pendingBranches.add(new int[] {start, size});
+            writeShort(0);
+        }
+        adjust(stackEffect(opcode));
+    }
+
+    public void bind(Label label) {
+        label.position = size;
+        for (int[] branch : label.pendingBranches) {
+            int offset = size - branch[0];
+            code[branch[1]] = (byte) (offset >> 8);
+            code[branch[1] + 1] = (byte) offset;
+        }
+        label.pendingBranches.clear();
+    }
+
+    public void invokestatic(String owner, String name, String descriptor) {
+        invoke(INVOKESTATIC, classFile.methodRef(owner, name, descriptor), descriptor, false);
+    }
+
+    public void invokevirtual(String owner, String name, String descriptor) {
+        invoke(INVOKEVIRTUAL, classFile.methodRef(owner, name, descriptor), descriptor, true);
+    }
+
+    public void invokespecial(String owner, String name, String descriptor) {
+        invoke(INVOKESPECIAL, classFile.methodRef(owner, name, descriptor), descriptor, true);
+    }
+
+    public void invokeinterface(String owner, String name, String descriptor) {
+        int index = classFile.interfaceMethodRef(owner, name, descriptor);
+        write(INVOKEINTERFACE);
+        writeShort(index);
+        write(1 + argumentCount(descriptor));
+        write(0);
+        adjust(callStackEffect(descriptor, true));
+    }
+
+    private void invoke(int opcode, int index, String descriptor, boolean hasReceiver) {
+        write(opcode);
+        writeShort(index);
+        adjust(callStackEffect(descriptor, hasReceiver));
+    }
+
+    public void getstatic(String owner, String name, String descriptor) {
+        write(GETSTATIC);
+        writeShort(classFile.fieldRef(owner, name, descriptor));
+        adjust(1);
+    }
+
+    public void putstatic(String owner, String name, String descriptor) {
+        write(PUTSTATIC);
+        writeShort(classFile.fieldRef(owner, name, descriptor));
+        adjust(-1);
+    }
+
+    public void getfield(String owner, String name, String descriptor) {
+        write(GETFIELD);
+        writeShort(classFile.fieldRef(owner, name, descriptor));
+        // the object on the stack is replaced by the field value
+    }
+
+    public void putfield(String owner, String name, String descriptor) {
+        write(PUTFIELD);
+        writeShort(classFile.fieldRef(owner, name, descriptor));
+        adjust(-2);
+    }
+
+    public void typeOp(int opcode, String internalName) {
+        write(opcode);
+        writeShort(classFile.classRef(internalName));
+        adjust(stackEffect(opcode));
+    }
+
+    // helpers
+
+    private static int stackEffect(int opcode) {
+        switch (opcode) {
+            case ACONST_NULL:
+            case DUP:
+            case DUP_X1:
+            case NEW:
+                return 1;
+            case POP:
+            case AALOAD:
+            case IADD:
+            case ISUB:
+            case IMUL:
+            case IXOR:
+            case IFEQ:
+            case IFNE:
+            case IRETURN:
+            case ARETURN:
+                return -1;
+            case IF_ICMPEQ:
+            case IF_ICMPNE:
+            case IF_ICMPLT:
+            case IF_ICMPGE:
+            case IF_ICMPGT:
+            case IF_ICMPLE:
+            case IF_ACMPEQ:
+            case IF_ACMPNE:
+                return -2;
+            case AASTORE:
+                return -3;
+            default:
+                // INEG, GOTO, RETURN, ANEWARRAY, CHECKCAST
+                return 0;
+        }
+    }
+
+    private static int argumentCount(String descriptor) {
+        int count = 0;
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            char c = descriptor.charAt(i);
+            while (c == '[') {
+                c = descriptor.charAt(++i);
+            }
+            if (c == 'L') {
+                i = descriptor.indexOf(';', i);
+            }
+            i++;
+            count++;
+        }
+        return count;
+    }
+
+    private static int callStackEffect(String descriptor, boolean hasReceiver) {
+        int effect = -argumentCount(descriptor) - (hasReceiver ? 1 : 0);
+        return descriptor.endsWith(")V") ? effect : effect + 1;
+    }
+
+    private void adjust(int stackEffect) {
+        depth += stackEffect;
+        maxStack = Math.max(maxStack, depth);
+    }
+
+    private void write(int b) {
+        if (size == code.length) {
+            code = Arrays.copyOf(code, size * 2);
+        }
+        code[size++] = (byte) b;
+        if (size > MAX_CODE_LENGTH) {
+            throw new IllegalStateException("method too large");
+        }
+    }
+
+    private void writeShort(int value) {
+        write(value >> 8);
+        write(value);
+    }
+}
@@ -0,0 +1,18 @@
+package de.hsbi.interpreter.jit;
+
+import de.hsbi.interpreter.runtime.ObjectValue;
+import de.hsbi.interpreter.runtime.Value;
+
+/**
+ * entry point into JIT-compiled code
+ */
+public interface CompiledCode {
+    /**
+     * run the compiled code
+     * - functions: values are the arguments, the result is the return value
+     * - loops: values is the frame of the running function, the result is the value
+     *   of a return statement inside the loop or null if the loop just finished
+     * @param receiver the object of the method running a loop, null otherwise
+     */
+    Value run(Value[] values, ObjectValue receiver);
+}
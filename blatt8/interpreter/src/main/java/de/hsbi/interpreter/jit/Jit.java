@@ -0,0 +1,144 @@
+package de.hsbi.interpreter.jit;
+
+import de.hsbi.interpreter.ast.ASTNode;
+import de.hsbi.interpreter.ast.FunctionDecl;
+import de.hsbi.interpreter.ast.MethodDecl;
+import de.hsbi.interpreter.ast.WhileStmt;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * tiering policy of the tree-walking interpreter
+ *
+ * the interpreter counts calls per function and back-edges per loop;
+ * functions called often are compiled as a whole, loops that run long are
+ * compiled on their next iteration and continue in compiled code. methods
+ * are only compiled loop by loop (their bodies work on the receiver object).
+ * counters and compiled code are kept here per function and loop, the AST
+ * holds no engine state
+ */
+public class Jit {
+    public static final int INVOCATION_THRESHOLD = 500;
+    public static final int BACK_EDGE_THRESHOLD = 5000;
+
+    private JitCompiler compiler;
+    private boolean log;
+    private Map<ASTNode, Profile> profiles = new IdentityHashMap<>();
+
+    // calls or back-edges of a function or loop, and its compiled code once there is one
+    private static class Profile {
+        int count;
+        CompiledCode code;
+    }
+
+    public Jit(boolean log) {
+        this.compiler = new JitCompiler();
+        this.log = log;
+    }
+
+    /**
+     * count a call of a function and compile it when it gets hot
+     * @return the compiled code of the function, null while it is interpreted
+     */
+    public CompiledCode countInvocation(FunctionDecl func) {
+        Profile profile = profile(func);
+        if (profile.code != null || ++profile.count != INVOCATION_THRESHOLD) {
+            return profile.code;
+        }
+
+        try {
+            List<FunctionDecl> compiled = compiler.compileFunction(func);
+            install(compiled);
+            log("compiled function " + func.getName() + " after " + INVOCATION_THRESHOLD + " calls"
+                    + alsoCompiled(compiled, func));
+        } catch (NotCompilableException e) {
+            log("function " + func.getName() + " stays interpreted: " + e.getMessage());
+        }
+        return profile.code;
+    }
+
+    /**
+     * the compiled code of a loop, null while it is interpreted
+     */
+    public CompiledCode getCompiledCode(WhileStmt loop) {
+        Profile profile = profiles.get(loop);
+        return profile != null ? profile.code : null;
+    }
+
+    /**
+     * count an iteration of an interpreted loop and compile the loop when it gets hot
+     * @return the compiled code of the loop, null while it is interpreted
+     */
+    public CompiledCode countBackEdge(FunctionDecl func, WhileStmt loop) {
+        Profile profile = profile(loop);
+        if (profile.code != null || ++profile.count != BACK_EDGE_THRESHOLD) {
+            return profile.code;
+        }
+
+        try {
+            List<FunctionDecl> compiled = compiler.compileLoop(loop, func.getParameters(), func.getBody(),
+                    func.getFrameSize(), func.getReturnType());
+            install(compiled);
+            profile.code = compiler.getCompiledCode(loop);
+            log("compiled loop at line " + loop.getLine() + " in " + func.getName() + " after "
+                    + BACK_EDGE_THRESHOLD + " back-edges" + alsoCompiled(compiled, null));
+        } catch (NotCompilableException e) {
+            log("loop at line " + loop.getLine() + " in " + func.getName() + " stays interpreted: " + e.getMessage());
+        }
+        return profile.code;
+    }
+
+    public CompiledCode countBackEdge(MethodDecl method, WhileStmt loop) {
+        Profile profile = profile(loop);
+        if (profile.code != null || ++profile.count != BACK_EDGE_THRESHOLD) {
+            return profile.code;
+        }
+
+        try {
+            List<FunctionDecl> compiled = compiler.compileLoop(loop, method.getParameters(), method.getBody(),
+                    method.getFrameSize(), method.getReturnType());
+            install(compiled);
+            profile.code = compiler.getCompiledCode(loop);
+            log("compiled loop at line " + loop.getLine() + " in method " + method.getName() + " after "
+                    + BACK_EDGE_THRESHOLD + " back-edges" + alsoCompiled(compiled, null));
+        } catch (NotCompilableException e) {
+            log("loop at line " + loop.getLine() + " in method " + method.getName() + " stays interpreted: "
+                    + e.getMessage());
+        }
+        return profile.code;
+    }
+
+    private Profile profile(ASTNode node) {
+        Profile profile = profiles.get(node);
+        if (profile == null) {
+            profile = new Profile();
+            profiles.put(node, profile);
+        }
+        return profile;
+    }
+
+    // functions compiled along with a function or loop run compiled from their next call on
+    private void install(List<FunctionDecl> compiled) {
+        for (FunctionDecl func : compiled) {
+            profile(func).code = compiler.getCompiledCode(func);
+        }
+    }
+
+    private static String alsoCompiled(List<FunctionDecl> compiled, FunctionDecl root) {
+        StringBuilder sb = new StringBuilder();
+        for (FunctionDecl func : compiled) {
+            if (func != root) {
+                sb.append(sb.length() == 0 ? " (with " : ", ").append(func.getName());
+            }
+        }
+        return sb.length() == 0 ? "" : sb.append(')').toString();
+    }
+
+    private void log(String message) {
+        if (log) {
+            System.err.println("[jit] " + message);
+        }
+    }
+}
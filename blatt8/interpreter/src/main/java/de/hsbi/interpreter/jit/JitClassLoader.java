@@ -0,0 +1,15 @@
+package de.hsbi.interpreter.jit;
+
+/**
+ * class loader for generated classes
+ * all generated classes share one loader, so they can call each other directly
+ */
+class JitClassLoader extends ClassLoader {
+    JitClassLoader(ClassLoader parent) {
+        super(parent);
+    }
+
+    Class<?> define(String internalName, byte[] bytes) {
+        return defineClass(internalName.replace('/', '.'), bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,897 @@
+package de.hsbi.interpreter.jit;
+
+import de.hsbi.interpreter.ast.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * compiles hot functions and loops to JVM bytecode
+ *
+ * only code that works on int, bool and char values is compiled: those values
+ * live in JVM int locals instead of Value objects. functions called from
+ * compiled code are compiled into the same class (they have to be compilable
+ * too). anything else throws NotCompilableException and stays interpreted.
+ */
+public class JitCompiler implements ASTVisitor<Void> {
+    private static final String GENERATED_PACKAGE = "de/hsbi/interpreter/jit/gen/";
+    private static final String RUNTIME = "de/hsbi/interpreter/jit/JitRuntime";
+    private static final String COMPILED_CODE = "de/hsbi/interpreter/jit/CompiledCode";
+    private static final String OBJECT = "java/lang/Object";
+    private static final String VALUE_DESCRIPTOR = "Lde/hsbi/interpreter/runtime/Value;";
+    private static final String VALUES_DESCRIPTOR = "[" + VALUE_DESCRIPTOR;
+    private static final String OBJECT_VALUE_DESCRIPTOR = "Lde/hsbi/interpreter/runtime/ObjectValue;";
+    private static final String RUN_DESCRIPTOR = "(" + VALUES_DESCRIPTOR + OBJECT_VALUE_DESCRIPTOR + ")" + VALUE_DESCRIPTOR;
+
+    /**
+     * a static method in a generated class
+     */
+    private static class MethodTarget {
+        final String owner;
+        final String name;
+        final String descriptor;
+
+        MethodTarget(String owner, String name, String descriptor) {
+            this.owner = owner;
+            this.name = name;
+            this.descriptor = descriptor;
+        }
+    }
+
+    private JitClassLoader loader;
+    private int unitCount;
+    private int methodCount;
+    private Map<FunctionDecl, MethodTarget> compiledFunctions;
+    private Map<ASTNode, CompiledCode> compiledCode; // entry points of compiled functions and loops
+
+    // class being generated
+    private ClassFileWriter unit;
+    private Map<FunctionDecl, MethodTarget> unitFunctions;
+    private Deque<FunctionDecl> pending;
+
+    // method being generated
+    private CodeBuilder code;
+    private int slotBase;           // JVM local of frame slot 0
+    private int frameSize;          // receiver fields follow the frame slots
+    private Type returnType;
+    private boolean compilingLoop;  // returns have to write back the frame
+    private FunctionDecl function;  // function being generated (null for loops)
+    private CodeBuilder.Label functionStart; // target of self tail calls
+    private Map<Integer, Type> liveSlots;
+    private Set<Integer> assignedSlots;
+
+    public JitCompiler() {
+        this.loader = new JitClassLoader(JitCompiler.class.getClassLoader());
+        this.compiledFunctions = new IdentityHashMap<>();
+        this.compiledCode = new IdentityHashMap<>();
+    }
+
+    /**
+     * entry point of a compiled function or loop, null if it is not compiled
+     */
+    public CompiledCode getCompiledCode(ASTNode node) {
+        return compiledCode.get(node);
+    }
+
+    /**
+     * compile a function (and all functions it calls that are not compiled yet);
+     * getCompiledCode gives the entry point of every compiled function
+     * @return the functions compiled along with the requested one
+     */
+    public List<FunctionDecl> compileFunction(FunctionDecl func) {
+        beginUnit();
+        targetFor(func);
+        return finishUnit();
+    }
+
+    /**
+     * compile a loop of a running function or method; the compiled loop continues
+     * with the values currently in the frame and writes them back when it is left;
+     * receiver fields the loop uses are handled like extra slots after the frame
+     * @return the functions compiled along with the loop
+     */
+    public List<FunctionDecl> compileLoop(WhileStmt loop, List<Parameter> parameters, BlockStmt body,
+                                          int frameSize, Type returnType) {
+        beginUnit();
+        this.frameSize = frameSize;
+
+        // find the variables the loop uses from outside (they are loaded from the frame)
+        Map<Integer, Type> usedSlots = new HashMap<>();
+        Set<Integer> declaredSlots = new HashSet<>();
+        Set<Integer> assigned = new HashSet<>();
+        scanStatement(loop, usedSlots, declaredSlots, assigned);
+
+        Map<Integer, Type> live = new HashMap<>();
+        int slotCount = frameSize;
+        for (Map.Entry<Integer, Type> used : usedSlots.entrySet()) {
+            int slot = used.getKey();
+            if (!declaredSlots.contains(slot)) {
+                checkFrameSlot(slot, used.getValue(), parameters, body, frameSize);
+                live.put(slot, used.getValue());
+                slotCount = Math.max(slotCount, slot + 1);
+            }
+        }
+
+        // JVM locals: 0 = frame, 1 = receiver, then the slots
+        String name = "loop" + (++methodCount);
+        beginMethod(2, returnType);
+        compilingLoop = true;
+        liveSlots = live;
+        assignedSlots = assigned;
+        code.setMaxLocals(2 + slotCount);
+
+        // load the live variables from the frame and the receiver, all other frame slots start as 0
+        for (int slot = 0; slot < slotCount; slot++) {
+            Type type = live.get(slot);
+            if (type != null && slot >= frameSize) {
+                code.aload(1);
+                code.iconst(slot - frameSize);
+                code.invokestatic(RUNTIME, accessorName("", type) + "Field", "(" + OBJECT_VALUE_DESCRIPTOR + "I)I");
+            } else if (type != null) {
+                code.aload(0);
+                code.iconst(slot);
+                code.invokestatic(RUNTIME, accessorName("", type) + "At", "(" + VALUES_DESCRIPTOR + "I)I");
+            } else if (slot < frameSize) {
+                code.iconst(0);
+            } else {
+                continue;
+            }
+            code.istore(slotBase + slot);
+        }
+
+        loop.accept(this);
+
+        // loop finished normally
+        emitWriteBack();
+        code.op(CodeBuilder.ACONST_NULL);
+        code.op(CodeBuilder.ARETURN);
+        unit.addMethod(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC, name, RUN_DESCRIPTOR, code);
+
+        drainPending();
+        defineUnit();
+        compiledCode.put(loop, createBridge(new MethodTarget(unit.getName(), name, RUN_DESCRIPTOR), null));
+        return installFunctions();
+    }
+
+    // units
+
+    private void beginUnit() {
+        unit = new ClassFileWriter(GENERATED_PACKAGE + "Unit" + (++unitCount), OBJECT);
+        unitFunctions = new IdentityHashMap<>();
+        pending = new ArrayDeque<>();
+    }
+
+    private List<FunctionDecl> finishUnit() {
+        drainPending();
+        defineUnit();
+        return installFunctions();
+    }
+
+    private void drainPending() {
+        while (!pending.isEmpty()) {
+            FunctionDecl func = pending.poll();
+            generateFunction(func, unitFunctions.get(func));
+        }
+    }
+
+    private void defineUnit() {
+        // the unit is defined before its bridges, which refer to it
+        loader.define(unit.getName(), unit.toByteArray());
+    }
+
+    private List<FunctionDecl> installFunctions() {
+        List<FunctionDecl> installed = new ArrayList<>();
+        for (Map.Entry<FunctionDecl, MethodTarget> entry : unitFunctions.entrySet()) {
+            FunctionDecl func = entry.getKey();
+            compiledCode.put(func, createBridge(entry.getValue(), func));
+            compiledFunctions.put(func, entry.getValue());
+            installed.add(func);
+        }
+        return installed;
+    }
+
+    /**
+     * generate a class implementing CompiledCode that unpacks the values,
+     * calls the static method and boxes the result
+     * @param func the function for a function bridge, null for a loop bridge
+     */
+    private CompiledCode createBridge(MethodTarget target, FunctionDecl func) {
+        String name = target.owner + "$" + target.name;
+        ClassFileWriter bridge = new ClassFileWriter(name, OBJECT, COMPILED_CODE);
+        bridge.addDefaultConstructor(OBJECT);
+
+        CodeBuilder run = bridge.newCode();
+        run.setMaxLocals(3); // this, values, receiver
+        if (func == null) {
+            run.aload(1);
+            run.aload(2);
+            run.invokestatic(target.owner, target.name, target.descriptor);
+        } else {
+            List<Parameter> parameters = func.getParameters();
+            for (int i = 0; i < parameters.size(); i++) {
+                run.aload(1);
+                run.iconst(i);
+                run.invokestatic(RUNTIME, accessorName("", parameters.get(i).getType()) + "At",
+                        "(" + VALUES_DESCRIPTOR + "I)I");
+            }
+            run.invokestatic(target.owner, target.name, target.descriptor);
+            emitBoxResult(run, func.getReturnType());
+        }
+        run.op(CodeBuilder.ARETURN);
+        bridge.addMethod(ClassFileWriter.ACC_PUBLIC, "run", RUN_DESCRIPTOR, run);
+
+        try {
+            Class<?> bridgeClass = loader.define(name, bridge.toByteArray());
+            return (CompiledCode) bridgeClass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("cannot instantiate compiled code", e);
+        }
+    }
+
+    // functions
+
+    /**
+     * the static method for a function; functions that are not compiled yet are
+     * added to the current unit
+     */
+    private MethodTarget targetFor(FunctionDecl func) {
+        MethodTarget target = compiledFunctions.get(func);
+        if (target == null) {
+            target = unitFunctions.get(func);
+        }
+        if (target == null) {
+            checkSignature(func);
+            target = new MethodTarget(unit.getName(), "f" + (++methodCount) + "_" + func.getName(), descriptor(func));
+            unitFunctions.put(func, target);
+            pending.add(func);
+        }
+        return target;
+    }
+
+    private void checkSignature(FunctionDecl func) {
+        if (func.getReturnType().getBaseType() != Type.BaseType.VOID) {
+            requirePrimitive(func.getReturnType(), func.getName());
+        }
+        for (Parameter param : func.getParameters()) {
+            if (param.isReference()) {
+                throw new NotCompilableException(func.getName() + " has reference parameters");
+            }
+            requirePrimitive(param.getType(), func.getName());
+        }
+    }
+
+    private static String descriptor(FunctionDecl func) {
+        StringBuilder sb = new StringBuilder("(");
+        for (int i = 0; i < func.getParameters().size(); i++) {
+            sb.append('I');
+        }
+        sb.append(')');
+        sb.append(func.getReturnType().getBaseType() == Type.BaseType.VOID ? 'V' : 'I');
+        return sb.toString();
+    }
+
+    private void generateFunction(FunctionDecl func, MethodTarget target) {
+        // parameters are slots 0..n-1 and arrive in the same JVM locals
+        beginMethod(0, func.getReturnType());
+        code.setMaxLocals(Math.max(1, func.getFrameSize()));
+        for (int slot = func.getParameters().size(); slot < func.getFrameSize(); slot++) {
+            code.iconst(0);
+            code.istore(slot);
+        }
+        function = func;
+        functionStart = new CodeBuilder.Label();
+        code.bind(functionStart);
+
+        if (func.getBody() != null) {
+            func.getBody().accept(this);
+        }
+
+        // if no return, return default value
+        emitDefaultReturn();
+        unit.addMethod(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC, target.name, target.descriptor, code);
+    }
+
+    private void beginMethod(int slotBase, Type returnType) {
+        this.code = unit.newCode();
+        this.slotBase = slotBase;
+        this.returnType = returnType;
+        this.compilingLoop = false;
+        this.function = null;
+        this.liveSlots = null;
+        this.assignedSlots = null;
+    }
+
+    // statements
+
+    @Override
+    public Void visitProgram(Program node) {
+        throw new NotCompilableException("program");
+    }
+
+    @Override
+    public Void visitClassDecl(ClassDecl node) {
+        throw new NotCompilableException("class declaration");
+    }
+
+    @Override
+    public Void visitFunctionDecl(FunctionDecl node) {
+        throw new NotCompilableException("nested function");
+    }
+
+    @Override
+    public Void visitMethodDecl(MethodDecl node) {
+        throw new NotCompilableException("method declaration");
+    }
+
+    @Override
+    public Void visitConstructorDecl(ConstructorDecl node) {
+        throw new NotCompilableException("constructor declaration");
+    }
+
+    @Override
+    public Void visitVarDecl(VarDecl node) {
+        if (node.isReference()) {
+            throw new NotCompilableException("uses references");
+        }
+        requirePrimitive(node.getType(), node.getName());
+
+        if (node.getInitializer() != null) {
+            requireType(node.getInitializer(), node.getType().getBaseType());
+            node.getInitializer().accept(this);
+        } else {
+            code.iconst(0);
+        }
+        code.istore(slotBase + node.getSlot());
+        return null;
+    }
+
+    @Override
+    public Void visitParameter(Parameter node) {
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(BlockStmt node) {
+        for (Statement stmt : node.getStatements()) {
+            stmt.accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(IfStmt node) {
+        CodeBuilder.Label elseLabel = new CodeBuilder.Label();
+        emitCondition(node.getCondition(), elseLabel);
+        node.getThenStmt().accept(this);
+
+        if (node.getElseStmt() != null) {
+            CodeBuilder.Label end = new CodeBuilder.Label();
+            code.jump(CodeBuilder.GOTO, end);
+            code.bind(elseLabel);
+            node.getElseStmt().accept(this);
+            code.bind(end);
+        } else {
+            code.bind(elseLabel);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(WhileStmt node) {
+        CodeBuilder.Label start = new CodeBuilder.Label();
+        CodeBuilder.Label end = new CodeBuilder.Label();
+
+        code.bind(start);
+        emitCondition(node.getCondition(), end);
+        node.getBody().accept(this);
+        code.jump(CodeBuilder.GOTO, start);
+        code.bind(end);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(ReturnStmt node) {
+        boolean isVoid = returnType.getBaseType() == Type.BaseType.VOID;
+        if (node.getValue() == null ? !isVoid : isVoid) {
+            throw new NotCompilableException("return value does not match the return type");
+        }
+        if (node.isTailCall() && !compilingLoop) {
+            emitTailCall(node.getTailCall());
+            return null;
+        }
+        if (node.getValue() != null) {
+            requireType(node.getValue(), returnType.getBaseType());
+            node.getValue().accept(this);
+        }
+
+        if (compilingLoop) {
+            // return from the running function: write back the frame and hand the value to the interpreter
+            emitBoxResult(code, returnType);
+            emitWriteBack();
+            code.op(CodeBuilder.ARETURN);
+        } else {
+            code.op(isVoid ? CodeBuilder.RETURN : CodeBuilder.IRETURN);
+        }
+        return null;
+    }
+
+    /**
+     * return f(...) of the function itself becomes a jump back to its start with the
+     * new arguments. a tail call to another function would take JVM stack, which the
+     * interpreter's tail calls never do, so such functions stay interpreted
+     */
+    private void emitTailCall(ConstructorCallExpr call) {
+        FunctionDecl callee = call.getResolvedFunction().getDeclaration();
+        if (callee != function) {
+            throw new NotCompilableException("makes a tail call to " + callee.getName());
+        }
+        requireType(call, returnType.getBaseType());
+
+        List<Expression> arguments = call.getArguments();
+        for (int i = 0; i < arguments.size(); i++) {
+            requireType(arguments.get(i), callee.getParameters().get(i).getType().getBaseType());
+            arguments.get(i).accept(this);
+        }
+        // parameter i has slot i
+        for (int i = arguments.size() - 1; i >= 0; i--) {
+            code.istore(slotBase + i);
+        }
+        code.jump(CodeBuilder.GOTO, functionStart);
+    }
+
+    @Override
+    public Void visitExprStmt(ExprStmt node) {
+        int depth = code.getDepth();
+        node.getExpression().accept(this);
+        if (code.getDepth() > depth) {
+            code.op(CodeBuilder.POP);
+        }
+        return null;
+    }
+
+    // expressions (leave an int on the stack, or nothing for void calls)
+
+    @Override
+    public Void visitBinaryExpr(BinaryExpr node) {
+        Expression left = node.getLeft();
+        Expression right = node.getRight();
+
+        switch (node.getOperator()) {
+            case AND:
+            case OR: {
+                requireType(left, Type.BaseType.BOOL);
+                requireType(right, Type.BaseType.BOOL);
+                boolean isAnd = node.getOperator() == BinaryExpr.Operator.AND;
+                int shortCircuit = isAnd ? CodeBuilder.IFEQ : CodeBuilder.IFNE;
+
+                CodeBuilder.Label decided = new CodeBuilder.Label();
+                CodeBuilder.Label end = new CodeBuilder.Label();
+                left.accept(this);
+                code.jump(shortCircuit, decided);
+                right.accept(this);
+                code.jump(shortCircuit, decided);
+                code.iconst(isAnd ? 1 : 0);
+                code.jump(CodeBuilder.GOTO, end);
+                code.setDepth(code.getDepth() - 1);
+                code.bind(decided);
+                code.iconst(isAnd ? 0 : 1);
+                code.bind(end);
+                return null;
+            }
+
+            case PLUS:
+                emitArithmetic(left, right, CodeBuilder.IADD);
+                return null;
+            case MINUS:
+                emitArithmetic(left, right, CodeBuilder.ISUB);
+                return null;
+            case MULT:
+                emitArithmetic(left, right, CodeBuilder.IMUL);
+                return null;
+            case DIV:
+                emitArithmetic(left, right, -1);
+                code.invokestatic(RUNTIME, "div", "(II)I");
+                return null;
+            case MOD:
+                emitArithmetic(left, right, -1);
+                code.invokestatic(RUNTIME, "mod", "(II)I");
+                return null;
+
+            case LT:
+                emitComparison(left, right, CodeBuilder.IF_ICMPLT, false);
+                return null;
+            case LEQ:
+                emitComparison(left, right, CodeBuilder.IF_ICMPLE, false);
+                return null;
+            case GT:
+                emitComparison(left, right, CodeBuilder.IF_ICMPGT, false);
+                return null;
+            case GEQ:
+                emitComparison(left, right, CodeBuilder.IF_ICMPGE, false);
+                return null;
+            case EQ:
+                emitComparison(left, right, CodeBuilder.IF_ICMPEQ, true);
+                return null;
+            case NEQ:
+                emitComparison(left, right, CodeBuilder.IF_ICMPNE, true);
+                return null;
+
+            default:
+                throw new NotCompilableException("operator " + node.getOperator());
+        }
+    }
+
+    private void emitArithmetic(Expression left, Expression right, int opcode) {
+        requireType(left, Type.BaseType.INT);
+        requireType(right, Type.BaseType.INT);
+        left.accept(this);
+        right.accept(this);
+        if (opcode >= 0) {
+            code.op(opcode);
+        }
+    }
+
+    /**
+     * relational operators compare ints or chars (by the type of the left side),
+     * equality compares any two values of the same primitive type
+     */
+    private void emitComparison(Expression left, Expression right, int opcode, boolean isEquality) {
+        Type leftType = left.getType();
+        requirePrimitive(leftType, "comparison");
+        if (!isEquality && leftType.getBaseType() == Type.BaseType.BOOL) {
+            throw new NotCompilableException("comparison of bool values");
+        }
+        requireType(right, leftType.getBaseType());
+
+        left.accept(this);
+        right.accept(this);
+
+        CodeBuilder.Label isTrue = new CodeBuilder.Label();
+        CodeBuilder.Label end = new CodeBuilder.Label();
+        code.jump(opcode, isTrue);
+        code.iconst(0);
+        code.jump(CodeBuilder.GOTO, end);
+        code.setDepth(code.getDepth() - 1);
+        code.bind(isTrue);
+        code.iconst(1);
+        code.bind(end);
+    }
+
+    @Override
+    public Void visitUnaryExpr(UnaryExpr node) {
+        switch (node.getOperator()) {
+            case PLUS:
+                requireType(node.getOperand(), Type.BaseType.INT);
+                node.getOperand().accept(this);
+                return null;
+            case MINUS:
+                requireType(node.getOperand(), Type.BaseType.INT);
+                node.getOperand().accept(this);
+                code.op(CodeBuilder.INEG);
+                return null;
+            case NOT:
+                requireType(node.getOperand(), Type.BaseType.BOOL);
+                node.getOperand().accept(this);
+                code.iconst(1);
+                code.op(CodeBuilder.IXOR);
+                return null;
+            default:
+                throw new NotCompilableException("operator " + node.getOperator());
+        }
+    }
+
+    @Override
+    public Void visitAssignExpr(AssignExpr node) {
+        if (!(node.getTarget() instanceof VarExpr)) {
+            throw new NotCompilableException("assigns to fields");
+        }
+        VarExpr target = (VarExpr) node.getTarget();
+        requirePrimitive(target.getType(), target.getName());
+        requireType(node.getValue(), target.getType().getBaseType());
+
+        node.getValue().accept(this);
+        code.op(CodeBuilder.DUP);
+        code.istore(slotBase + slotOf(target));
+        return null;
+    }
+
+    @Override
+    public Void visitVarExpr(VarExpr node) {
+        requirePrimitive(node.getType(), node.getName());
+        code.iload(slotBase + slotOf(node));
+        return null;
+    }
+
+    /**
+     * slot of a variable; a receiver field is addressed by its offset after the frame slots
+     */
+    private int slotOf(VarExpr node) {
+        return node.isReceiverField() ? frameSize + node.getFieldOffset() : node.getSlot();
+    }
+
+    @Override
+    public Void visitCallExpr(CallExpr node) {
+        throw new NotCompilableException("unresolved call of " + node.getFunctionName());
+    }
+
+    @Override
+    public Void visitMemberAccessExpr(MemberAccessExpr node) {
+        throw new NotCompilableException("uses objects");
+    }
+
+    @Override
+    public Void visitConstructorCallExpr(ConstructorCallExpr node) {
+        String name = node.getClassName();
+        switch (name) {
+            case "print_int":
+                emitBuiltin(node, Type.BaseType.INT, "printInt");
+                return null;
+            case "print_bool":
+                emitBuiltin(node, Type.BaseType.BOOL, "printBool");
+                return null;
+            case "print_char":
+                emitBuiltin(node, Type.BaseType.CHAR, "printChar");
+                return null;
+            default:
+                break;
+        }
+
+        if (!node.isFunctionCall()) {
+            throw new NotCompilableException("creates objects");
+        }
+
+        FunctionDecl callee = node.getResolvedFunction().getDeclaration();
+        MethodTarget target;
+        try {
+            target = targetFor(callee);
+        } catch (NotCompilableException e) {
+            throw new NotCompilableException("calls " + callee.getName() + ", which " + e.getMessage());
+        }
+
+        List<Expression> arguments = node.getArguments();
+        for (int i = 0; i < arguments.size(); i++) {
+            requireType(arguments.get(i), callee.getParameters().get(i).getType().getBaseType());
+            arguments.get(i).accept(this);
+        }
+        code.invokestatic(target.owner, target.name, target.descriptor);
+        return null;
+    }
+
+    private void emitBuiltin(ConstructorCallExpr node, Type.BaseType argType, String helper) {
+        Expression arg = node.getArguments().get(0);
+        requireType(arg, argType);
+        arg.accept(this);
+        code.invokestatic(RUNTIME, helper, "(I)V");
+    }
+
+    @Override
+    public Void visitLiteralExpr(LiteralExpr node) {
+        switch (node.getLiteralType()) {
+            case INT:
+                code.iconst((Integer) node.getValue());
+                return null;
+            case BOOL:
+                code.iconst((Boolean) node.getValue() ? 1 : 0);
+                return null;
+            case CHAR:
+                code.iconst((Character) node.getValue());
+                return null;
+            default:
+                throw new NotCompilableException("uses strings");
+        }
+    }
+
+    @Override
+    public Void visitType(Type node) {
+        return null;
+    }
+
+    // helper methods
+
+    private void emitCondition(Expression condition, CodeBuilder.Label falseTarget) {
+        // int and char conditions are true if not 0, bool is 0/1
+        requirePrimitive(condition.getType(), "condition");
+        condition.accept(this);
+        code.jump(CodeBuilder.IFEQ, falseTarget);
+    }
+
+    private void emitDefaultReturn() {
+        if (returnType.getBaseType() == Type.BaseType.VOID) {
+            code.op(CodeBuilder.RETURN);
+        } else {
+            // default value of int, bool and char is 0
+            code.iconst(0);
+            code.op(CodeBuilder.IRETURN);
+        }
+    }
+
+    private static void emitBoxResult(CodeBuilder code, Type type) {
+        if (type.getBaseType() == Type.BaseType.VOID) {
+            code.invokestatic(RUNTIME, "voidResult", "()" + VALUE_DESCRIPTOR);
+        } else {
+            code.invokestatic(RUNTIME, accessorName("", type) + "Result", "(I)" + VALUE_DESCRIPTOR);
+        }
+    }
+
+    /**
+     * write the live variables the loop assigned back into the frame
+     */
+    private void emitWriteBack() {
+        for (Map.Entry<Integer, Type> live : liveSlots.entrySet()) {
+            int slot = live.getKey();
+            if (assignedSlots.contains(slot) && slot >= frameSize) {
+                code.aload(1);
+                code.iconst(slot - frameSize);
+                code.iload(slotBase + slot);
+                code.invokestatic(RUNTIME, accessorName("store", live.getValue()) + "Field",
+                        "(" + OBJECT_VALUE_DESCRIPTOR + "II)V");
+            } else if (assignedSlots.contains(slot)) {
+                code.aload(0);
+                code.iconst(slot);
+                code.iload(slotBase + slot);
+                code.invokestatic(RUNTIME, accessorName("store", live.getValue()), "(" + VALUES_DESCRIPTOR + "II)V");
+            }
+        }
+    }
+
+    /**
+     * name of the JitRuntime helper for a type, e.g. ("store", int) -> storeInt, ("", int) -> int
+     */
+    private static String accessorName(String prefix, Type type) {
+        String typeName;
+        switch (type.getBaseType()) {
+            case INT:
+                typeName = "Int";
+                break;
+            case BOOL:
+                typeName = "Bool";
+                break;
+            case CHAR:
+                typeName = "Char";
+                break;
+            default:
+                throw new NotCompilableException("uses " + type);
+        }
+        return prefix.isEmpty() ? typeName.toLowerCase() : prefix + typeName;
+    }
+
+    private static boolean isPrimitive(Type type) {
+        if (type == null) {
+            return false;
+        }
+        Type.BaseType baseType = type.getBaseType();
+        return baseType == Type.BaseType.INT || baseType == Type.BaseType.BOOL || baseType == Type.BaseType.CHAR;
+    }
+
+    private static void requirePrimitive(Type type, String what) {
+        if (!isPrimitive(type)) {
+            throw new NotCompilableException("uses " + (type != null ? type : "untyped") + " values (" + what + ")");
+        }
+    }
+
+    private static void requireType(Expression expression, Type.BaseType expected) {
+        Type type = expression.getType();
+        if (type == null || type.getBaseType() != expected) {
+            throw new NotCompilableException("mixes " + type + " and " + expected.name().toLowerCase() + " values");
+        }
+    }
+
+    /**
+     * a frame slot a compiled loop reads from outside must hold a plain int/bool/char
+     * value in every declaration of the slot (no references)
+     */
+    private static void checkFrameSlot(int slot, Type type, List<Parameter> parameters, BlockStmt body,
+                                       int frameSize) {
+        requirePrimitive(type, "variable in slot " + slot);
+        if (slot >= frameSize) {
+            // fields are never references
+            return;
+        }
+        for (Parameter param : parameters) {
+            if (param.getSlot() == slot && param.isReference()) {
+                throw new NotCompilableException("uses reference parameter " + param.getName());
+            }
+        }
+        List<VarDecl> declarations = new ArrayList<>();
+        collectVarDecls(body, declarations);
+        for (VarDecl decl : declarations) {
+            if (decl.getSlot() == slot && decl.isReference()) {
+                throw new NotCompilableException("uses reference variable " + decl.getName());
+            }
+            if (decl.getSlot() == slot && !isPrimitive(decl.getType())) {
+                throw new NotCompilableException("uses variable " + decl.getName() + " of type " + decl.getType());
+            }
+        }
+    }
+
+    private static void collectVarDecls(Statement stmt, List<VarDecl> declarations) {
+        if (stmt instanceof VarDecl) {
+            declarations.add((VarDecl) stmt);
+        } else if (stmt instanceof BlockStmt) {
+            for (Statement inner : ((BlockStmt) stmt).getStatements()) {
+                collectVarDecls(inner, declarations);
+            }
+        } else if (stmt instanceof IfStmt) {
+            collectVarDecls(((IfStmt) stmt).getThenStmt(), declarations);
+            if (((IfStmt) stmt).getElseStmt() != null) {
+                collectVarDecls(((IfStmt) stmt).getElseStmt(), declarations);
+            }
+        } else if (stmt instanceof WhileStmt) {
+            collectVarDecls(((WhileStmt) stmt).getBody(), declarations);
+        }
+    }
+
+    /**
+     * collect the slots a loop reads, declares and assigns
+     */
+    private void scanStatement(Statement stmt, Map<Integer, Type> used, Set<Integer> declared, Set<Integer> assigned) {
+        if (stmt instanceof VarDecl) {
+            VarDecl decl = (VarDecl) stmt;
+            declared.add(decl.getSlot());
+            if (decl.getInitializer() != null) {
+                scanExpression(decl.getInitializer(), used, assigned);
+            }
+        } else if (stmt instanceof BlockStmt) {
+            for (Statement inner : ((BlockStmt) stmt).getStatements()) {
+                scanStatement(inner, used, declared, assigned);
+            }
+        } else if (stmt instanceof IfStmt) {
+            IfStmt ifStmt = (IfStmt) stmt;
+            scanExpression(ifStmt.getCondition(), used, assigned);
+            scanStatement(ifStmt.getThenStmt(), used, declared, assigned);
+            if (ifStmt.getElseStmt() != null) {
+                scanStatement(ifStmt.getElseStmt(), used, declared, assigned);
+            }
+        } else if (stmt instanceof WhileStmt) {
+            scanExpression(((WhileStmt) stmt).getCondition(), used, assigned);
+            scanStatement(((WhileStmt) stmt).getBody(), used, declared, assigned);
+        } else if (stmt instanceof ReturnStmt) {
+            if (((ReturnStmt) stmt).getValue() != null) {
+                scanExpression(((ReturnStmt) stmt).getValue(), used, assigned);
+            }
+        } else if (stmt instanceof ExprStmt) {
+            scanExpression(((ExprStmt) stmt).getExpression(), used, assigned);
+        }
+    }
+
+    private void scanExpression(Expression expr, Map<Integer, Type> used, Set<Integer> assigned) {
+        if (expr instanceof VarExpr) {
+            used.put(slotOf((VarExpr) expr), expr.getType());
+        } else if (expr instanceof AssignExpr) {
+            AssignExpr assign = (AssignExpr) expr;
+            if (assign.getTarget() instanceof VarExpr) {
+                assigned.add(slotOf((VarExpr) assign.getTarget()));
+            }
+            scanExpression(assign.getTarget(), used, assigned);
+            scanExpression(assign.getValue(), used, assigned);
+        } else if (expr instanceof BinaryExpr) {
+            scanExpression(((BinaryExpr) expr).getLeft(), used, assigned);
+            scanExpression(((BinaryExpr) expr).getRight(), used, assigned);
+        } else if (expr instanceof UnaryExpr) {
+            scanExpression(((UnaryExpr) expr).getOperand(), used, assigned);
+        } else if (expr instanceof ConstructorCallExpr) {
+            for (Expression arg : ((ConstructorCallExpr) expr).getArguments()) {
+                scanExpression(arg, used, assigned);
+            }
+        } else if (expr instanceof CallExpr) {
+            for (Expression arg : ((CallExpr) expr).getArguments()) {
+                scanExpression(arg, used, assigned);
+            }
+        } else if (expr instanceof MemberAccessExpr) {
+            MemberAccessExpr access = (MemberAccessExpr) expr;
+            scanExpression(access.getObject(), used, assigned);
+            if (access.getArguments() != null) {
+                for (Expression arg : access.getArguments()) {
+                    scanExpression(arg, used, assigned);
+                }
+            }
+        }
+    }
+}
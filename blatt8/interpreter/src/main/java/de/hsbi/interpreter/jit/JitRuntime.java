@@ -0,0 +1,118 @@
+package de.hsbi.interpreter.jit;
+
+import de.hsbi.interpreter.ast.Type;
+import de.hsbi.interpreter.runtime.ObjectValue;
+import de.hsbi.interpreter.runtime.RuntimeError;
+import de.hsbi.interpreter.runtime.Value;
+
+/**
+ * helpers called from generated code
+ * int, bool and char are all passed as JVM int (bool as 0/1)
+ */
+public final class JitRuntime {
+
+    private JitRuntime() {
+    }
+
+    // reading arguments and frame slots
+
+    public static int intAt(Value[] values, int index) {
+        return values[index].getIntValue();
+    }
+
+    public static int boolAt(Value[] values, int index) {
+        return values[index].getBoolValue() ? 1 : 0;
+    }
+
+    public static int charAt(Value[] values, int index) {
+        return values[index].getCharValue();
+    }
+
+    // reading fields of the receiver
+
+    public static int intField(ObjectValue receiver, int offset) {
+        return receiver.getField(offset).getIntValue();
+    }
+
+    public static int boolField(ObjectValue receiver, int offset) {
+        return receiver.getField(offset).getBoolValue() ? 1 : 0;
+    }
+
+    public static int charField(ObjectValue receiver, int offset) {
+        return receiver.getField(offset).getCharValue();
+    }
+
+    // writing frame slots back (in place, references to the variable stay valid)
+
+    public static void storeInt(Value[] frame, int slot, int value) {
+        frame[slot].setIntValue(value);
+    }
+
+    public static void storeBool(Value[] frame, int slot, int value) {
+        frame[slot].setBoolValue(value != 0);
+    }
+
+    public static void storeChar(Value[] frame, int slot, int value) {
+        frame[slot].setCharValue((char) value);
+    }
+
+    public static void storeIntField(ObjectValue receiver, int offset, int value) {
+        receiver.getFieldForWrite(offset).setIntValue(value);
+    }
+
+    public static void storeBoolField(ObjectValue receiver, int offset, int value) {
+        receiver.getFieldForWrite(offset).setBoolValue(value != 0);
+    }
+
+    public static void storeCharField(ObjectValue receiver, int offset, int value) {
+        receiver.getFieldForWrite(offset).setCharValue((char) value);
+    }
+
+    // results
+
+    public static Value intResult(int value) {
+        return Value.ofInt(value);
+    }
+
+    public static Value boolResult(int value) {
+        return Value.ofBool(value != 0);
+    }
+
+    public static Value charResult(int value) {
+        return Value.ofChar((char) value);
+    }
+
+    public static Value voidResult() {
+        return Value.defaultValue(Type.VOID);
+    }
+
+    // operations with runtime errors
+
+    public static int div(int dividend, int divisor) {
+        if (divisor == 0) {
+            throw new RuntimeError("division by zero");
+        }
+        return dividend / divisor;
+    }
+
+    public static int mod(int dividend, int divisor) {
+        if (divisor == 0) {
+            throw new RuntimeError("modulo by zero");
+        }
+        return dividend % divisor;
+    }
+
+    // built-in functions
+
+    public static void printInt(int value) {
+        System.out.println(value);
+    }
+
+    public static void printBool(int value) {
+        System.out.println(value != 0);
+    }
+
+    public static void printChar(int value) {
+        System.out.println((char) value);
+    }
+}
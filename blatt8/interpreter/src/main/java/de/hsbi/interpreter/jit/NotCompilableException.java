@@ -0,0 +1,13 @@
+package de.hsbi.interpreter.jit;
+
+/**
+ * thrown by the JIT compiler if code uses features it cannot compile
+ * (the code then stays interpreted)
+ */
+public class NotCompilableException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public NotCompilableException(String reason) {
+        super(reason);
+    }
+}
@@ -127,15 +127,15 @@ public class ASTBuilder extends CPPBaseVisitor<ASTNode> {
     @Override
     public ASTNode visitType(CPPParser.TypeContext ctx) {
         if (ctx.BOOL() != null) {
-            return new Type(Type.BaseType.BOOL);
+            return Type.BOOL;
         } else if (ctx.INT() != null) {
-            return new Type(Type.BaseType.INT);
+            return Type.INT;
         } else if (ctx.CHAR() != null) {
-            return new Type(Type.BaseType.CHAR);
+            return Type.CHAR;
         } else if (ctx.STRING() != null) {
-            return new Type(Type.BaseType.STRING);
+            return Type.STRING;
         } else if (ctx.VOID() != null) {
-            return new Type(Type.BaseType.VOID);
+            return Type.VOID;
         } else if (ctx.IDENTIFIER() != null) {
             return new Type(ctx.IDENTIFIER().getText()); // class type
         }
@@ -204,7 +204,9 @@ public class ASTBuilder extends CPPBaseVisitor<ASTNode> {
     public ASTNode visitWhileStmt(CPPParser.WhileStmtContext ctx) {
         Expression condition = (Expression) visit(ctx.expression());
         Statement body = (Statement) visit(ctx.statement());
-        return new WhileStmt(condition, body);
+        WhileStmt stmt = new WhileStmt(condition, body);
+        stmt.setPosition(ctx.getStart().getLine(), ctx.getStart().getCharPositionInLine());
+        return stmt;
     }
 
     @Override
@@ -0,0 +1,93 @@
+package de.hsbi.interpreter.runtime;
+
+import de.hsbi.interpreter.symbols.ClassSymbol;
+import de.hsbi.interpreter.symbols.VarSymbol;
+
+/**
+ * how to copy the fields of an object into a new object of the target class,
+ * computed once per (source class, target class) pair
+ *
+ * the layout of a base class is a prefix of the derived layout, so a field keeps
+ * its offset and slicing just copies a shorter prefix. class-typed fields are
+ * copied as nested objects of the class they are declared with
+ */
+public class CopyPlan {
+    private final ClassSymbol targetClass;
+    private final int copiedCount;              // fields both classes have
+    private final ClassSymbol[] nestedClasses;  // by offset, null for int/bool/char/string fields
+    private final boolean unsetFieldsDiffer;    // an unset field reads another value in the target
+
+    public CopyPlan(ClassSymbol sourceClass, ClassSymbol targetClass) {
+        this.targetClass = targetClass;
+        this.copiedCount = Math.min(sourceClass.getFieldCount(), targetClass.getFieldCount());
+        this.nestedClasses = new ClassSymbol[copiedCount];
+        addNestedClasses(sourceClass, sourceClass);
+
+        // a redeclared field can have another type or class in the base class
+        InstantiationPlan sourcePlan = sourceClass.getInstantiationPlan();
+        InstantiationPlan targetPlan = targetClass.getInstantiationPlan();
+        boolean differ = false;
+        for (int i = 0; i < copiedCount; i++) {
+            differ |= sourcePlan.getLazyFieldClass(i) != targetPlan.getLazyFieldClass(i)
+                    || !sameDefault(sourcePlan.getDefaultField(i), targetPlan.getDefaultField(i));
+        }
+        this.unsetFieldsDiffer = differ;
+    }
+
+    private static boolean sameDefault(Value source, Value target) {
+        if (source == null || target == null) {
+            return source == target;
+        }
+        return source.getType().getBaseType() == target.getType().getBaseType();
+    }
+
+    // base class fields first, a redeclared field replaces the base one
+    private void addNestedClasses(ClassSymbol sourceClass, ClassSymbol current) {
+        if (current.getBaseClass() != null) {
+            addNestedClasses(sourceClass, current.getBaseClass());
+        }
+        for (VarSymbol field : current.getFields().values()) {
+            int offset = sourceClass.getFieldOffset(field.getName());
+            if (offset < copiedCount) {
+                nestedClasses[offset] = field.getType().getClassSymbol();
+            }
+        }
+    }
+
+    /**
+     * true if the copy can share the source fields: the target class has no
+     * fields the source object lacks
+     */
+    public boolean canShare() {
+        return copiedCount == targetClass.getFieldCount();
+    }
+
+    /**
+     * true if the unset fields of the source have to be set before the copy,
+     * because the target class would read other defaults or construct them
+     * as another class
+     */
+    public boolean unsetFieldsDiffer() {
+        return unsetFieldsDiffer;
+    }
+
+    /**
+     * field array for the copy; fields the source does not have stay unset
+     */
+    public Value[] copy(Value[] source) {
+        Value[] copy = new Value[targetClass.getFieldCount()];
+        for (int i = 0; i < copiedCount; i++) {
+            Value field = source[i];
+            if (field == null) {
+                continue;
+            }
+            ClassSymbol nestedClass = nestedClasses[i];
+            if (nestedClass == null) {
+                copy[i] = field.copy();
+            } else {
+                copy[i] = new Value(field.getType(), field.getObjectValue().copy(nestedClass));
+            }
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,80 @@
+package de.hsbi.interpreter.runtime;
+
+import java.util.Arrays;
+
+/**
+ * pool of call frames (Value[] slot arrays), used like a stack
+ *
+ * calls end in the reverse order they started, so the frame of every call depth
+ * is kept and handed out again to the next call at that depth. a caller takes the
+ * frame before it evaluates the arguments into it; calls inside the arguments take
+ * the frames above and have given them back before the call starts
+ *
+ * every call depth also has a Region for the objects of region variables
+ *
+ * the number of slots in use is kept per depth, since a tail call can move a frame
+ * of another size (the callee's) into the depth of the ending call
+ */
+public class FrameStack {
+    private Value[][] frames = new Value[16][];
+    private int[] sizes = new int[16];
+    private Region[] regions = new Region[16];
+    private int depth;
+
+    /**
+     * take the frame for a new call with at least the given number of slots, all null
+     */
+    public Value[] push(int size) {
+        if (depth == frames.length) {
+            frames = Arrays.copyOf(frames, depth * 2);
+            sizes = Arrays.copyOf(sizes, depth * 2);
+            regions = Arrays.copyOf(regions, depth * 2);
+        }
+        Value[] frame = frames[depth];
+        if (frame == null || frame.length < size) {
+            frame = new Value[size];
+            frames[depth] = frame;
+        }
+        sizes[depth] = size;
+        depth++;
+        return frame;
+    }
+
+    /**
+     * give back the frame of the innermost call; its slots are cleared so the
+     * pool does not keep values alive
+     */
+    public void pop() {
+        depth--;
+        Arrays.fill(frames[depth], 0, sizes[depth], null);
+    }
+
+    /**
+     * tail call: the innermost frame, which holds the arguments of the callee, takes the
+     * place of the frame below it (the frame of the call that ends); that frame is cleared
+     * and becomes the innermost one again, free for the next call
+     * @return the callee's frame, now at the depth of the ending call
+     */
+    public Value[] replace() {
+        depth--;
+        Value[] frame = frames[depth];
+        int size = sizes[depth];
+        frames[depth] = frames[depth - 1];
+        frames[depth - 1] = frame;
+        Arrays.fill(frames[depth], 0, sizes[depth - 1], null);
+        sizes[depth - 1] = size;
+        return frame;
+    }
+
+    /**
+     * region of the innermost call
+     */
+    public Region region() {
+        Region region = regions[depth - 1];
+        if (region == null) {
+            region = new Region();
+            regions[depth - 1] = region;
+        }
+        return region;
+    }
+}
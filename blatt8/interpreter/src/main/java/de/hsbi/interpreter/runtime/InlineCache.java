@@ -0,0 +1,55 @@
+package de.hsbi.interpreter.runtime;
+
+import de.hsbi.interpreter.symbols.ClassSymbol;
+import de.hsbi.interpreter.symbols.MethodSymbol;
+
+import java.util.function.Function;
+
+/**
+ * polymorphic inline cache of a virtual call site
+ *
+ * remembers the target for the receiver classes seen at the site: one class
+ * (monomorphic), up to MAX_ENTRIES classes (polymorphic). once more classes show
+ * up the site is megamorphic: the cached classes still hit, all others go
+ * through the vtable on every call
+ *
+ * @param <T> what the engine runs for a method (declaration, chunk, compiled function)
+ */
+public class InlineCache<T> {
+    public static final int MAX_ENTRIES = 4;
+
+    private final int vtableSlot;
+    private final Function<MethodSymbol, T> targetOf;
+    private final ClassSymbol[] classes = new ClassSymbol[MAX_ENTRIES];
+    private final Object[] targets = new Object[MAX_ENTRIES];
+    private int size;
+
+    /**
+     * @param vtableSlot slot of the called method in the vtable of the receiver classes
+     * @param targetOf target for the method a vtable holds
+     */
+    public InlineCache(int vtableSlot, Function<MethodSymbol, T> targetOf) {
+        this.vtableSlot = vtableSlot;
+        this.targetOf = targetOf;
+    }
+
+    /**
+     * the target to run for a receiver of the given runtime class
+     */
+    @SuppressWarnings("unchecked")
+    public T lookup(ClassSymbol receiverClass) {
+        for (int i = 0; i < size; i++) {
+            if (classes[i] == receiverClass) {
+                return (T) targets[i];
+            }
+        }
+
+        T target = targetOf.apply(receiverClass.getVtable()[vtableSlot]);
+        if (size < MAX_ENTRIES) {
+            classes[size] = receiverClass;
+            targets[size] = target;
+            size++;
+        }
+        return target;
+    }
+}
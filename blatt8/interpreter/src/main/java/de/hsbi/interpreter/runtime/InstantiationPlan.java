@@ -0,0 +1,189 @@
+package de.hsbi.interpreter.runtime;
+
+import de.hsbi.interpreter.ast.Type;
+import de.hsbi.interpreter.symbols.ClassSymbol;
+import de.hsbi.interpreter.symbols.ConstructorSymbol;
+import de.hsbi.interpreter.symbols.VarSymbol;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * how to create an instance of a class, computed once per class
+ *
+ * - prototype: the default value of every int/bool/char/string field; a new
+ *   object gets a copy of each. with thin objects (--thin-objects) a new object
+ *   starts with all fields unset instead and reads these shared cells until it
+ *   writes a field, which gives it its own copy (materializeField)
+ * - object fields: class-typed fields, default-constructed by the engine in
+ *   the order the fields are initialized (base class fields first)
+ * - constructors: the parameterless base constructors (oldest ancestor first),
+ *   followed by the default constructor when an object is created without arguments
+ *
+ * object fields of a lazily constructible class (see ConstructionAnalyzer) are left
+ * unset: the engine only makes sure the class has a template, a default-constructed
+ * instance, and the object copies it into the field on first access (materializeField).
+ * skipping the construction is not observable, so the side-effecting constructions
+ * of the other fields still run in their order
+ */
+public class InstantiationPlan {
+    private final ClassSymbol classSymbol;
+    private final Value[] prototype;
+    private final int[] objectFieldOffsets;        // -1: constructed but overwritten by a redeclared field
+    private final ClassSymbol[] objectFieldClasses;
+    private final boolean[] lazyObjectFields;
+    private final ClassSymbol[] lazyFieldClasses;   // by offset, null unless the field is constructed lazily
+    private final ConstructorSymbol[] baseConstructors;
+    private final ConstructorSymbol defaultConstructor;
+    private ObjectValue template;                   // default-constructed instance for lazy fields
+
+    public InstantiationPlan(ClassSymbol classSymbol) {
+        this.classSymbol = classSymbol;
+        this.prototype = new Value[classSymbol.getFieldCount()];
+
+        // walk the fields in initialization order; a redeclared field overwrites the base one
+        List<Integer> offsets = new ArrayList<>();
+        List<ClassSymbol> classes = new ArrayList<>();
+        addFields(classSymbol, offsets, classes);
+
+        this.objectFieldOffsets = new int[offsets.size()];
+        this.objectFieldClasses = classes.toArray(new ClassSymbol[0]);
+        this.lazyObjectFields = new boolean[objectFieldClasses.length];
+        this.lazyFieldClasses = new ClassSymbol[prototype.length];
+        for (int i = 0; i < objectFieldOffsets.length; i++) {
+            int offset = offsets.get(i);
+            // the last initialization of a slot wins
+            boolean overwritten = prototype[offset] != null || offsets.subList(i + 1, offsets.size()).contains(offset);
+            objectFieldOffsets[i] = overwritten ? -1 : offset;
+
+            lazyObjectFields[i] = objectFieldClasses[i].isLazilyConstructible();
+            if (lazyObjectFields[i] && !overwritten) {
+                lazyFieldClasses[offset] = objectFieldClasses[i];
+            }
+        }
+
+        this.baseConstructors = classSymbol.getBaseConstructors().toArray(new ConstructorSymbol[0]);
+        this.defaultConstructor = classSymbol.getDefaultConstructor();
+    }
+
+    private void addFields(ClassSymbol current, List<Integer> offsets, List<ClassSymbol> classes) {
+        if (current.getBaseClass() != null) {
+            addFields(current.getBaseClass(), offsets, classes);
+        }
+        for (VarSymbol field : current.getFields().values()) {
+            int offset = classSymbol.getFieldOffset(field.getName());
+            ClassSymbol fieldClass = field.getType().getClassSymbol();
+            if (fieldClass != null) {
+                offsets.add(offset);
+                classes.add(fieldClass);
+                prototype[offset] = null;
+            } else {
+                prototype[offset] = Value.defaultValue(field.getType());
+            }
+        }
+    }
+
+    /**
+     * a new object with all int/bool/char/string fields set to their defaults (for thin
+     * objects just the class and an array of unset fields that read the defaults);
+     * the object fields still have to be set with setObjectField
+     */
+    public ObjectValue instantiate() {
+        Value[] fields = new Value[prototype.length];
+        setDefaults(fields);
+        return new ObjectValue(classSymbol, fields);
+    }
+
+    // give the int/bool/char/string fields of a new object their own default cells
+    // (thin objects leave them unset)
+    void setDefaults(Value[] fields) {
+        if (classSymbol.hasThinObjects()) {
+            return;
+        }
+        for (int i = 0; i < prototype.length; i++) {
+            if (prototype[i] != null) {
+                fields[i] = prototype[i].copy();
+            }
+        }
+    }
+
+    // shared default cell of an unset int/bool/char/string field (null for object fields);
+    // it is only read, the object gets its own cell before a write
+    Value getDefaultField(int offset) {
+        return prototype[offset];
+    }
+
+    // number of class-typed fields to default-construct
+    public int getObjectFieldCount() {
+        return objectFieldClasses.length;
+    }
+
+    public ClassSymbol getObjectFieldClass(int index) {
+        return objectFieldClasses[index];
+    }
+
+    // offset of an object field, -1 if a redeclared field overwrites it
+    public int getObjectFieldOffset(int index) {
+        return objectFieldOffsets[index];
+    }
+
+    /**
+     * true if the object field is left unset and constructed on first access;
+     * its class needs a template before the object is used (see setTemplate)
+     */
+    public boolean isLazyObjectField(int index) {
+        return lazyObjectFields[index];
+    }
+
+    /**
+     * store the default-constructed value of an object field
+     */
+    public void setObjectField(ObjectValue obj, int index, ObjectValue value) {
+        int offset = objectFieldOffsets[index];
+        if (offset >= 0) {
+            Type type = objectFieldClasses[index].getType();
+            obj.setField(offset, new Value(type, value));
+        }
+    }
+
+    /**
+     * the default-constructed instance lazy fields of this class are copied from
+     * (null until an engine made it)
+     */
+    public ObjectValue getTemplate() {
+        return template;
+    }
+
+    public void setTemplate(ObjectValue template) {
+        this.template = template;
+    }
+
+    // class of the lazy object field at an offset, null if the field is not lazy
+    ClassSymbol getLazyFieldClass(int offset) {
+        return lazyFieldClasses[offset];
+    }
+
+    /**
+     * own cell for an unset field: a copy of the default value, or for a lazy
+     * object field a copy of the template of the field class (null if the field
+     * is an object field that is not lazy)
+     */
+    Value materializeField(int offset) {
+        if (prototype[offset] != null) {
+            return prototype[offset].copy();
+        }
+        ClassSymbol fieldClass = lazyFieldClasses[offset];
+        if (fieldClass == null) {
+            return null;
+        }
+        return new Value(fieldClass.getType(), fieldClass.getInstantiationPlan().template.copy(fieldClass));
+    }
+
+    public ConstructorSymbol[] getBaseConstructors() {
+        return baseConstructors;
+    }
+
+    public ConstructorSymbol getDefaultConstructor() {
+        return defaultConstructor;
+    }
+}
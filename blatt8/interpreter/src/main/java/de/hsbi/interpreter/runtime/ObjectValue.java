@@ -1,40 +1,226 @@
 package de.hsbi.interpreter.runtime;
 
+import de.hsbi.interpreter.ast.Type;
 import de.hsbi.interpreter.symbols.ClassSymbol;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 /**
  * represents a runtime object (instance of a class)
+ *
+ * fields are stored in an array laid out by the class (see ClassSymbol.getFieldOffset),
+ * field accesses use the offsets the semantic analyzer resolved
+ *
+ * copies are copy-on-write: a copy shares the field array with the original until
+ * one of them writes a field. then the writer gets its own array (nested objects in
+ * it are copies that share again). a sliced copy shares the array of the derived
+ * object and only sees the prefix its class lays out. field cells read before the
+ * write stay with the other copies, so the engines read an operand's value before
+ * they evaluate the next operand.
+ *
+ * - getField: read access. reading a class-typed field of shared fields unshares them
+ *   first, so a nested object never belongs to two copies
+ * - getFieldForWrite: the field is about to be assigned
+ * - getFieldForReference: a reference gets bound to the field; the fields can
+ *   change through it at any time later, so they are never shared again
+ *
+ * a thin object (--thin-objects) is only the class and an array of unset fields (see
+ * InstantiationPlan): reading an unset int/bool/char/string field gives the shared
+ * default cell of the class, a write or reference gives the field its own cell first.
+ * a lazily constructed object field is constructed on any access. setField overwrites
+ * an unset field without creating it
  */
 public class ObjectValue {
     private ClassSymbol classSymbol;
-    private Map<String, Value> fields;
+    private Value[] fields;
+    private Owners owners;    // null while no copy shares the fields
+    private boolean pinned;   // a reference points into the fields
+    private boolean temporary; // new object that nothing refers to yet besides its copy destination
+
+    // objects sharing one field array
+    private static class Owners {
+        int count = 1;
+    }
 
     public ObjectValue(ClassSymbol classSymbol) {
         this.classSymbol = classSymbol;
-        this.fields = new HashMap<>();
+        this.fields = new Value[classSymbol.getFieldCount()];
+    }
+
+    // object with prepared field values (see InstantiationPlan)
+    ObjectValue(ClassSymbol classSymbol, Value[] fields) {
+        this.classSymbol = classSymbol;
+        this.fields = fields;
     }
 
     public ClassSymbol getClassSymbol() {
         return classSymbol;
     }
 
-    public Map<String, Value> getFields() {
-        return fields;
+    /**
+     * mark a new object whose only use is to be copied once (see EscapeAnalyzer):
+     * that copy takes over the object itself
+     */
+    public void markTemporary() {
+        temporary = true;
+    }
+
+    public int getFieldCount() {
+        return classSymbol.getFieldCount();
+    }
+
+    public Value getField(int offset) {
+        Value field = fields[offset];
+        if (field == null) {
+            return readUnset(offset);
+        }
+        if (owners != null && field.getType().getBaseType() == Type.BaseType.CLASS) {
+            unshare();
+            field = fields[offset];
+        }
+        return field;
+    }
+
+    public Value getFieldForWrite(int offset) {
+        if (owners != null) {
+            unshare();
+        }
+        Value field = fields[offset];
+        return field != null ? field : materialize(offset);
+    }
+
+    public Value getFieldForReference(int offset) {
+        if (owners != null) {
+            unshare();
+        }
+        pinned = true;
+        Value field = fields[offset];
+        return field != null ? field : materialize(offset);
+    }
+
+    public void setField(int offset, Value value) {
+        if (owners != null) {
+            unshare();
+        }
+        fields[offset] = value;
+    }
+
+    /**
+     * field at the end of a path of offsets through nested objects (a.b.c is the
+     * path of b and c from a, see MemberAccessExpr.getFieldPath); the objects on
+     * the way are read with getField. nested objects are not embedded in this
+     * object's fields: an object assignment (o.inner = c) shares c's object and a
+     * reference binds to the field's cell, which an embedded layout could not keep
+     */
+    public Value getField(int[] path) {
+        return nested(path).getField(path[path.length - 1]);
+    }
+
+    public Value getFieldForWrite(int[] path) {
+        return nested(path).getFieldForWrite(path[path.length - 1]);
+    }
+
+    // a reference pins every object on the way
+    public Value getFieldForReference(int[] path) {
+        ObjectValue obj = this;
+        int last = path.length - 1;
+        for (int i = 0; i < last; i++) {
+            obj = obj.getFieldForReference(path[i]).getObjectValue();
+        }
+        return obj.getFieldForReference(path[last]);
+    }
+
+    // the object holding the last field of a path
+    private ObjectValue nested(int[] path) {
+        ObjectValue obj = this;
+        int last = path.length - 1;
+        for (int i = 0; i < last; i++) {
+            obj = obj.getField(path[i]).getObjectValue();
+        }
+        return obj;
     }
 
     public Value getField(String name) {
-        return fields.get(name);
+        int offset = classSymbol.getFieldOffset(name);
+        return offset >= 0 ? getField(offset) : null;
     }
 
     public void setField(String name, Value value) {
-        fields.put(name, value);
+        int offset = classSymbol.getFieldOffset(name);
+        if (offset < 0) {
+            throw new RuntimeError("field '" + name + "' not found in class '" + classSymbol.getName() + "'");
+        }
+        setField(offset, value);
+    }
+
+    /**
+     * copy of this object as an instance of the target class (this class or a base class,
+     * which slices the object); shares the fields until one of the objects writes.
+     * a temporary object is its own copy
+     */
+    public ObjectValue copy(ClassSymbol targetClass) {
+        if (temporary && targetClass == classSymbol) {
+            temporary = false;
+            return this;
+        }
+
+        CopyPlan plan = classSymbol.getCopyPlan(targetClass);
+        if (plan.unsetFieldsDiffer()) {
+            for (int i = 0; i < fields.length; i++) {
+                if (fields[i] == null) {
+                    materialize(i);
+                }
+            }
+        }
+        if (pinned || !plan.canShare()) {
+            return new ObjectValue(targetClass, plan.copy(fields));
+        }
+
+        if (owners == null) {
+            owners = new Owners();
+        }
+        owners.count++;
+        ObjectValue copy = new ObjectValue(targetClass, fields);
+        copy.owners = owners;
+        return copy;
+    }
+
+    // make a dead object new again (see Region); false if a copy still shares the fields
+    boolean reset() {
+        if (owners != null && owners.count > 1) {
+            return false;
+        }
+        Arrays.fill(fields, null);
+        classSymbol.getInstantiationPlan().setDefaults(fields);
+        owners = null;
+        pinned = false;
+        temporary = false;
+        return true;
+    }
+
+    // read access to an unset field: shared default or lazily constructed object
+    private Value readUnset(int offset) {
+        Value defaultValue = classSymbol.getInstantiationPlan().getDefaultField(offset);
+        return defaultValue != null ? defaultValue : materialize(offset);
+    }
+
+    // give an unset field its own cell
+    private Value materialize(int offset) {
+        if (owners != null) {
+            unshare();
+        }
+        Value field = classSymbol.getInstantiationPlan().materializeField(offset);
+        fields[offset] = field;
+        return field;
     }
 
-    public boolean hasField(String name) {
-        return fields.containsKey(name);
+    // give this object its own fields
+    private void unshare() {
+        if (owners.count > 1) {
+            owners.count--;
+            fields = classSymbol.getCopyPlan(classSymbol).copy(fields);
+        }
+        owners = null;
     }
 
     @Override
@@ -0,0 +1,35 @@
+package de.hsbi.interpreter.runtime;
+
+import de.hsbi.interpreter.symbols.ClassSymbol;
+
+import java.util.Arrays;
+
+/**
+ * objects of the local variables of a call that never leave it (see RegionAnalyzer)
+ *
+ * a region belongs to a call depth and is used by every call at that depth in turn.
+ * when a call returns, the objects it made in the region are dead all at once, so the
+ * next call constructs its objects in them again instead of allocating new ones. the
+ * index of an object is the frame slot of its variable; a variable declared again
+ * (e.g. in a loop) reuses the object of its previous declaration the same way
+ */
+public class Region {
+    private ObjectValue[] objects = new ObjectValue[4];
+
+    /**
+     * a new object of the class at the index: the object left there by an earlier call,
+     * reset, or a fresh one if the class differs or a copy still shares its fields
+     */
+    public ObjectValue allocate(int index, ClassSymbol classSymbol) {
+        if (index >= objects.length) {
+            objects = Arrays.copyOf(objects, Math.max(index + 1, objects.length * 2));
+        }
+        ObjectValue obj = objects[index];
+        if (obj != null && obj.getClassSymbol() == classSymbol && obj.reset()) {
+            return obj;
+        }
+        obj = classSymbol.getInstantiationPlan().instantiate();
+        objects[index] = obj;
+        return obj;
+    }
+}
@@ -0,0 +1,37 @@
+package de.hsbi.interpreter.runtime;
+
+import java.util.Arrays;
+
+/**
+ * regions of the running calls, one per call depth (see Region)
+ *
+ * only calls that have region variables enter a region, so the depth counts just
+ * those; two running calls never get the same region either way
+ */
+public class RegionStack {
+    private Region[] regions = new Region[16];
+    private int depth;
+
+    /**
+     * take the region for a new call
+     */
+    public Region enter() {
+        if (depth == regions.length) {
+            regions = Arrays.copyOf(regions, depth * 2);
+        }
+        Region region = regions[depth];
+        if (region == null) {
+            region = new Region();
+            regions[depth] = region;
+        }
+        depth++;
+        return region;
+    }
+
+    /**
+     * give back the region of the innermost call; its objects stay for the next call
+     */
+    public void exit() {
+        depth--;
+    }
+}
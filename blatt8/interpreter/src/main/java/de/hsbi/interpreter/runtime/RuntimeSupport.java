@@ -0,0 +1,147 @@
+package de.hsbi.interpreter.runtime;
+
+import de.hsbi.interpreter.ast.LiteralExpr;
+import de.hsbi.interpreter.ast.Operation;
+import de.hsbi.interpreter.ast.Type;
+import de.hsbi.interpreter.symbols.ClassSymbol;
+import de.hsbi.interpreter.symbols.MethodSymbol;
+
+import java.util.List;
+
+/**
+ * runtime operations shared by all execution engines
+ * (tree-walking interpreter and bytecode VM)
+ *
+ * everything in here only works on values - running constructors or
+ * method bodies is up to the engine
+ */
+public class RuntimeSupport {
+    public Value copyValue(Value value) {
+        return copyValueWithSlicing(value, value.getType());
+    }
+
+    /**
+     * Copy a value, potentially slicing to a target type.
+     * For class types, if targetType is a base class of the value's type,
+     * the object is sliced to contain only the base class fields and use
+     * the base class's ClassSymbol (for correct virtual dispatch).
+     * Objects are copied on write (see ObjectValue.copy).
+     */
+    public Value copyValueWithSlicing(Value value, Type targetType) {
+        if (value.getType().getBaseType() == Type.BaseType.CLASS) {
+            ObjectValue original = value.getObjectValue();
+            ClassSymbol targetClass;
+
+            // Determine the target class (for slicing)
+            if (targetType.getBaseType() == Type.BaseType.CLASS) {
+                targetClass = targetType.getClassSymbol();
+            } else {
+                targetClass = original.getClassSymbol();
+            }
+
+            if (targetClass == null) {
+                targetClass = original.getClassSymbol();
+            }
+
+            // the copy has the TARGET class (this enables correct slicing)
+            ObjectValue copy = original.copy(targetClass);
+            if (copy == original && value.getType() == targetType) {
+                // a temporary object moved with its cell
+                return value;
+            }
+            return new Value(targetType, copy);
+        } else {
+            // primitive types - create new value with same data
+            return value.copy();
+        }
+    }
+
+    /**
+     * implicit copy constructor: copy all fields of the source into a new object of the given class
+     */
+    public ObjectValue copyObject(ObjectValue source, ClassSymbol classSymbol) {
+        return source.copy(classSymbol);
+    }
+
+    /**
+     * condition value as bool, with the conversion chosen for its static type
+     * (see OperatorLowering)
+     */
+    public static boolean test(Operation conditionTest, Value value) {
+        switch (conditionTest) {
+            case BOOL_TEST:
+                return value.getBoolValue();
+            case INT_TEST:
+                return value.getIntValue() != 0;
+            case CHAR_TEST:
+                return value.getCharValue() != '\0';
+            case STRING_TEST:
+                return !value.getStringValue().isEmpty();
+            default:
+                throw new RuntimeError("not a condition test: " + conditionTest);
+        }
+    }
+
+    /**
+     * runtime value of a literal. engines share it between evaluations, so it
+     * must never be written to - they copy it before storing it in a variable
+     */
+    public static Value literalValue(LiteralExpr literal) {
+        switch (literal.getLiteralType()) {
+            case INT:
+                return Value.ofInt(literal.getIntValue());
+            case BOOL:
+                return Value.ofBool(literal.getBoolValue());
+            case CHAR:
+                return Value.ofChar(literal.getCharValue());
+            default:
+                return new Value(Type.STRING, literal.getValue());
+        }
+    }
+
+    public static boolean valuesEqual(Value left, Value right) {
+        if (left.getType().getBaseType() != right.getType().getBaseType()) {
+            return false;
+        }
+
+        switch (left.getType().getBaseType()) {
+            case INT:
+                return left.getIntValue() == right.getIntValue();
+            case BOOL:
+                return left.getBoolValue() == right.getBoolValue();
+            case CHAR:
+                return left.getCharValue() == right.getCharValue();
+            case STRING:
+                return left.getStringValue().equals(right.getStringValue());
+            case CLASS:
+                // object equality: same instance
+                return left.getObjectValue() == right.getObjectValue();
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * execute one of the print_* built-in functions
+     */
+    public static Value executeBuiltin(String name, Value arg) {
+        switch (name) {
+            case "print_bool":
+                System.out.println(arg.getBoolValue());
+                break;
+            case "print_int":
+                System.out.println(arg.getIntValue());
+                break;
+            case "print_char":
+                System.out.println(arg.getCharValue());
+                break;
+            case "print_string":
+                System.out.println(arg.getStringValue());
+                break;
+            default:
+                throw new RuntimeError("unknown built-in function: " + name);
+        }
+
+        return Value.defaultValue(Type.VOID);
+    }
+}
@@ -4,93 +4,128 @@ import de.hsbi.interpreter.ast.Type;
 
 /**
  * represents a runtime value
+ *
+ * a value is a mutable storage cell: every variable, field and temporary has its
+ * own, assignment writes into it. a reference is bound by sharing the cell of the
+ * lvalue it refers to, so reads and writes through a reference need no indirection
+ *
+ * int, bool (0/1) and char are stored unboxed in an int, strings and objects
+ * in a reference field; the type tells which one is used. the typed getters
+ * and setters never box, getData()/setData() are kept for generic code
  */
 public class Value {
     private Type type;
-    private Object data;
-    private boolean isReference;
-    private Value referencedValue; // if this is a reference, points to the actual value
+    private int primitive;   // int, bool and char values
+    private Object object;   // string and object values
 
     // constructor for non-reference values
     public Value(Type type, Object data) {
         this.type = type;
-        this.data = data;
-        this.isReference = false;
-        this.referencedValue = null;
+        store(data);
     }
 
-    // constructor for reference values
-    public Value(Value referencedValue) {
-        this.type = referencedValue.getType();
-        this.data = null;
-        this.isReference = true;
-        this.referencedValue = referencedValue;
+    private Value(Type type, int primitive) {
+        this.type = type;
+        this.primitive = primitive;
     }
 
-    public Type getType() {
-        return type;
+    public static Value ofInt(int value) {
+        return new Value(Type.INT, value);
     }
 
-    public boolean isReference() {
-        return isReference;
+    public static Value ofBool(boolean value) {
+        return new Value(Type.BOOL, value ? 1 : 0);
     }
 
-    public Value getReferencedValue() {
-        return referencedValue;
+    public static Value ofChar(char value) {
+        return new Value(Type.CHAR, (int) value);
+    }
+
+    public Type getType() {
+        return type;
     }
 
-    // get the actual value (following references if necessary)
+    // get the value, boxed
     public Object getData() {
-        if (isReference) {
-            return referencedValue.getData();
+        switch (type.getBaseType()) {
+            case INT:
+                return primitive;
+            case BOOL:
+                return primitive != 0;
+            case CHAR:
+                return (char) primitive;
+            default:
+                return object;
         }
-        return data;
     }
 
-    // set the actual value (following references if necessary)
     public void setData(Object newData) {
-        if (isReference) {
-            referencedValue.setData(newData);
+        store(newData);
+    }
+
+    private void store(Object data) {
+        if (data instanceof Integer) {
+            primitive = (Integer) data;
+        } else if (data instanceof Boolean) {
+            primitive = (Boolean) data ? 1 : 0;
+        } else if (data instanceof Character) {
+            primitive = (Character) data;
         } else {
-            this.data = newData;
+            object = data;
         }
     }
 
-    // for assignment: if this is a reference, write through to the referenced value
+    // for assignment: store the contents of the other value in this cell
     public void assign(Value other) {
-        if (isReference) {
-            referencedValue.assign(other);
-        } else {
-            this.data = other.getData();
-        }
+        primitive = other.primitive;
+        object = other.object;
+    }
+
+    /**
+     * new cell with the same type and contents
+     */
+    public Value copy() {
+        Value copy = new Value(type, primitive);
+        copy.object = object;
+        return copy;
     }
 
     // helper methods for specific types
     public int getIntValue() {
-        return (Integer) getData();
+        return primitive;
     }
 
     public boolean getBoolValue() {
-        return (Boolean) getData();
+        return primitive != 0;
     }
 
     public char getCharValue() {
-        return (Character) getData();
+        return (char) primitive;
     }
 
     public String getStringValue() {
-        return (String) getData();
+        return (String) object;
     }
 
     public ObjectValue getObjectValue() {
-        return (ObjectValue) getData();
+        return (ObjectValue) object;
+    }
+
+    public void setIntValue(int value) {
+        primitive = value;
+    }
+
+    public void setBoolValue(boolean value) {
+        primitive = value ? 1 : 0;
+    }
+
+    public void setCharValue(char value) {
+        primitive = value;
     }
 
     @Override
     public String toString() {
-        if (isReference) {
-            return "Ref->" + referencedValue.toString();
-        }
+        Object data = getData();
         return data != null ? data.toString() : "null";
     }
 
@@ -98,17 +133,14 @@ public class Value {
     public static Value defaultValue(Type type) {
         switch (type.getBaseType()) {
             case BOOL:
-                return new Value(type, false);
             case INT:
-                return new Value(type, 0);
             case CHAR:
-                return new Value(type, '\0');
+                return new Value(type, 0);
             case STRING:
                 return new Value(type, "");
             case VOID:
-                return new Value(type, null);
             case CLASS:
-                return new Value(type, null); // will be initialized with constructor
+                return new Value(type, null); // class values will be initialized with constructor
             default:
                 throw new RuntimeException("unknown type: " + type);
         }
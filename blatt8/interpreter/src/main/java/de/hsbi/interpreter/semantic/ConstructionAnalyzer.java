@@ -0,0 +1,223 @@
+package de.hsbi.interpreter.semantic;
+
+import de.hsbi.interpreter.ast.*;
+import de.hsbi.interpreter.symbols.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * finds the classes whose default construction has no side effects
+ * (runs after the SemanticAnalyzer, only with --lazy-fields)
+ *
+ * a class is lazily constructible if its class-typed fields are, and the parameterless
+ * constructors of the class and its base classes only compute with literals, their
+ * locals and the fields of the object. constructing such an object has no observable
+ * effect and always gives the same object, so the engines may construct a field of
+ * this class on its first access instead (see InstantiationPlan). calls, print_*
+ * built-ins and construction cycles make a class not lazily constructible
+ *
+ * the visitor returns true for side-effect free nodes
+ */
+public class ConstructionAnalyzer implements ASTVisitor<Boolean> {
+    private final SymbolTable symbolTable;
+    private final Map<ClassSymbol, Boolean> results = new HashMap<>();
+    private final Map<ConstructorSymbol, Boolean> constructorResults = new HashMap<>();
+
+    public ConstructionAnalyzer(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+    }
+
+    /**
+     * mark every lazily constructible class of the symbol table
+     */
+    public void analyze() {
+        for (ClassSymbol classSymbol : symbolTable.getClasses().values()) {
+            classSymbol.setLazilyConstructible(isLazilyConstructible(classSymbol));
+        }
+    }
+
+    private boolean isLazilyConstructible(ClassSymbol classSymbol) {
+        Boolean result = results.get(classSymbol);
+        if (result != null) {
+            return result;
+        }
+
+        // a class that is still being analyzed constructs itself
+        results.put(classSymbol, false);
+        result = fieldsAreLazilyConstructible(classSymbol)
+                && isBaseConstructionPure(classSymbol)
+                && isPure(classSymbol.getDefaultConstructor());
+        results.put(classSymbol, result);
+        return result;
+    }
+
+    // class-typed fields, including the inherited ones
+    private boolean fieldsAreLazilyConstructible(ClassSymbol classSymbol) {
+        for (ClassSymbol current = classSymbol; current != null; current = current.getBaseClass()) {
+            for (VarSymbol field : current.getFields().values()) {
+                ClassSymbol fieldClass = field.getType().getClassSymbol();
+                if (fieldClass != null && !isLazilyConstructible(fieldClass)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean isBaseConstructionPure(ClassSymbol classSymbol) {
+        for (ConstructorSymbol constructor : classSymbol.getBaseConstructors()) {
+            if (!isPure(constructor)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isPure(ConstructorSymbol constructor) {
+        if (constructor == null) {
+            return true;
+        }
+        Boolean result = constructorResults.get(constructor);
+        if (result == null) {
+            // a constructor that is still being analyzed calls itself
+            constructorResults.put(constructor, false);
+            result = constructor.getDeclaration().accept(this);
+            constructorResults.put(constructor, result);
+        }
+        return result;
+    }
+
+    private boolean allPure(Iterable<? extends ASTNode> nodes) {
+        for (ASTNode node : nodes) {
+            if (!node.accept(this)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Boolean visitProgram(Program node) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitClassDecl(ClassDecl node) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitFunctionDecl(FunctionDecl node) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitMethodDecl(MethodDecl node) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitConstructorDecl(ConstructorDecl node) {
+        return node.getBody() == null || node.getBody().accept(this);
+    }
+
+    @Override
+    public Boolean visitVarDecl(VarDecl node) {
+        if (node.hasInitializer()) {
+            return node.getInitializer().accept(this);
+        }
+        // a class-typed local without initializer is default-constructed
+        ClassSymbol classSymbol = node.getType().getClassSymbol();
+        return classSymbol == null || isLazilyConstructible(classSymbol);
+    }
+
+    @Override
+    public Boolean visitParameter(Parameter node) {
+        return true;
+    }
+
+    @Override
+    public Boolean visitBlockStmt(BlockStmt node) {
+        return allPure(node.getStatements());
+    }
+
+    @Override
+    public Boolean visitIfStmt(IfStmt node) {
+        return node.getCondition().accept(this)
+                && node.getThenStmt().accept(this)
+                && (!node.hasElse() || node.getElseStmt().accept(this));
+    }
+
+    @Override
+    public Boolean visitWhileStmt(WhileStmt node) {
+        return node.getCondition().accept(this) && node.getBody().accept(this);
+    }
+
+    @Override
+    public Boolean visitReturnStmt(ReturnStmt node) {
+        return !node.hasValue() || node.getValue().accept(this);
+    }
+
+    @Override
+    public Boolean visitExprStmt(ExprStmt node) {
+        return node.getExpression().accept(this);
+    }
+
+    @Override
+    public Boolean visitBinaryExpr(BinaryExpr node) {
+        return node.getLeft().accept(this) && node.getRight().accept(this);
+    }
+
+    @Override
+    public Boolean visitUnaryExpr(UnaryExpr node) {
+        return node.getOperand().accept(this);
+    }
+
+    @Override
+    public Boolean visitAssignExpr(AssignExpr node) {
+        // the target is a local or a field of an object the constructor owns
+        return node.getTarget().accept(this) && node.getValue().accept(this);
+    }
+
+    @Override
+    public Boolean visitVarExpr(VarExpr node) {
+        // locals and fields of the object under construction (there are no globals)
+        return true;
+    }
+
+    @Override
+    public Boolean visitCallExpr(CallExpr node) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitMemberAccessExpr(MemberAccessExpr node) {
+        return !node.isMethodCall() && node.getObject().accept(this);
+    }
+
+    @Override
+    public Boolean visitConstructorCallExpr(ConstructorCallExpr node) {
+        if (node.isFunctionCall() || !allPure(node.getArguments())) {
+            return false;
+        }
+        if (node.isImplicitCopy()) {
+            return true;
+        }
+        ClassSymbol classSymbol = symbolTable.getClass(node.getClassName());
+        return classSymbol != null
+                && fieldsAreLazilyConstructible(classSymbol)
+                && isBaseConstructionPure(classSymbol)
+                && isPure(node.getResolvedConstructor());
+    }
+
+    @Override
+    public Boolean visitLiteralExpr(LiteralExpr node) {
+        return true;
+    }
+
+    @Override
+    public Boolean visitType(Type node) {
+        return true;
+    }
+}
@@ -0,0 +1,208 @@
+package de.hsbi.interpreter.semantic;
+
+import de.hsbi.interpreter.ast.*;
+
+import java.util.List;
+
+/**
+ * finds the temporary objects that do not escape their destination
+ * (runs after the SemanticAnalyzer)
+ *
+ * T x = T(...) and f(T(...)) with a by-value parameter construct an object and
+ * copy it into the variable or parameter; the constructed object is used for
+ * nothing else. such constructor calls are marked as temporary, and the engines
+ * move the new object into its destination instead of copying it
+ * (see ObjectValue.markTemporary)
+ */
+public class EscapeAnalyzer implements ASTVisitor<Void> {
+
+    /**
+     * mark the temporary constructor calls of the program
+     */
+    public void analyze(Program program) {
+        program.accept(this);
+    }
+
+    // an expression copied into a variable or by-value parameter
+    private void copiedInto(Expression expression) {
+        if (expression instanceof ConstructorCallExpr) {
+            ConstructorCallExpr call = (ConstructorCallExpr) expression;
+            if (!call.isFunctionCall() && !call.getClassName().startsWith("print_")) {
+                call.setTemporary(true);
+            }
+        }
+    }
+
+    private void visitArguments(List<Expression> arguments, List<Parameter> parameters) {
+        for (int i = 0; i < arguments.size(); i++) {
+            arguments.get(i).accept(this);
+            if (parameters != null && !parameters.get(i).isReference()) {
+                copiedInto(arguments.get(i));
+            }
+        }
+    }
+
+    private void visitAll(List<? extends ASTNode> nodes) {
+        for (ASTNode node : nodes) {
+            node.accept(this);
+        }
+    }
+
+    @Override
+    public Void visitProgram(Program node) {
+        visitAll(node.getFunctions());
+        visitAll(node.getClasses());
+        return null;
+    }
+
+    @Override
+    public Void visitClassDecl(ClassDecl node) {
+        visitAll(node.getMethods());
+        visitAll(node.getConstructors());
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionDecl(FunctionDecl node) {
+        if (node.getBody() != null) {
+            node.getBody().accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitMethodDecl(MethodDecl node) {
+        if (node.getBody() != null) {
+            node.getBody().accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitConstructorDecl(ConstructorDecl node) {
+        if (node.getBody() != null) {
+            node.getBody().accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitVarDecl(VarDecl node) {
+        if (node.hasInitializer()) {
+            node.getInitializer().accept(this);
+            if (!node.isReference()) {
+                copiedInto(node.getInitializer());
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitParameter(Parameter node) {
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(BlockStmt node) {
+        visitAll(node.getStatements());
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(IfStmt node) {
+        node.getCondition().accept(this);
+        node.getThenStmt().accept(this);
+        if (node.hasElse()) {
+            node.getElseStmt().accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(WhileStmt node) {
+        node.getCondition().accept(this);
+        node.getBody().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(ReturnStmt node) {
+        if (node.hasValue()) {
+            node.getValue().accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitExprStmt(ExprStmt node) {
+        node.getExpression().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(BinaryExpr node) {
+        node.getLeft().accept(this);
+        node.getRight().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(UnaryExpr node) {
+        node.getOperand().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitAssignExpr(AssignExpr node) {
+        // an assigned object is shared with the target (see Value.assign), not copied
+        node.getTarget().accept(this);
+        node.getValue().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitVarExpr(VarExpr node) {
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(CallExpr node) {
+        List<Parameter> parameters = node.getResolvedFunction() != null
+                ? node.getResolvedFunction().getParameters() : null;
+        visitArguments(node.getArguments(), parameters);
+        return null;
+    }
+
+    @Override
+    public Void visitMemberAccessExpr(MemberAccessExpr node) {
+        node.getObject().accept(this);
+        if (node.isMethodCall()) {
+            List<Parameter> parameters = node.getResolvedMethod() != null
+                    ? node.getResolvedMethod().getParameters() : null;
+            visitArguments(node.getArguments(), parameters);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitConstructorCallExpr(ConstructorCallExpr node) {
+        List<Parameter> parameters = null;
+        if (node.isFunctionCall()) {
+            parameters = node.getResolvedFunction().getParameters();
+        } else if (node.getResolvedConstructor() != null && !node.isImplicitCopy()) {
+            parameters = node.getResolvedConstructor().getParameters();
+        }
+        visitArguments(node.getArguments(), parameters);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(LiteralExpr node) {
+        return null;
+    }
+
+    @Override
+    public Void visitType(Type node) {
+        return null;
+    }
+}
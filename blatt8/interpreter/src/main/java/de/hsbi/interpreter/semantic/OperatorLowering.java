@@ -0,0 +1,275 @@
+package de.hsbi.interpreter.semantic;
+
+import de.hsbi.interpreter.ast.*;
+
+import java.util.List;
+
+/**
+ * lowers the operators of the program to the operations for their operand types
+ * (runs after the SemanticAnalyzer, see Operation)
+ *
+ * the semantic analysis has checked the operands, so the static type of the left
+ * operand tells what a <, == or ! works on: an int comparison, a string equality, ...
+ * conditions of if and while get the conversion of their type to bool
+ */
+public class OperatorLowering implements ASTVisitor<Void> {
+
+    /**
+     * lower the operators of the program
+     */
+    public void lower(Program program) {
+        program.accept(this);
+    }
+
+    private static Type.BaseType baseType(Expression expression) {
+        return expression.getType() != null ? expression.getType().getBaseType() : Type.BaseType.VOID;
+    }
+
+    private static Operation binaryOperation(BinaryExpr.Operator op, Type.BaseType operands) {
+        boolean isChar = operands == Type.BaseType.CHAR;
+        switch (op) {
+            case PLUS:
+                return Operation.INT_ADD;
+            case MINUS:
+                return Operation.INT_SUB;
+            case MULT:
+                return Operation.INT_MUL;
+            case DIV:
+                return Operation.INT_DIV;
+            case MOD:
+                return Operation.INT_MOD;
+            case LT:
+                return isChar ? Operation.CHAR_LT : Operation.INT_LT;
+            case LEQ:
+                return isChar ? Operation.CHAR_LEQ : Operation.INT_LEQ;
+            case GT:
+                return isChar ? Operation.CHAR_GT : Operation.INT_GT;
+            case GEQ:
+                return isChar ? Operation.CHAR_GEQ : Operation.INT_GEQ;
+            case EQ:
+                return equality(operands);
+            case NEQ:
+                return inequality(operands);
+            case AND:
+                return Operation.BOOL_AND;
+            case OR:
+                return Operation.BOOL_OR;
+            default:
+                throw new IllegalStateException("unknown binary operator: " + op);
+        }
+    }
+
+    private static Operation equality(Type.BaseType operands) {
+        switch (operands) {
+            case INT:
+                return Operation.INT_EQ;
+            case BOOL:
+                return Operation.BOOL_EQ;
+            case CHAR:
+                return Operation.CHAR_EQ;
+            case STRING:
+                return Operation.STRING_EQ;
+            case CLASS:
+                return Operation.OBJECT_EQ;
+            default:
+                return Operation.VALUE_EQ;
+        }
+    }
+
+    private static Operation inequality(Type.BaseType operands) {
+        switch (operands) {
+            case INT:
+                return Operation.INT_NEQ;
+            case BOOL:
+                return Operation.BOOL_NEQ;
+            case CHAR:
+                return Operation.CHAR_NEQ;
+            case STRING:
+                return Operation.STRING_NEQ;
+            case CLASS:
+                return Operation.OBJECT_NEQ;
+            default:
+                return Operation.VALUE_NEQ;
+        }
+    }
+
+    private static Operation conditionTest(Expression condition) {
+        switch (baseType(condition)) {
+            case INT:
+                return Operation.INT_TEST;
+            case CHAR:
+                return Operation.CHAR_TEST;
+            case STRING:
+                return Operation.STRING_TEST;
+            default:
+                return Operation.BOOL_TEST;
+        }
+    }
+
+    private void visitAll(List<? extends ASTNode> nodes) {
+        for (ASTNode node : nodes) {
+            node.accept(this);
+        }
+    }
+
+    @Override
+    public Void visitProgram(Program node) {
+        visitAll(node.getFunctions());
+        visitAll(node.getClasses());
+        return null;
+    }
+
+    @Override
+    public Void visitClassDecl(ClassDecl node) {
+        visitAll(node.getFields());
+        visitAll(node.getMethods());
+        visitAll(node.getConstructors());
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionDecl(FunctionDecl node) {
+        if (node.getBody() != null) {
+            node.getBody().accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitMethodDecl(MethodDecl node) {
+        if (node.getBody() != null) {
+            node.getBody().accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitConstructorDecl(ConstructorDecl node) {
+        if (node.getBody() != null) {
+            node.getBody().accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitVarDecl(VarDecl node) {
+        if (node.hasInitializer()) {
+            node.getInitializer().accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitParameter(Parameter node) {
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(BlockStmt node) {
+        visitAll(node.getStatements());
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(IfStmt node) {
+        node.getCondition().accept(this);
+        node.setConditionTest(conditionTest(node.getCondition()));
+        node.getThenStmt().accept(this);
+        if (node.hasElse()) {
+            node.getElseStmt().accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(WhileStmt node) {
+        node.getCondition().accept(this);
+        node.setConditionTest(conditionTest(node.getCondition()));
+        node.getBody().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(ReturnStmt node) {
+        if (node.hasValue()) {
+            node.getValue().accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitExprStmt(ExprStmt node) {
+        node.getExpression().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(BinaryExpr node) {
+        node.getLeft().accept(this);
+        node.getRight().accept(this);
+        node.setOperation(binaryOperation(node.getOperator(), baseType(node.getLeft())));
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(UnaryExpr node) {
+        node.getOperand().accept(this);
+        switch (node.getOperator()) {
+            case PLUS:
+                node.setOperation(Operation.INT_PLUS);
+                break;
+            case MINUS:
+                node.setOperation(Operation.INT_NEG);
+                break;
+            case NOT:
+                node.setOperation(Operation.BOOL_NOT);
+                break;
+            default:
+                throw new IllegalStateException("unknown unary operator: " + node.getOperator());
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitAssignExpr(AssignExpr node) {
+        node.getTarget().accept(this);
+        node.getValue().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitVarExpr(VarExpr node) {
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(CallExpr node) {
+        visitAll(node.getArguments());
+        return null;
+    }
+
+    @Override
+    public Void visitMemberAccessExpr(MemberAccessExpr node) {
+        node.getObject().accept(this);
+        if (node.isMethodCall()) {
+            visitAll(node.getArguments());
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitConstructorCallExpr(ConstructorCallExpr node) {
+        visitAll(node.getArguments());
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(LiteralExpr node) {
+        return null;
+    }
+
+    @Override
+    public Void visitType(Type node) {
+        return null;
+    }
+}
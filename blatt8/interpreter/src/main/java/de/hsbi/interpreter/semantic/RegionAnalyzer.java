@@ -0,0 +1,264 @@
+package de.hsbi.interpreter.semantic;
+
+import de.hsbi.interpreter.ast.*;
+import de.hsbi.interpreter.symbols.ClassSymbol;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * finds the local objects that never leave their call
+ * (runs after the EscapeAnalyzer, only with --regions)
+ *
+ * a class-typed local (T x; or T x = T(...)) is a region variable if its slot is
+ * only used to access fields and call methods (x.f, x.m()), or to be copied into
+ * another variable or by-value parameter. the object can then only be reached
+ * through the variable and through copies, which share its fields copy-on-write
+ * and are counted. the engines construct such objects in the Region of the call
+ * and reuse them once the variable is dead (see Region)
+ *
+ * assignments (they share the object, see Value.assign), references, returns
+ * and any other use make the slot escape
+ */
+public class RegionAnalyzer implements ASTVisitor<Void> {
+    private boolean[] escaped;    // by slot, for the body being analyzed
+    private List<VarDecl> candidates;
+
+    /**
+     * mark the region variables of the program
+     */
+    public void analyze(Program program) {
+        program.accept(this);
+    }
+
+    private void analyzeBody(BlockStmt body, int frameSize) {
+        if (body == null) {
+            return;
+        }
+        escaped = new boolean[frameSize];
+        candidates = new ArrayList<>();
+        body.accept(this);
+
+        for (VarDecl decl : candidates) {
+            if (escaped[decl.getSlot()]) {
+                continue;
+            }
+            if (decl.hasInitializer()) {
+                ((ConstructorCallExpr) decl.getInitializer()).setRegionIndex(decl.getSlot());
+            } else {
+                decl.setRegionIndex(decl.getSlot());
+            }
+        }
+    }
+
+    // class-typed local that gets a new object of exactly its class
+    private static boolean isCandidate(VarDecl node) {
+        ClassSymbol classSymbol = node.getType().getClassSymbol();
+        if (node.isReference() || classSymbol == null) {
+            return false;
+        }
+        if (!node.hasInitializer()) {
+            return true;
+        }
+        if (!(node.getInitializer() instanceof ConstructorCallExpr)) {
+            return false;
+        }
+        ConstructorCallExpr call = (ConstructorCallExpr) node.getInitializer();
+        return !call.isFunctionCall() && !call.isImplicitCopy()
+                && call.getType() != null && call.getType().getClassSymbol() == classSymbol;
+    }
+
+    private static boolean isLocal(Expression expression) {
+        return expression instanceof VarExpr && !((VarExpr) expression).isReceiverField();
+    }
+
+    // an expression whose value is copied: a plain local is not used otherwise
+    private void visitCopied(Expression expression) {
+        if (!isLocal(expression)) {
+            expression.accept(this);
+        }
+    }
+
+    private void visitArguments(List<Expression> arguments, List<Parameter> parameters) {
+        for (int i = 0; i < arguments.size(); i++) {
+            if (parameters != null && !parameters.get(i).isReference()) {
+                visitCopied(arguments.get(i));
+            } else {
+                arguments.get(i).accept(this);
+            }
+        }
+    }
+
+    private void visitAll(List<? extends ASTNode> nodes) {
+        for (ASTNode node : nodes) {
+            node.accept(this);
+        }
+    }
+
+    @Override
+    public Void visitProgram(Program node) {
+        visitAll(node.getFunctions());
+        visitAll(node.getClasses());
+        return null;
+    }
+
+    @Override
+    public Void visitClassDecl(ClassDecl node) {
+        visitAll(node.getMethods());
+        visitAll(node.getConstructors());
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionDecl(FunctionDecl node) {
+        analyzeBody(node.getBody(), node.getFrameSize());
+        return null;
+    }
+
+    @Override
+    public Void visitMethodDecl(MethodDecl node) {
+        analyzeBody(node.getBody(), node.getFrameSize());
+        return null;
+    }
+
+    @Override
+    public Void visitConstructorDecl(ConstructorDecl node) {
+        analyzeBody(node.getBody(), node.getFrameSize());
+        return null;
+    }
+
+    @Override
+    public Void visitVarDecl(VarDecl node) {
+        if (node.hasInitializer()) {
+            if (node.isReference()) {
+                node.getInitializer().accept(this);
+            } else {
+                visitCopied(node.getInitializer());
+            }
+        }
+        if (isCandidate(node)) {
+            candidates.add(node);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitParameter(Parameter node) {
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(BlockStmt node) {
+        visitAll(node.getStatements());
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(IfStmt node) {
+        node.getCondition().accept(this);
+        node.getThenStmt().accept(this);
+        if (node.hasElse()) {
+            node.getElseStmt().accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(WhileStmt node) {
+        node.getCondition().accept(this);
+        node.getBody().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(ReturnStmt node) {
+        // the returned value is handed to the caller as it is
+        if (node.hasValue()) {
+            node.getValue().accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitExprStmt(ExprStmt node) {
+        node.getExpression().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(BinaryExpr node) {
+        node.getLeft().accept(this);
+        node.getRight().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(UnaryExpr node) {
+        node.getOperand().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitAssignExpr(AssignExpr node) {
+        node.getTarget().accept(this);
+        node.getValue().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitVarExpr(VarExpr node) {
+        if (!node.isReceiverField()) {
+            escaped[node.getSlot()] = true;
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(CallExpr node) {
+        List<Parameter> parameters = node.getResolvedFunction() != null
+                ? node.getResolvedFunction().getParameters() : null;
+        visitArguments(node.getArguments(), parameters);
+        return null;
+    }
+
+    @Override
+    public Void visitMemberAccessExpr(MemberAccessExpr node) {
+        // x.f and x.m() only use the object, they never hand it out
+        if (!isLocal(node.getObject())) {
+            node.getObject().accept(this);
+        }
+        if (node.isMethodCall()) {
+            List<Parameter> parameters = node.getResolvedMethod() != null
+                    ? node.getResolvedMethod().getParameters() : null;
+            visitArguments(node.getArguments(), parameters);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitConstructorCallExpr(ConstructorCallExpr node) {
+        if (node.isImplicitCopy()) {
+            // T(x) copies x
+            visitCopied(node.getArguments().get(0));
+            return null;
+        }
+        List<Parameter> parameters = null;
+        if (node.isFunctionCall()) {
+            parameters = node.getResolvedFunction().getParameters();
+        } else if (node.getResolvedConstructor() != null) {
+            parameters = node.getResolvedConstructor().getParameters();
+        }
+        visitArguments(node.getArguments(), parameters);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(LiteralExpr node) {
+        return null;
+    }
+
+    @Override
+    public Void visitType(Type node) {
+        return null;
+    }
+}
@@ -4,6 +4,7 @@ import de.hsbi.interpreter.ast.*;
 import de.hsbi.interpreter.symbols.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -12,6 +13,7 @@ import java.util.List;
  * - lvalue checking
  * - function overload resolution
  * - virtual method validation
+ * - frame slot assignment for locals and parameters
  */
 public class SemanticAnalyzer implements ASTVisitor<Type> {
     private SymbolTable symbolTable;
@@ -19,6 +21,11 @@ public class SemanticAnalyzer implements ASTVisitor<Type> {
     private Type currentFunctionReturnType;
     private List<String> errors;
 
+    // frame slot allocation for the function/method/constructor being analyzed
+    // (block scopes reuse the slots of their siblings, so a frame is sized by the deepest nesting)
+    private int nextSlot;
+    private int frameSize;
+
     public SemanticAnalyzer(SymbolTable symbolTable) {
         this.symbolTable = symbolTable;
         this.currentClass = null;
@@ -78,6 +85,8 @@ public class SemanticAnalyzer implements ASTVisitor<Type> {
         // check for inheritance cycles
         if (hasInheritanceCycle(currentClass)) {
             error("class '" + node.getName() + "' has cyclic inheritance", node);
+        } else {
+            bindConstructors(currentClass);
         }
 
         // analyze fields
@@ -111,12 +120,11 @@ public class SemanticAnalyzer implements ASTVisitor<Type> {
         currentFunctionReturnType = node.getReturnType();
 
         symbolTable.enterScope("function:" + node.getName());
+        beginFrame();
 
         // define parameters in function scope
         for (Parameter param : node.getParameters()) {
-            VarSymbol paramSymbol = new VarSymbol(param.getName(), param.getType(), param.isReference());
-            symbolTable.define(paramSymbol);
-            param.accept(this);
+            defineParameter(param);
         }
 
         // analyze body
@@ -124,6 +132,7 @@ public class SemanticAnalyzer implements ASTVisitor<Type> {
             node.getBody().accept(this);
         }
 
+        node.setFrameSize(frameSize);
         symbolTable.exitScope();
         currentFunctionReturnType = null;
         return null;
@@ -134,12 +143,11 @@ public class SemanticAnalyzer implements ASTVisitor<Type> {
         currentFunctionReturnType = node.getReturnType();
 
         symbolTable.enterScope("method:" + node.getName());
+        beginFrame();
 
         // First, define parameters in method scope (they take precedence over fields)
         for (Parameter param : node.getParameters()) {
-            VarSymbol paramSymbol = new VarSymbol(param.getName(), param.getType(), param.isReference());
-            symbolTable.define(paramSymbol);
-            param.accept(this);
+            defineParameter(param);
         }
 
         // Then define class fields in method scope (including inherited fields)
@@ -153,6 +161,7 @@ public class SemanticAnalyzer implements ASTVisitor<Type> {
             node.getBody().accept(this);
         }
 
+        node.setFrameSize(frameSize);
         symbolTable.exitScope();
         currentFunctionReturnType = null;
         return null;
@@ -160,15 +169,14 @@ public class SemanticAnalyzer implements ASTVisitor<Type> {
 
     @Override
     public Type visitConstructorDecl(ConstructorDecl node) {
-        currentFunctionReturnType = new Type(Type.BaseType.VOID);
+        currentFunctionReturnType = Type.VOID;
 
         symbolTable.enterScope("constructor:" + node.getName());
+        beginFrame();
 
         // First, define parameters in constructor scope (they take precedence over fields)
         for (Parameter param : node.getParameters()) {
-            VarSymbol paramSymbol = new VarSymbol(param.getName(), param.getType(), param.isReference());
-            symbolTable.define(paramSymbol);
-            param.accept(this);
+            defineParameter(param);
         }
 
         // Then define class fields in constructor scope (including inherited fields)
@@ -182,6 +190,7 @@ public class SemanticAnalyzer implements ASTVisitor<Type> {
             node.getBody().accept(this);
         }
 
+        node.setFrameSize(frameSize);
         symbolTable.exitScope();
         currentFunctionReturnType = null;
         return null;
@@ -189,6 +198,8 @@ public class SemanticAnalyzer implements ASTVisitor<Type> {
 
     @Override
     public Type visitVarDecl(VarDecl node) {
+        node.setType(symbolTable.resolveType(node.getType()));
+
         // check that type exists
         if (!isValidType(node.getType())) {
             error("variable '" + node.getName() + "': unknown type '" + node.getType() + "'", node);
@@ -214,10 +225,12 @@ public class SemanticAnalyzer implements ASTVisitor<Type> {
             }
         }
 
-        // Only define variable in symbol table if we're NOT inside a class definition
+        // Only define variable in symbol table if we're inside a function, method or constructor
         // (class fields are already stored in ClassSymbol, not in the global scope)
-        if (currentClass == null) {
-            VarSymbol varSymbol = new VarSymbol(node.getName(), node.getType(), node.isReference());
+        if (currentFunctionReturnType != null) {
+            int slot = allocateSlot();
+            node.setSlot(slot);
+            VarSymbol varSymbol = new VarSymbol(node.getName(), node.getType(), node.isReference(), slot);
             symbolTable.define(varSymbol);
         }
 
@@ -236,11 +249,14 @@ public class SemanticAnalyzer implements ASTVisitor<Type> {
     @Override
     public Type visitBlockStmt(BlockStmt node) {
         symbolTable.enterScope("block");
+        int blockStart = nextSlot;
 
         for (Statement stmt : node.getStatements()) {
             stmt.accept(this);
         }
 
+        // slots of this block's locals can be reused by following blocks
+        nextSlot = blockStart;
         symbolTable.exitScope();
         return null;
     }
@@ -297,6 +313,12 @@ public class SemanticAnalyzer implements ASTVisitor<Type> {
             } else if (!typesMatch(currentFunctionReturnType, returnType)) {
                 error("return type '" + returnType + "' does not match function return type '" + currentFunctionReturnType + "'", node);
             }
+
+            // return f(...) in a function (not in a method, currentClass is only set in classes)
+            if (currentClass == null && node.getValue() instanceof ConstructorCallExpr
+                    && ((ConstructorCallExpr) node.getValue()).isFunctionCall()) {
+                node.setTailCall(true);
+            }
         }
 
         return null;
@@ -327,24 +349,24 @@ public class SemanticAnalyzer implements ASTVisitor<Type> {
             case DIV:
             case MOD:
                 // arithmetic operators: both operands must be int
-                if (!leftType.equals(new Type(Type.BaseType.INT)) || !rightType.equals(new Type(Type.BaseType.INT))) {
+                if (leftType != Type.INT || rightType != Type.INT) {
                     error("arithmetic operator requires int operands", node);
                     return null;
                 }
-                node.setType(new Type(Type.BaseType.INT));
-                return new Type(Type.BaseType.INT);
+                node.setType(Type.INT);
+                return Type.INT;
 
             case LT:
             case LEQ:
             case GT:
             case GEQ:
                 // relational operators: int or char
-                if (leftType.equals(new Type(Type.BaseType.INT)) && rightType.equals(new Type(Type.BaseType.INT))) {
-                    node.setType(new Type(Type.BaseType.BOOL));
-                    return new Type(Type.BaseType.BOOL);
-                } else if (leftType.equals(new Type(Type.BaseType.CHAR)) && rightType.equals(new Type(Type.BaseType.CHAR))) {
-                    node.setType(new Type(Type.BaseType.BOOL));
-                    return new Type(Type.BaseType.BOOL);
+                if (leftType == Type.INT && rightType == Type.INT) {
+                    node.setType(Type.BOOL);
+                    return Type.BOOL;
+                } else if (leftType == Type.CHAR && rightType == Type.CHAR) {
+                    node.setType(Type.BOOL);
+                    return Type.BOOL;
                 } else {
                     error("relational operator requires int or char operands", node);
                     return null;
@@ -357,18 +379,18 @@ public class SemanticAnalyzer implements ASTVisitor<Type> {
                     error("equality operator requires operands of same type", node);
                     return null;
                 }
-                node.setType(new Type(Type.BaseType.BOOL));
-                return new Type(Type.BaseType.BOOL);
+                node.setType(Type.BOOL);
+                return Type.BOOL;
 
             case AND:
             case OR:
                 // logical operators: both operands must be bool
-                if (!leftType.equals(new Type(Type.BaseType.BOOL)) || !rightType.equals(new Type(Type.BaseType.BOOL))) {
+                if (leftType != Type.BOOL || rightType != Type.BOOL) {
                     error("logical operator requires bool operands", node);
                     return null;
                 }
-                node.setType(new Type(Type.BaseType.BOOL));
-                return new Type(Type.BaseType.BOOL);
+                node.setType(Type.BOOL);
+                return Type.BOOL;
 
             default:
                 error("unknown binary operator: " + op, node);
@@ -390,21 +412,21 @@ public class SemanticAnalyzer implements ASTVisitor<Type> {
             case PLUS:
             case MINUS:
                 // unary plus/minus: operand must be int
-                if (!operandType.equals(new Type(Type.BaseType.INT))) {
+                if (operandType != Type.INT) {
                     error("unary +/- requires int operand", node);
                     return null;
                 }
-                node.setType(new Type(Type.BaseType.INT));
-                return new Type(Type.BaseType.INT);
+                node.setType(Type.INT);
+                return Type.INT;
 
             case NOT:
                 // logical not: operand must be bool
-                if (!operandType.equals(new Type(Type.BaseType.BOOL))) {
+                if (operandType != Type.BOOL) {
                     error("logical ! requires bool operand", node);
                     return null;
                 }
-                node.setType(new Type(Type.BaseType.BOOL));
-                return new Type(Type.BaseType.BOOL);
+                node.setType(Type.BOOL);
+                return Type.BOOL;
 
             default:
                 error("unknown unary operator: " + op, node);
@@ -428,8 +450,8 @@ public class SemanticAnalyzer implements ASTVisitor<Type> {
 
         // check for slicing: Base b; b = derived; (allowed)
         if (targetType.getBaseType() == Type.BaseType.CLASS && valueType.getBaseType() == Type.BaseType.CLASS) {
-            ClassSymbol targetClass = symbolTable.getClass(targetType.getClassName());
-            ClassSymbol valueClass = symbolTable.getClass(valueType.getClassName());
+            ClassSymbol targetClass = classOf(targetType);
+            ClassSymbol valueClass = classOf(valueType);
 
             if (targetClass != null && valueClass != null && isDerivedFrom(valueClass, targetClass)) {
                 // slicing is allowed
@@ -462,6 +484,12 @@ public class SemanticAnalyzer implements ASTVisitor<Type> {
             return null;
         }
 
+        VarSymbol variable = (VarSymbol) symbol;
+        if (variable.isReceiverField()) {
+            node.setFieldOffset(variable.getFieldOffset());
+        } else {
+            node.setSlot(variable.getSlot());
+        }
         node.setType(symbol.getType());
         return symbol.getType();
     }
@@ -509,6 +537,7 @@ public class SemanticAnalyzer implements ASTVisitor<Type> {
             }
         }
 
+        node.setResolvedFunction(function);
         node.setType(function.getType());
         return function.getType();
     }
@@ -526,7 +555,7 @@ public class SemanticAnalyzer implements ASTVisitor<Type> {
             return null;
         }
 
-        ClassSymbol classSymbol = symbolTable.getClass(objectType.getClassName());
+        ClassSymbol classSymbol = classOf(objectType);
         if (classSymbol == null) {
             error("member access: class '" + objectType.getClassName() + "' not found", node);
             return null;
@@ -569,6 +598,7 @@ public class SemanticAnalyzer implements ASTVisitor<Type> {
 
             // Store the resolved method for the interpreter
             node.setResolvedMethod(method);
+            node.setVtableSlot(classSymbol.getVtableSlot(method));
             node.setType(method.getType());
             return method.getType();
         } else {
@@ -579,6 +609,10 @@ public class SemanticAnalyzer implements ASTVisitor<Type> {
                 return null;
             }
 
+            // the offset is the same in every subclass of the static type
+            int offset = classSymbol.getFieldOffset(node.getMemberName());
+            node.setFieldOffset(offset);
+            resolveFieldPath(node, offset);
             node.setType(field.getType());
             return field.getType();
         }
@@ -629,7 +663,7 @@ public class SemanticAnalyzer implements ASTVisitor<Type> {
             return function.getType();
         }
 
-        // otherwise, it's a constructor call
+        // otherwise, it's a constructor call (constructor == null: no constructor runs)
         ClassSymbol classSymbol = symbolTable.getClass(node.getClassName());
 
         if (classSymbol == null) {
@@ -652,7 +686,7 @@ public class SemanticAnalyzer implements ASTVisitor<Type> {
                 arg.accept(this);
             }
             node.setImplicitCopy(true);
-            Type type = new Type(node.getClassName());
+            Type type = classSymbol.getType();
             node.setType(type);
             return type;
         }
@@ -677,7 +711,8 @@ public class SemanticAnalyzer implements ASTVisitor<Type> {
             }
         }
 
-        Type type = new Type(node.getClassName());
+        node.setResolvedConstructor(constructor);
+        Type type = classSymbol.getType();
         node.setType(type);
         return type;
     }
@@ -687,16 +722,16 @@ public class SemanticAnalyzer implements ASTVisitor<Type> {
         Type type;
         switch (node.getLiteralType()) {
             case INT:
-                type = new Type(Type.BaseType.INT);
+                type = Type.INT;
                 break;
             case BOOL:
-                type = new Type(Type.BaseType.BOOL);
+                type = Type.BOOL;
                 break;
             case CHAR:
-                type = new Type(Type.BaseType.CHAR);
+                type = Type.CHAR;
                 break;
             case STRING:
-                type = new Type(Type.BaseType.STRING);
+                type = Type.STRING;
                 break;
             default:
                 error("unknown literal type", node);
@@ -714,6 +749,13 @@ public class SemanticAnalyzer implements ASTVisitor<Type> {
 
     // helper methods
 
+    private ClassSymbol classOf(Type type) {
+        if (type.getClassSymbol() != null) {
+            return type.getClassSymbol();
+        }
+        return symbolTable.getClass(type.getClassName());
+    }
+
     private boolean isValidType(Type type) {
         if (type.isPrimitive()) {
             return true;
@@ -730,8 +772,8 @@ public class SemanticAnalyzer implements ASTVisitor<Type> {
         }
         // check for inheritance: t2 can be assigned to t1 if t2 is derived from t1
         if (t1.getBaseType() == Type.BaseType.CLASS && t2.getBaseType() == Type.BaseType.CLASS) {
-            ClassSymbol class1 = symbolTable.getClass(t1.getClassName());
-            ClassSymbol class2 = symbolTable.getClass(t2.getClassName());
+            ClassSymbol class1 = classOf(t1);
+            ClassSymbol class2 = classOf(t2);
             if (class1 != null && class2 != null) {
                 return isDerivedFrom(class2, class1);
             }
@@ -770,9 +812,29 @@ public class SemanticAnalyzer implements ASTVisitor<Type> {
         return false;
     }
 
+    private void beginFrame() {
+        nextSlot = 0;
+        frameSize = 0;
+    }
+
+    private int allocateSlot() {
+        int slot = nextSlot++;
+        frameSize = Math.max(frameSize, nextSlot);
+        return slot;
+    }
+
+    private void defineParameter(Parameter param) {
+        int slot = allocateSlot();
+        param.setSlot(slot);
+        symbolTable.define(new VarSymbol(param.getName(), param.getType(), param.isReference(), slot));
+        param.accept(this);
+    }
+
     /**
      * Define all fields of a class (including inherited fields) in the current scope.
      * This is used when analyzing methods and constructors.
+     * The fields take no frame slots: a name that resolves to one is accessed
+     * directly in the receiver object through its layout offset.
      */
     private void defineClassFieldsInScope(ClassSymbol classSymbol) {
         // First, add inherited fields (from base classes, in order from oldest ancestor)
@@ -784,7 +846,8 @@ public class SemanticAnalyzer implements ASTVisitor<Type> {
         for (VarSymbol field : classSymbol.getFields().values()) {
             // Only define if not already defined (could be shadowed by subclass)
             if (symbolTable.resolveLocal(field.getName()) == null) {
-                symbolTable.define(new VarSymbol(field.getName(), field.getType(), field.isReference()));
+                int offset = classSymbol.getFieldOffset(field.getName());
+                symbolTable.define(VarSymbol.receiverField(field.getName(), field.getType(), offset));
             }
         }
     }
@@ -811,7 +874,23 @@ public class SemanticAnalyzer implements ASTVisitor<Type> {
             argTypes.add(argType);
         }
 
-        // find constructor with matching signature
+        // find constructor with matching signature, an exact match wins over one
+        // that needs a derived-to-base conversion
+        for (ConstructorSymbol constructor : classSymbol.getConstructors()) {
+            if (constructor.getParameters().size() == arguments.size()) {
+                boolean match = true;
+                for (int i = 0; i < arguments.size(); i++) {
+                    Type argType = argTypes.get(i);
+                    if (argType == null || !argType.equals(constructor.getParameters().get(i).getType())) {
+                        match = false;
+                        break;
+                    }
+                }
+                if (match) {
+                    return constructor;
+                }
+            }
+        }
         for (ConstructorSymbol constructor : classSymbol.getConstructors()) {
             if (constructor.getParameters().size() == arguments.size()) {
                 boolean match = true;
@@ -857,6 +936,48 @@ public class SemanticAnalyzer implements ASTVisitor<Type> {
         return null;
     }
 
+    /**
+     * bind the constructors that run for every new object of a class:
+     * the parameterless constructors of its base classes and its own one
+     */
+    private void bindConstructors(ClassSymbol classSymbol) {
+        classSymbol.setDefaultConstructor(findDefaultConstructor(classSymbol));
+
+        List<ConstructorSymbol> baseConstructors = new ArrayList<>();
+        for (ClassSymbol base = classSymbol.getBaseClass(); base != null; base = base.getBaseClass()) {
+            ConstructorSymbol constructor = findDefaultConstructor(base);
+            if (constructor != null) {
+                baseConstructors.add(0, constructor);
+            }
+        }
+        classSymbol.setBaseConstructors(baseConstructors);
+    }
+
+    /**
+     * extend the field path of an inner field access (a.b in a.b.c) by the offset
+     * of this field, so the engines walk the chain without evaluating every step
+     */
+    private void resolveFieldPath(MemberAccessExpr node, int offset) {
+        Expression object = node.getObject();
+        if (object instanceof MemberAccessExpr && ((MemberAccessExpr) object).getFieldPath() != null) {
+            MemberAccessExpr inner = (MemberAccessExpr) object;
+            int[] path = Arrays.copyOf(inner.getFieldPath(), inner.getFieldPath().length + 1);
+            path[path.length - 1] = offset;
+            node.setFieldPath(inner.getPathRoot(), path);
+        } else {
+            node.setFieldPath(object, new int[] {offset});
+        }
+    }
+
+    private ConstructorSymbol findDefaultConstructor(ClassSymbol classSymbol) {
+        for (ConstructorSymbol constructor : classSymbol.getConstructors()) {
+            if (constructor.getParameters().isEmpty()) {
+                return constructor;
+            }
+        }
+        return null;
+    }
+
     private void checkVirtualMethodOverrides(ClassSymbol classSymbol) {
         if (classSymbol.getBaseClass() == null) {
             return; // no base class, nothing to check
@@ -931,13 +1052,13 @@ public class SemanticAnalyzer implements ASTVisitor<Type> {
         // check argument type
         Type expectedType = null;
         if (name.equals("print_bool")) {
-            expectedType = new Type(Type.BaseType.BOOL);
+            expectedType = Type.BOOL;
         } else if (name.equals("print_int")) {
-            expectedType = new Type(Type.BaseType.INT);
+            expectedType = Type.INT;
         } else if (name.equals("print_char")) {
-            expectedType = new Type(Type.BaseType.CHAR);
+            expectedType = Type.CHAR;
         } else if (name.equals("print_string")) {
-            expectedType = new Type(Type.BaseType.STRING);
+            expectedType = Type.STRING;
         }
 
         if (!typesMatch(expectedType, argType)) {
@@ -946,7 +1067,7 @@ public class SemanticAnalyzer implements ASTVisitor<Type> {
         }
 
         // built-in functions return void
-        Type returnType = new Type(Type.BaseType.VOID);
+        Type returnType = Type.VOID;
         node.setType(returnType);
         return returnType;
     }
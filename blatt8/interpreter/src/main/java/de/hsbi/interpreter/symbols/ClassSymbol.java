@@ -2,11 +2,19 @@ package de.hsbi.interpreter.symbols;
 
 import de.hsbi.interpreter.ast.ClassDecl;
 import de.hsbi.interpreter.ast.Type;
+import de.hsbi.interpreter.ast.VarDecl;
+import de.hsbi.interpreter.runtime.CopyPlan;
+import de.hsbi.interpreter.runtime.InstantiationPlan;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * represents a class in the symbol table
@@ -18,9 +26,21 @@ public class ClassSymbol extends Symbol {
     private Map<String, List<MethodSymbol>> methods;  // supports method overloading
     private List<ConstructorSymbol> constructors;
     private ClassDecl declaration;
+    private Type type; // canonical type of this class
+    private Map<String, Integer> fieldOffsets; // instance layout, computed on first use
+    private MethodSymbol[] vtable;             // virtual methods by slot (built by the SymbolTableBuilder)
+    private Map<String, Integer> vtableSlots;  // signature -> slot
+    private ConstructorSymbol defaultConstructor;         // parameterless constructor (null if none)
+    private List<ConstructorSymbol> baseConstructors = new ArrayList<>(); // run before every constructor
+    private boolean lazilyConstructible;                  // default construction has no side effects
+    private boolean thinObjects;                          // new instances start with unset fields (--thin-objects)
+    private InstantiationPlan instantiationPlan;          // computed on first instantiation
+    private CopyPlan copyPlan;                            // copies into this class
+    private Map<ClassSymbol, CopyPlan> slicingPlans;      // copies into base classes, by target class
 
     public ClassSymbol(String name, String baseClassName, ClassDecl declaration) {
-        super(name, new Type(name));
+        super(name, null);
+        this.type = new Type(this);
         this.baseClassName = baseClassName;
         this.baseClass = null;
         this.fields = new HashMap<>();
@@ -29,6 +49,14 @@ public class ClassSymbol extends Symbol {
         this.declaration = declaration;
     }
 
+    /**
+     * the canonical type of this class, shared by every declaration using it
+     */
+    @Override
+    public Type getType() {
+        return type;
+    }
+
     public String getBaseClassName() {
         return baseClassName;
     }
@@ -65,6 +93,205 @@ public class ClassSymbol extends Symbol {
         return declaration;
     }
 
+    /**
+     * the parameterless constructor, run when an object is created without arguments
+     * (bound by the SemanticAnalyzer, null if the class has none)
+     */
+    public ConstructorSymbol getDefaultConstructor() {
+        return defaultConstructor;
+    }
+
+    public void setDefaultConstructor(ConstructorSymbol defaultConstructor) {
+        this.defaultConstructor = defaultConstructor;
+    }
+
+    /**
+     * the parameterless constructors of the base classes (oldest ancestor first),
+     * run on every new object before its own constructor (bound by the SemanticAnalyzer)
+     */
+    public List<ConstructorSymbol> getBaseConstructors() {
+        return baseConstructors;
+    }
+
+    public void setBaseConstructors(List<ConstructorSymbol> baseConstructors) {
+        this.baseConstructors = baseConstructors;
+    }
+
+    /**
+     * true if default-constructing an instance has no observable effect, so a field
+     * of this class may be constructed on its first access
+     * (set by the ConstructionAnalyzer, which only runs with --lazy-fields)
+     */
+    public boolean isLazilyConstructible() {
+        return lazilyConstructible;
+    }
+
+    public void setLazilyConstructible(boolean lazilyConstructible) {
+        this.lazilyConstructible = lazilyConstructible;
+    }
+
+    /**
+     * true if a new instance is only a thin handle whose int/bool/char/string fields read
+     * the shared defaults until they are written (set with --thin-objects, see InstantiationPlan)
+     */
+    public boolean hasThinObjects() {
+        return thinObjects;
+    }
+
+    public void setThinObjects(boolean thinObjects) {
+        this.thinObjects = thinObjects;
+    }
+
+    /**
+     * field defaults and constructors of a new instance (after semantic analysis)
+     */
+    public InstantiationPlan getInstantiationPlan() {
+        if (instantiationPlan == null) {
+            instantiationPlan = new InstantiationPlan(this);
+        }
+        return instantiationPlan;
+    }
+
+    /**
+     * how instances of this class are copied into the target class (this class
+     * or a base class), computed on first use
+     */
+    public CopyPlan getCopyPlan(ClassSymbol targetClass) {
+        if (targetClass == this) {
+            if (copyPlan == null) {
+                copyPlan = new CopyPlan(this, this);
+            }
+            return copyPlan;
+        }
+        if (slicingPlans == null) {
+            slicingPlans = new IdentityHashMap<>();
+        }
+        return slicingPlans.computeIfAbsent(targetClass, target -> new CopyPlan(this, target));
+    }
+
+    /**
+     * offset of a field in the instances of this class (-1 if there is no such field)
+     *
+     * inherited fields come first, so the layout of a base class is a prefix of the
+     * layout of every derived class and an offset is valid for all subclasses.
+     * a field redeclared in a derived class shares the slot of the base field
+     */
+    public int getFieldOffset(String name) {
+        Integer offset = fieldLayout().get(name);
+        return offset != null ? offset : -1;
+    }
+
+    // number of field slots of an instance (including inherited fields)
+    public int getFieldCount() {
+        return fieldLayout().size();
+    }
+
+    private Map<String, Integer> fieldLayout() {
+        if (fieldOffsets == null) {
+            Map<String, Integer> layout = baseClass != null ? new HashMap<>(baseClass.fieldLayout()) : new HashMap<>();
+            // own fields in declaration order
+            if (declaration != null) {
+                for (VarDecl field : declaration.getFields()) {
+                    layout.putIfAbsent(field.getName(), layout.size());
+                }
+            } else {
+                for (String name : fields.keySet()) {
+                    layout.putIfAbsent(name, layout.size());
+                }
+            }
+            fieldOffsets = layout;
+        }
+        return fieldOffsets;
+    }
+
+    /**
+     * virtual method table: the implementation of every virtual signature for
+     * instances of this class, indexed by the slot of the signature
+     */
+    public MethodSymbol[] getVtable() {
+        return vtable;
+    }
+
+    /**
+     * slot of a method in the vtable, -1 if calls to it through this class are not virtual
+     */
+    public int getVtableSlot(MethodSymbol method) {
+        if (vtableSlots == null) {
+            return -1;
+        }
+        Integer slot = vtableSlots.get(signature(method));
+        return slot != null ? slot : -1;
+    }
+
+    /**
+     * build the vtable (the base class table first)
+     *
+     * a signature gets a slot in the first class where its name is virtual (a method
+     * with that name is declared virtual there or in a base class). derived classes
+     * keep the slot and put their override into it, so a slot is valid for all subclasses
+     */
+    public void buildVtable() {
+        if (vtable != null) {
+            return;
+        }
+
+        List<MethodSymbol> table = new ArrayList<>();
+        Map<String, Integer> slots = new HashMap<>();
+        if (baseClass != null) {
+            baseClass.buildVtable();
+            table.addAll(Arrays.asList(baseClass.vtable));
+            slots.putAll(baseClass.vtableSlots);
+        }
+
+        for (String name : virtualMethodNames()) {
+            // overloads of derived classes come first and hide base methods with the same signature
+            Set<String> implemented = new HashSet<>();
+            for (MethodSymbol method : lookupMethodOverloads(name)) {
+                String signature = signature(method);
+                if (!implemented.add(signature)) {
+                    continue;
+                }
+                Integer slot = slots.get(signature);
+                if (slot == null) {
+                    slots.put(signature, table.size());
+                    table.add(method);
+                } else {
+                    table.set(slot, method);
+                }
+            }
+        }
+
+        vtable = table.toArray(new MethodSymbol[0]);
+        vtableSlots = slots;
+    }
+
+    // names with a virtual method in this class or a base class
+    private Set<String> virtualMethodNames() {
+        Set<String> names = new LinkedHashSet<>();
+        for (ClassSymbol current = this; current != null; current = current.baseClass) {
+            for (Map.Entry<String, List<MethodSymbol>> overloads : current.methods.entrySet()) {
+                for (MethodSymbol method : overloads.getValue()) {
+                    if (method.isVirtual()) {
+                        names.add(overloads.getKey());
+                    }
+                }
+            }
+        }
+        return names;
+    }
+
+    // name and parameter types (overrides do not have to match reference parameters)
+    private static String signature(MethodSymbol method) {
+        StringBuilder sb = new StringBuilder(method.getName()).append('(');
+        for (int i = 0; i < method.getParameters().size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(method.getParameters().get(i).getType());
+        }
+        return sb.append(')').toString();
+    }
+
     public void addField(VarSymbol field) {
         fields.put(field.getName(), field);
     }
@@ -18,7 +18,7 @@ public class ConstructorSymbol extends Symbol {
     private ClassSymbol owningClass;
 
     public ConstructorSymbol(String name, List<Parameter> parameters, ConstructorDecl declaration, ClassSymbol owningClass) {
-        super(name, new Type(Type.BaseType.VOID)); // constructors don't have a return type
+        super(name, Type.VOID); // constructors don't have a return type
         this.parameters = parameters;
         this.declaration = declaration;
         this.owningClass = owningClass;
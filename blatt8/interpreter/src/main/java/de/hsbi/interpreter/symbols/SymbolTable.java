@@ -1,5 +1,7 @@
 package de.hsbi.interpreter.symbols;
 
+import de.hsbi.interpreter.ast.Type;
+
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -109,6 +111,21 @@ public class SymbolTable {
         return classes.containsKey(name);
     }
 
+    /**
+     * canonical instance of a type: primitive types are singletons already,
+     * class types are replaced by the type of their class symbol
+     * (unknown classes are left alone, the semantic analyzer reports them)
+     * @param type the type as written in the source
+     * @return the canonical type
+     */
+    public Type resolveType(Type type) {
+        if (type == null || type.isPrimitive() || type.getClassSymbol() != null) {
+            return type;
+        }
+        ClassSymbol classSymbol = classes.get(type.getClassName());
+        return classSymbol != null ? classSymbol.getType() : type;
+    }
+
     public Map<String, ClassSymbol> getClasses() {
         return classes;
     }
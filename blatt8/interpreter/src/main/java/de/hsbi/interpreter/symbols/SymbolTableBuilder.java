@@ -76,9 +76,27 @@ public class SymbolTableBuilder implements ASTVisitor<Void> {
         firstPass = false;
         visitProgram(program);
 
+        // virtual method tables (classes of earlier REPL inputs already have one)
+        for (ClassSymbol classSymbol : symbolTable.getClasses().values()) {
+            if (!hasInheritanceCycle(classSymbol)) {
+                classSymbol.buildVtable();
+            }
+        }
+
         return symbolTable;
     }
 
+    // classes in or below an inheritance cycle get no vtable (the SemanticAnalyzer reports the cycle)
+    private boolean hasInheritanceCycle(ClassSymbol classSymbol) {
+        int depth = 0;
+        for (ClassSymbol current = classSymbol.getBaseClass(); current != null; current = current.getBaseClass()) {
+            if (++depth > symbolTable.getClasses().size()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public Void visitProgram(Program node) {
         // visit all classes
@@ -106,12 +124,15 @@ public class SymbolTableBuilder implements ASTVisitor<Void> {
 
             // process fields
             for (VarDecl field : node.getFields()) {
+                field.setType(symbolTable.resolveType(field.getType()));
                 VarSymbol fieldSymbol = new VarSymbol(field.getName(), field.getType(), field.isReference());
                 currentClass.addField(fieldSymbol);
             }
 
             // process methods
             for (MethodDecl method : node.getMethods()) {
+                method.setReturnType(symbolTable.resolveType(method.getReturnType()));
+                resolveParameterTypes(method.getParameters());
                 MethodSymbol methodSymbol = new MethodSymbol(
                     method.getName(),
                     method.getReturnType(),
@@ -140,6 +161,7 @@ public class SymbolTableBuilder implements ASTVisitor<Void> {
 
             // process constructors
             for (ConstructorDecl constructor : node.getConstructors()) {
+                resolveParameterTypes(constructor.getParameters());
                 ConstructorSymbol constructorSymbol = new ConstructorSymbol(
                     constructor.getName(),
                     constructor.getParameters(),
@@ -159,6 +181,9 @@ public class SymbolTableBuilder implements ASTVisitor<Void> {
     public Void visitFunctionDecl(FunctionDecl node) {
         if (firstPass) {
             // first pass: register the function
+            // (all classes are registered at this point, so the signature can use their canonical types)
+            node.setReturnType(symbolTable.resolveType(node.getReturnType()));
+            resolveParameterTypes(node.getParameters());
             FunctionSymbol functionSymbol = new FunctionSymbol(
                 node.getName(),
                 node.getReturnType(),
@@ -202,6 +227,12 @@ public class SymbolTableBuilder implements ASTVisitor<Void> {
         return null;
     }
 
+    private void resolveParameterTypes(List<Parameter> parameters) {
+        for (Parameter param : parameters) {
+            param.setType(symbolTable.resolveType(param.getType()));
+        }
+    }
+
     @Override
     public Void visitMethodDecl(MethodDecl node) {
         // methods are handled in visitClassDecl
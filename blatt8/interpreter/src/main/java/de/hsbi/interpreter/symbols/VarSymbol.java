@@ -7,16 +7,46 @@ import de.hsbi.interpreter.ast.Type;
  */
 public class VarSymbol extends Symbol {
     private boolean isReference;
+    private int slot; // frame slot for locals/parameters, -1 otherwise
+    private int fieldOffset = -1; // layout offset for fields seen from a method body
 
     public VarSymbol(String name, Type type, boolean isReference) {
         super(name, type);
         this.isReference = isReference;
+        this.slot = -1;
+    }
+
+    public VarSymbol(String name, Type type, boolean isReference, int slot) {
+        super(name, type);
+        this.isReference = isReference;
+        this.slot = slot;
+    }
+
+    /**
+     * a field of the receiver, visible by its plain name inside a method or constructor
+     */
+    public static VarSymbol receiverField(String name, Type type, int fieldOffset) {
+        VarSymbol symbol = new VarSymbol(name, type, false);
+        symbol.fieldOffset = fieldOffset;
+        return symbol;
     }
 
     public boolean isReference() {
         return isReference;
     }
 
+    public int getSlot() {
+        return slot;
+    }
+
+    public boolean isReceiverField() {
+        return fieldOffset >= 0;
+    }
+
+    public int getFieldOffset() {
+        return fieldOffset;
+    }
+
     @Override
     public SymbolKind getKind() {
         return SymbolKind.VARIABLE;
@@ -0,0 +1,859 @@
+package de.hsbi.interpreter.vm;
+
+import de.hsbi.interpreter.ast.*;
+import de.hsbi.interpreter.runtime.InstantiationPlan;
+import de.hsbi.interpreter.runtime.RuntimeError;
+import de.hsbi.interpreter.runtime.RuntimeSupport;
+import de.hsbi.interpreter.runtime.Value;
+import de.hsbi.interpreter.symbols.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * compiles an analyzed program (after SemanticAnalyzer has set types, slots and
+ * resolved overloads) into bytecode for the VirtualMachine
+ *
+ * the generated code follows the semantics of the tree-walking Interpreter,
+ * which stays the reference engine
+ */
+public class BytecodeCompiler implements ASTVisitor<Void> {
+    private Map<String, ClassSymbol> classes;
+    private ConstantPool pool;
+    private List<Chunk> chunks;
+
+    private Map<FunctionDecl, Chunk> functionChunks;
+    private Map<String, FunctionDecl> functionsByName;
+    private Map<MethodSymbol, Chunk> methodChunks;
+    private Map<ConstructorDecl, Chunk> constructorChunks;
+    private Map<ClassSymbol, Chunk> initChunks;
+
+    // code buffer of the chunk currently being compiled
+    private int[] code;
+    private int size;
+    private int depth;
+    private int maxDepth;
+    private BitSet referenceSlots; // slots of reference parameters and variables
+
+    public BytecodeCompiler(SymbolTable symbolTable) {
+        this.classes = symbolTable.getClasses();
+        this.pool = new ConstantPool();
+        this.chunks = new ArrayList<>();
+        this.functionChunks = new IdentityHashMap<>();
+        this.functionsByName = new HashMap<>();
+        this.methodChunks = new HashMap<>();
+        this.constructorChunks = new IdentityHashMap<>();
+        this.initChunks = new HashMap<>();
+    }
+
+    /**
+     * compile all functions, methods, constructors and class initializers
+     */
+    public CompiledProgram compile(Program program) {
+        // create all chunks first, so calls can refer to chunks that are compiled later
+        for (FunctionDecl func : program.getFunctions()) {
+            Chunk chunk = new Chunk(func.getName(), func.getParameters(), func.getFrameSize());
+            functionChunks.put(func, chunk);
+            functionsByName.put(func.getName(), func);
+            chunks.add(chunk);
+        }
+        for (ClassSymbol classSymbol : classes.values()) {
+            for (List<MethodSymbol> overloads : classSymbol.getMethods().values()) {
+                for (MethodSymbol method : overloads) {
+                    MethodDecl decl = method.getDeclaration();
+                    Chunk chunk = new Chunk(classSymbol.getName() + "::" + decl.getName(), decl.getParameters(),
+                            decl.getFrameSize());
+                    methodChunks.put(method, chunk);
+                    chunks.add(chunk);
+                }
+            }
+            for (ConstructorSymbol constructor : classSymbol.getConstructors()) {
+                ConstructorDecl decl = constructor.getDeclaration();
+                Chunk chunk = new Chunk(classSymbol.getName() + "::" + decl.getName(), decl.getParameters(),
+                        decl.getFrameSize());
+                constructorChunks.put(decl, chunk);
+                chunks.add(chunk);
+            }
+            Chunk init = new Chunk(classSymbol.getName() + "::<init>", new ArrayList<>(), 0);
+            initChunks.put(classSymbol, init);
+            chunks.add(init);
+        }
+
+        // compile bodies
+        for (Map.Entry<FunctionDecl, Chunk> entry : functionChunks.entrySet()) {
+            compileBody(entry.getValue(), entry.getKey().getBody(), entry.getKey().getReturnType());
+        }
+        for (Map.Entry<MethodSymbol, Chunk> entry : methodChunks.entrySet()) {
+            MethodDecl decl = entry.getKey().getDeclaration();
+            compileBody(entry.getValue(), decl.getBody(), decl.getReturnType());
+        }
+        for (Map.Entry<ConstructorDecl, Chunk> entry : constructorChunks.entrySet()) {
+            compileBody(entry.getValue(), entry.getKey().getBody(), Type.VOID);
+        }
+        for (Map.Entry<ClassSymbol, Chunk> entry : initChunks.entrySet()) {
+            compileInitializer(entry.getValue(), entry.getKey());
+        }
+
+        // main is the last function named "main" (same as the interpreter)
+        FunctionDecl main = functionsByName.get("main");
+        Chunk mainChunk = main != null ? functionChunks.get(main) : null;
+        return new CompiledProgram(pool, chunks, mainChunk);
+    }
+
+    private void compileBody(Chunk chunk, BlockStmt body, Type returnType) {
+        begin();
+        for (int i = 0; i < chunk.getParamSlots().length; i++) {
+            if (chunk.getParamIsReference()[i]) {
+                referenceSlots.set(chunk.getParamSlots()[i]);
+            }
+        }
+        if (body != null) {
+            body.accept(this);
+        }
+        // if no return, return default value
+        emit(OpCode.RETURN_DEFAULT, typeConstant(returnType), 0);
+        finish(chunk);
+    }
+
+    /**
+     * class initializer: default-construct the class-typed fields (base class fields first);
+     * the other fields get their defaults from the instantiation plan in NEW. a lazy field
+     * stays unset, its class only gets a template the first time
+     */
+    private void compileInitializer(Chunk chunk, ClassSymbol classSymbol) {
+        begin();
+        InstantiationPlan plan = classSymbol.getInstantiationPlan();
+        for (int i = 0; i < plan.getObjectFieldCount(); i++) {
+            ClassSymbol fieldClass = plan.getObjectFieldClass(i);
+            if (plan.isLazyObjectField(i)) {
+                int k = pool.addIdentity(fieldClass);
+                emit(OpCode.JUMP_IF_TEMPLATE, k, -1, 0);
+                int skip = size - 1;
+                emitDefaultConstruction(fieldClass, -1);
+                emit(OpCode.SET_TEMPLATE, k, -1);
+                patchJump(skip);
+                continue;
+            }
+
+            emitDefaultConstruction(fieldClass, -1);
+            int offset = plan.getObjectFieldOffset(i);
+            if (offset >= 0) {
+                emit(OpCode.SET_FIELD_THIS, offset, -1);
+            } else {
+                emit(OpCode.POP, -1);
+            }
+        }
+        emit(OpCode.RETURN_DEFAULT, typeConstant(Type.VOID), 0);
+        finish(chunk);
+    }
+
+    /**
+     * new object, field initialization, base constructors and default constructor
+     * (leaves the object on the stack)
+     * @param regionIndex object of the call's Region to construct in, -1 for a new one
+     */
+    private void emitDefaultConstruction(ClassSymbol classSymbol, int regionIndex) {
+        emitNewObject(classSymbol, regionIndex);
+        ConstructorSymbol constructor = classSymbol.getInstantiationPlan().getDefaultConstructor();
+        if (constructor != null) {
+            emit(OpCode.DUP, 1);
+            emitConstructorCall(constructor.getDeclaration(), 0);
+        }
+    }
+
+    /**
+     * new object with initialized fields and base constructors already run
+     * (leaves the object on the stack)
+     */
+    private void emitNewObject(ClassSymbol classSymbol, int regionIndex) {
+        InstantiationPlan plan = classSymbol.getInstantiationPlan();
+        if (regionIndex >= 0) {
+            emit(OpCode.NEW_REGION, pool.addIdentity(classSymbol), regionIndex, 1);
+        } else {
+            emit(OpCode.NEW, pool.addIdentity(classSymbol), 1);
+        }
+        if (plan.getObjectFieldCount() > 0) {
+            emit(OpCode.DUP, 1);
+            emit(OpCode.INVOKE_SPECIAL, pool.addIdentity(initChunks.get(classSymbol)), 0, -1);
+            emit(OpCode.POP, -1);
+        }
+
+        // base constructors (oldest ancestor first)
+        for (ConstructorSymbol constructor : plan.getBaseConstructors()) {
+            emit(OpCode.DUP, 1);
+            emitConstructorCall(constructor.getDeclaration(), 0);
+        }
+    }
+
+    /**
+     * call a constructor on the duplicated object below the arguments
+     * (DUP and arguments have to be emitted before)
+     */
+    private void emitConstructorCall(ConstructorDecl constructor, int argc) {
+        emit(OpCode.INVOKE_SPECIAL, pool.addIdentity(constructorChunks.get(constructor)), argc, -argc);
+        emit(OpCode.POP, -1);
+    }
+
+    @Override
+    public Void visitProgram(Program node) {
+        // programs are compiled through compile()
+        return null;
+    }
+
+    @Override
+    public Void visitClassDecl(ClassDecl node) {
+        // classes are compiled through their symbols
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionDecl(FunctionDecl node) {
+        // functions are compiled through compile()
+        return null;
+    }
+
+    @Override
+    public Void visitMethodDecl(MethodDecl node) {
+        // methods are compiled through compile()
+        return null;
+    }
+
+    @Override
+    public Void visitConstructorDecl(ConstructorDecl node) {
+        // constructors are compiled through compile()
+        return null;
+    }
+
+    @Override
+    public Void visitVarDecl(VarDecl node) {
+        if (node.getInitializer() != null) {
+            if (node.isReference()) {
+                // the reference shares the cell of the value
+                emitReference(node.getInitializer());
+                emit(OpCode.STORE, node.getSlot(), -1);
+                referenceSlots.set(node.getSlot());
+            } else {
+                node.getInitializer().accept(this);
+                emit(OpCode.STORE_COPY, node.getSlot(), typeConstant(node.getType()), -1);
+            }
+            return null;
+        }
+
+        // no initializer - use default value or call default constructor for classes
+        ClassSymbol classSymbol = node.getType().getBaseType() == Type.BaseType.CLASS
+                ? classes.get(node.getType().getClassName()) : null;
+        if (classSymbol != null) {
+            emitDefaultConstruction(classSymbol, node.getRegionIndex());
+        } else {
+            emit(OpCode.DEFAULT, typeConstant(node.getType()), 1);
+        }
+        emit(OpCode.STORE, node.getSlot(), -1);
+        return null;
+    }
+
+    @Override
+    public Void visitParameter(Parameter node) {
+        // parameters are bound by the VM on call
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(BlockStmt node) {
+        for (Statement stmt : node.getStatements()) {
+            stmt.accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(IfStmt node) {
+        int elseJump = emitJumpIfFalse(node.getCondition(), node.getConditionTest());
+
+        node.getThenStmt().accept(this);
+
+        if (node.getElseStmt() != null) {
+            int endJump = emitJump(OpCode.JUMP, 0);
+            patchJump(elseJump);
+            node.getElseStmt().accept(this);
+            patchJump(endJump);
+        } else {
+            patchJump(elseJump);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(WhileStmt node) {
+        int loopStart = size;
+        int exitJump = emitJumpIfFalse(node.getCondition(), node.getConditionTest());
+
+        node.getBody().accept(this);
+        emit(OpCode.JUMP, loopStart, 0);
+
+        patchJump(exitJump);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(ReturnStmt node) {
+        if (node.isTailCall()) {
+            ConstructorCallExpr call = node.getTailCall();
+            FunctionDecl func = call.getResolvedFunction().getDeclaration();
+            emitArguments(call.getArguments(), func.getParameters());
+            int argc = call.getArguments().size();
+            emit(OpCode.TAIL_CALL, pool.addIdentity(functionChunks.get(func)), argc, -argc);
+        } else if (node.getValue() != null) {
+            Expression value = node.getValue();
+            value.accept(this);
+            // the caller gets a cell of its own (see isFresh)
+            if (!isObject(value) && !isFresh(value) && !isLocalCell(value)) {
+                emit(OpCode.VALUE, 0);
+            }
+            emit(OpCode.RETURN, -1);
+        } else {
+            emit(OpCode.RETURN_DEFAULT, typeConstant(Type.VOID), 0);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitExprStmt(ExprStmt node) {
+        node.getExpression().accept(this);
+        emit(OpCode.POP, -1);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(BinaryExpr node) {
+        Operation op = node.getOperation();
+
+        // short-circuit evaluation for && and ||
+        if (op == Operation.BOOL_AND || op == Operation.BOOL_OR) {
+            boolean isAnd = op == Operation.BOOL_AND;
+            node.getLeft().accept(this);
+            int shortCircuit = emitJump(isAnd ? OpCode.JUMP_IF_FALSE : OpCode.JUMP_IF_TRUE, -1);
+            node.getRight().accept(this);
+            int endJump = emitJump(OpCode.JUMP, 0);
+            patchJump(shortCircuit);
+            depth--; // only one of the two branches pushes its result
+            emit(OpCode.CONST, boolConstant(!isAnd), 1);
+            patchJump(endJump);
+            return null;
+        }
+
+        emitOperands(node);
+
+        // the operation is already chosen for the operand types (see OperatorLowering)
+        Operation operation = node.getOperation();
+        switch (operation) {
+            case INT_ADD:
+                emit(OpCode.ADD, -1);
+                break;
+            case INT_SUB:
+                emit(OpCode.SUB, -1);
+                break;
+            case INT_MUL:
+                emit(OpCode.MUL, -1);
+                break;
+            case INT_DIV:
+                emit(OpCode.DIV, -1);
+                break;
+            case INT_MOD:
+                emit(OpCode.MOD, -1);
+                break;
+            case INT_LT:
+                emit(OpCode.LT_INT, -1);
+                break;
+            case INT_LEQ:
+                emit(OpCode.LE_INT, -1);
+                break;
+            case INT_GT:
+                emit(OpCode.GT_INT, -1);
+                break;
+            case INT_GEQ:
+                emit(OpCode.GE_INT, -1);
+                break;
+            case CHAR_LT:
+                emit(OpCode.LT_CHAR, -1);
+                break;
+            case CHAR_LEQ:
+                emit(OpCode.LE_CHAR, -1);
+                break;
+            case CHAR_GT:
+                emit(OpCode.GT_CHAR, -1);
+                break;
+            case CHAR_GEQ:
+                emit(OpCode.GE_CHAR, -1);
+                break;
+            // bools and chars are stored as ints as well
+            case INT_EQ:
+            case BOOL_EQ:
+            case CHAR_EQ:
+                emit(OpCode.EQ_INT, -1);
+                break;
+            case INT_NEQ:
+            case BOOL_NEQ:
+            case CHAR_NEQ:
+                emit(OpCode.NE_INT, -1);
+                break;
+            case STRING_EQ:
+                emit(OpCode.EQ_STRING, -1);
+                break;
+            case STRING_NEQ:
+                emit(OpCode.NE_STRING, -1);
+                break;
+            case OBJECT_EQ:
+                emit(OpCode.EQ_REF, -1);
+                break;
+            case OBJECT_NEQ:
+                emit(OpCode.NE_REF, -1);
+                break;
+            case VALUE_EQ:
+                emit(OpCode.EQ, -1);
+                break;
+            case VALUE_NEQ:
+                emit(OpCode.NE, -1);
+                break;
+            default:
+                throw new RuntimeError("unknown binary operation: " + operation);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(UnaryExpr node) {
+        node.getOperand().accept(this);
+
+        switch (node.getOperation()) {
+            case INT_PLUS:
+                emit(OpCode.POS, 0);
+                break;
+            case INT_NEG:
+                emit(OpCode.NEG, 0);
+                break;
+            case BOOL_NOT:
+                emit(OpCode.NOT, 0);
+                break;
+            default:
+                throw new RuntimeError("unknown unary operation: " + node.getOperation());
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitAssignExpr(AssignExpr node) {
+        emitLValue(node.getTarget());
+        node.getValue().accept(this);
+        // assignment writes through references
+        emit(OpCode.ASSIGN, -1);
+        return null;
+    }
+
+    @Override
+    public Void visitVarExpr(VarExpr node) {
+        emitLoad(node);
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(CallExpr node) {
+        // check for built-in functions
+        if (node.getFunctionName().startsWith("print_")) {
+            emitBuiltin(node.getFunctionName(), node.getArguments());
+            return null;
+        }
+
+        FunctionDecl func = functionsByName.get(node.getFunctionName());
+        if (func == null) {
+            throw new RuntimeError("function '" + node.getFunctionName() + "' not found");
+        }
+        emitFunctionCall(func, node.getArguments());
+        return null;
+    }
+
+    @Override
+    public Void visitMemberAccessExpr(MemberAccessExpr node) {
+        if (!node.isMethodCall()) {
+            // field access, a chain a.b.c along its offset path from the root
+            node.getPathRoot().accept(this);
+            emitFieldPath(OpCode.GET_FIELD, OpCode.GET_FIELD_PATH, node.getFieldPath());
+            return null;
+        }
+
+        node.getObject().accept(this);
+
+        // Get the STATIC type from the expression (the declared type of the reference/variable)
+        ClassSymbol staticClass = classes.get(node.getObject().getType().getClassName());
+
+        // Use resolved method from semantic analysis (handles overloading)
+        MethodSymbol method = node.getResolvedMethod();
+        if (method == null) {
+            method = staticClass.lookupMethod(node.getMemberName());
+        }
+        if (method == null) {
+            throw new RuntimeError("method '" + node.getMemberName() + "' not found");
+        }
+
+        CallSite callSite = new CallSite(method, node.getVtableSlot(), methodChunks);
+
+        emitArguments(node.getArguments(), method.getParameters());
+        int argc = node.getArguments().size();
+        emit(OpCode.INVOKE, pool.addUnique(callSite), argc, -argc);
+        return null;
+    }
+
+    @Override
+    public Void visitConstructorCallExpr(ConstructorCallExpr node) {
+        // first check if this is a built-in function
+        if (node.getClassName().startsWith("print_")) {
+            emitBuiltin(node.getClassName(), node.getArguments());
+            return null;
+        }
+
+        // then check if this is a function call (not a constructor)
+        if (node.isFunctionCall()) {
+            emitFunctionCall(node.getResolvedFunction().getDeclaration(), node.getArguments());
+            return null;
+        }
+
+        // otherwise, it's a constructor call
+        ClassSymbol classSymbol = classes.get(node.getClassName());
+        if (classSymbol == null) {
+            throw new RuntimeError("class '" + node.getClassName() + "' not found");
+        }
+
+        if (node.isImplicitCopy()) {
+            // implicit copy constructor
+            node.getArguments().get(0).accept(this);
+            emit(OpCode.COPY_OBJECT, pool.addIdentity(classSymbol), 0);
+        } else {
+            emitNewObject(classSymbol, node.getRegionIndex());
+
+            // call the constructor bound by the semantic analysis
+            ConstructorSymbol constructor = node.getResolvedConstructor();
+            if (constructor != null) {
+                emit(OpCode.DUP, 1);
+                emitArguments(node.getArguments(), constructor.getParameters());
+                emitConstructorCall(constructor.getDeclaration(), node.getArguments().size());
+            }
+        }
+
+        if (node.isTemporary()) {
+            emit(OpCode.TEMPORARY, 0);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(LiteralExpr node) {
+        int index = pool.addShared(Arrays.asList(node.getLiteralType(), node.getValue()), RuntimeSupport.literalValue(node));
+        emit(OpCode.CONST, index, 1);
+        return null;
+    }
+
+    @Override
+    public Void visitType(Type node) {
+        // types are not compiled
+        return null;
+    }
+
+    // helper methods
+
+    private void emitLoad(VarExpr node) {
+        if (node.isReceiverField()) {
+            emit(OpCode.GET_FIELD_THIS, node.getFieldOffset(), 1);
+        } else {
+            emit(OpCode.LOAD, node.getSlot(), 1);
+        }
+    }
+
+    private void emitLValue(Expression expr) {
+        if (expr instanceof VarExpr) {
+            VarExpr varExpr = (VarExpr) expr;
+            if (varExpr.isReceiverField()) {
+                emit(OpCode.GET_FIELD_THIS_MUT, varExpr.getFieldOffset(), 1);
+            } else {
+                emit(OpCode.LOAD, varExpr.getSlot(), 1);
+            }
+        } else if (expr instanceof MemberAccessExpr && !((MemberAccessExpr) expr).isMethodCall()) {
+            MemberAccessExpr memberAccess = (MemberAccessExpr) expr;
+            memberAccess.getPathRoot().accept(this);
+            emitFieldPath(OpCode.GET_FIELD_MUT, OpCode.GET_FIELD_PATH_MUT, memberAccess.getFieldPath());
+        } else {
+            throw new RuntimeError("expression is not an lvalue");
+        }
+    }
+
+    /**
+     * push the value a reference gets bound to; fields on the way are pinned in
+     * their objects, so writes through the reference never reach a copy
+     */
+    private void emitReference(Expression expr) {
+        if (expr instanceof VarExpr && ((VarExpr) expr).isReceiverField()) {
+            emit(OpCode.GET_FIELD_THIS_REF, ((VarExpr) expr).getFieldOffset(), 1);
+        } else if (expr instanceof MemberAccessExpr && !((MemberAccessExpr) expr).isMethodCall()) {
+            MemberAccessExpr memberAccess = (MemberAccessExpr) expr;
+            emitReference(memberAccess.getPathRoot());
+            emitFieldPath(OpCode.GET_FIELD_REF, OpCode.GET_FIELD_PATH_REF, memberAccess.getFieldPath());
+        } else {
+            expr.accept(this);
+        }
+    }
+
+    /**
+     * replace the object on the stack by the field at the end of a path:
+     * one field is accessed by offset, a longer path through the constant pool
+     */
+    private void emitFieldPath(int fieldOp, int pathOp, int[] path) {
+        if (path.length == 1) {
+            emit(fieldOp, path[0], 0);
+        } else {
+            emit(pathOp, pool.addIdentity(path), 0);
+        }
+    }
+
+    private void emitArguments(List<Expression> arguments, List<Parameter> parameters) {
+        for (int i = 0; i < arguments.size(); i++) {
+            if (parameters.get(i).isReference()) {
+                emitReference(arguments.get(i));
+            } else {
+                // an int/bool/char/string parameter is bound to the argument's cell,
+                // so the argument is read into its own cell (see VirtualMachine.pushFrame)
+                Expression argument = arguments.get(i);
+                argument.accept(this);
+                if (!isObject(argument) && !isFresh(argument)) {
+                    emit(OpCode.VALUE, 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * whether evaluating the expression can write a variable or field (it calls or assigns).
+     * the stack holds the cells of variables and fields, so an operand followed by such an
+     * expression is read into its own cell first, as the Interpreter reads it before
+     * evaluating the next operand (a.x + a.setX(5))
+     */
+    private static boolean mayWrite(Expression expr) {
+        if (expr instanceof VarExpr || expr instanceof LiteralExpr) {
+            return false;
+        }
+        if (expr instanceof BinaryExpr) {
+            BinaryExpr binary = (BinaryExpr) expr;
+            return mayWrite(binary.getLeft()) || mayWrite(binary.getRight());
+        }
+        if (expr instanceof UnaryExpr) {
+            return mayWrite(((UnaryExpr) expr).getOperand());
+        }
+        if (expr instanceof MemberAccessExpr) {
+            MemberAccessExpr memberAccess = (MemberAccessExpr) expr;
+            return memberAccess.isMethodCall() || mayWrite(memberAccess.getObject());
+        }
+        return true;
+    }
+
+    // only int/bool/char/string cells are read into their own cell: an object operand
+    // keeps its identity (a == (b = a)) and is copied where its value is bound.
+    // new cells and constants cannot be written by the next operand
+    private static boolean needsValue(Expression operand, Expression next) {
+        return !isObject(operand) && !isFresh(operand) && !(operand instanceof LiteralExpr) && mayWrite(next);
+    }
+
+    /**
+     * whether the expression leaves a new cell that nothing else refers to: results of
+     * operators and calls (a return statement hands over a cell of its own)
+     */
+    private static boolean isFresh(Expression expr) {
+        if (expr instanceof BinaryExpr) {
+            // && and || leave the cell of an operand or a constant
+            Operation op = ((BinaryExpr) expr).getOperation();
+            return op != Operation.BOOL_AND && op != Operation.BOOL_OR;
+        }
+        if (expr instanceof UnaryExpr) {
+            return true;
+        }
+        if (expr instanceof CallExpr) {
+            return !((CallExpr) expr).getFunctionName().startsWith("print_");
+        }
+        if (expr instanceof ConstructorCallExpr) {
+            ConstructorCallExpr call = (ConstructorCallExpr) expr;
+            return call.isFunctionCall() && !call.getClassName().startsWith("print_");
+        }
+        if (expr instanceof MemberAccessExpr) {
+            return ((MemberAccessExpr) expr).isMethodCall();
+        }
+        return false;
+    }
+
+    // a local variable that is not a reference: its cell is dropped with the frame
+    private boolean isLocalCell(Expression expr) {
+        if (!(expr instanceof VarExpr)) {
+            return false;
+        }
+        VarExpr var = (VarExpr) expr;
+        return !var.isReceiverField() && !referenceSlots.get(var.getSlot());
+    }
+
+    private static boolean isObject(Expression expr) {
+        return expr.getType() != null && expr.getType().getBaseType() == Type.BaseType.CLASS;
+    }
+
+    private void emitOperands(BinaryExpr node) {
+        node.getLeft().accept(this);
+        if (needsValue(node.getLeft(), node.getRight())) {
+            emit(OpCode.VALUE, 0);
+        }
+        node.getRight().accept(this);
+    }
+
+    /**
+     * condition and a jump with a placeholder target taken if it is false;
+     * an int/bool/char comparison jumps on its operands without pushing a bool
+     * @return position of the target operand (for patchJump)
+     */
+    private int emitJumpIfFalse(Expression condition, Operation test) {
+        if (test == Operation.BOOL_TEST && condition instanceof BinaryExpr) {
+            BinaryExpr comparison = (BinaryExpr) condition;
+            int jump = compareJump(comparison.getOperation());
+            if (jump >= 0) {
+                emitOperands(comparison);
+                return emitJump(jump, -2);
+            }
+        }
+        emitCondition(condition, test);
+        return emitJump(OpCode.JUMP_IF_FALSE, -1);
+    }
+
+    // jump taken if the comparison is false, -1 if there is none
+    private static int compareJump(Operation operation) {
+        switch (operation) {
+            // chars are stored as ints
+            case INT_LT:
+            case CHAR_LT:
+                return OpCode.JUMP_IF_NOT_LT;
+            case INT_LEQ:
+            case CHAR_LEQ:
+                return OpCode.JUMP_IF_NOT_LE;
+            case INT_GT:
+            case CHAR_GT:
+                return OpCode.JUMP_IF_NOT_GT;
+            case INT_GEQ:
+            case CHAR_GEQ:
+                return OpCode.JUMP_IF_NOT_GE;
+            case INT_EQ:
+            case BOOL_EQ:
+            case CHAR_EQ:
+                return OpCode.JUMP_IF_NOT_EQ;
+            case INT_NEQ:
+            case BOOL_NEQ:
+            case CHAR_NEQ:
+                return OpCode.JUMP_IF_NOT_NE;
+            default:
+                return -1;
+        }
+    }
+
+    private void emitCondition(Expression condition, Operation test) {
+        condition.accept(this);
+        switch (test) {
+            case BOOL_TEST:
+                break;
+            // chars are stored as ints
+            case INT_TEST:
+            case CHAR_TEST:
+                emit(OpCode.TEST_INT, 0);
+                break;
+            case STRING_TEST:
+                emit(OpCode.TEST_STRING, 0);
+                break;
+            default:
+                throw new RuntimeError("not a condition test: " + test);
+        }
+    }
+
+    private void emitFunctionCall(FunctionDecl func, List<Expression> arguments) {
+        emitArguments(arguments, func.getParameters());
+        int argc = arguments.size();
+        emit(OpCode.CALL, pool.addIdentity(functionChunks.get(func)), argc, 1 - argc);
+    }
+
+    private void emitBuiltin(String name, List<Expression> arguments) {
+        arguments.get(0).accept(this);
+        emit(OpCode.BUILTIN, nameConstant(name), 0);
+    }
+
+    private int typeConstant(Type type) {
+        return pool.addShared(type, type);
+    }
+
+    private int nameConstant(String name) {
+        return pool.addShared(name, name);
+    }
+
+    private int boolConstant(boolean value) {
+        return pool.addShared(Arrays.asList(LiteralExpr.LiteralType.BOOL, value),
+                new Value(Type.BOOL, value));
+    }
+
+    // code buffer
+
+    private void begin() {
+        code = new int[64];
+        size = 0;
+        depth = 0;
+        maxDepth = 0;
+        referenceSlots = new BitSet();
+    }
+
+    private void finish(Chunk chunk) {
+        chunk.setCode(Arrays.copyOf(code, size), maxDepth);
+    }
+
+    private void emit(int op, int stackEffect) {
+        write(op);
+        adjustDepth(stackEffect);
+    }
+
+    private void emit(int op, int operand, int stackEffect) {
+        write(op);
+        write(operand);
+        adjustDepth(stackEffect);
+    }
+
+    private void emit(int op, int operand1, int operand2, int stackEffect) {
+        write(op);
+        write(operand1);
+        write(operand2);
+        adjustDepth(stackEffect);
+    }
+
+    /**
+     * emit a jump with a placeholder target
+     * @return position of the target operand (for patchJump)
+     */
+    private int emitJump(int op, int stackEffect) {
+        emit(op, -1, stackEffect);
+        return size - 1;
+    }
+
+    private void patchJump(int operandPosition) {
+        code[operandPosition] = size;
+    }
+
+    private void write(int word) {
+        if (size == code.length) {
+            code = Arrays.copyOf(code, size * 2);
+        }
+        code[size++] = word;
+    }
+
+    private void adjustDepth(int stackEffect) {
+        depth += stackEffect;
+        maxDepth = Math.max(maxDepth, depth);
+    }
+}
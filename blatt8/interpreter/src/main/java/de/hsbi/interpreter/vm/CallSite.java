@@ -0,0 +1,41 @@
+package de.hsbi.interpreter.vm;
+
+import de.hsbi.interpreter.runtime.InlineCache;
+import de.hsbi.interpreter.symbols.ClassSymbol;
+import de.hsbi.interpreter.symbols.MethodSymbol;
+
+import java.util.Map;
+
+/**
+ * a method call site (obj.method(args)) with an inline cache for virtual dispatch
+ */
+public class CallSite {
+    private MethodSymbol resolvedMethod;   // statically resolved overload
+    private Chunk staticTarget;            // chunk of a non-virtual call
+    private InlineCache<Chunk> cache;      // null for non-virtual calls
+
+    public CallSite(MethodSymbol resolvedMethod, int vtableSlot, Map<MethodSymbol, Chunk> methodChunks) {
+        this.resolvedMethod = resolvedMethod;
+        if (vtableSlot >= 0) {
+            this.cache = new InlineCache<>(vtableSlot, methodChunks::get);
+        } else {
+            this.staticTarget = methodChunks.get(resolvedMethod);
+        }
+    }
+
+    /**
+     * find the chunk to run for a receiver of the given runtime class
+     */
+    public Chunk lookup(ClassSymbol receiverClass) {
+        if (cache == null) {
+            return staticTarget;
+        }
+        return cache.lookup(receiverClass);
+    }
+
+    @Override
+    public String toString() {
+        return "<call site " + resolvedMethod.getOwningClass().getName() + "::" + resolvedMethod.getName()
+                + (cache != null ? " virtual" : "") + ">";
+    }
+}
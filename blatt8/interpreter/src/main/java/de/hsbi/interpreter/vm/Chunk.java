@@ -0,0 +1,106 @@
+package de.hsbi.interpreter.vm;
+
+import de.hsbi.interpreter.ast.Parameter;
+import de.hsbi.interpreter.ast.Type;
+
+import java.util.List;
+
+/**
+ * compiled code of one function, method, constructor or class initializer
+ */
+public class Chunk {
+    private String name;
+    private int[] code;
+    private int frameSize;
+    private int maxStack;
+
+    // parameter binding (copied from the declaration for fast access)
+    private int[] paramSlots;
+    private boolean[] paramIsReference;
+    private boolean[] paramIsObject; // object passed by value: bound to a (sliced) copy
+    private Type[] paramTypes;
+
+    public Chunk(String name, List<Parameter> parameters, int frameSize) {
+        this.name = name;
+        this.code = new int[0];
+        this.frameSize = frameSize;
+
+        int paramCount = parameters.size();
+        this.paramSlots = new int[paramCount];
+        this.paramIsReference = new boolean[paramCount];
+        this.paramIsObject = new boolean[paramCount];
+        this.paramTypes = new Type[paramCount];
+        for (int i = 0; i < paramCount; i++) {
+            Parameter param = parameters.get(i);
+            paramSlots[i] = param.getSlot();
+            paramIsReference[i] = param.isReference();
+            paramIsObject[i] = !param.isReference() && param.getType().getBaseType() == Type.BaseType.CLASS;
+            paramTypes[i] = param.getType();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int[] getCode() {
+        return code;
+    }
+
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    public int getMaxStack() {
+        return maxStack;
+    }
+
+    public int[] getParamSlots() {
+        return paramSlots;
+    }
+
+    public boolean[] getParamIsReference() {
+        return paramIsReference;
+    }
+
+    public boolean[] getParamIsObject() {
+        return paramIsObject;
+    }
+
+    public Type[] getParamTypes() {
+        return paramTypes;
+    }
+
+    void setCode(int[] code, int maxStack) {
+        this.code = code;
+        this.maxStack = maxStack;
+    }
+
+    /**
+     * human readable listing of the code (for debugging)
+     */
+    public String disassemble(ConstantPool pool) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(name).append(" (frame ").append(frameSize).append(", stack ").append(maxStack).append(")\n");
+        int pc = 0;
+        while (pc < code.length) {
+            int op = code[pc];
+            sb.append(String.format("%5d  %-15s", pc, OpCode.name(op)));
+            for (int i = 1; i <= OpCode.operandCount(op); i++) {
+                sb.append(' ').append(code[pc + i]);
+            }
+            if (op == OpCode.CONST || op == OpCode.CALL || op == OpCode.INVOKE
+                    || op == OpCode.INVOKE_SPECIAL || op == OpCode.BUILTIN || op == OpCode.NEW) {
+                sb.append("    ; ").append(pool.get(code[pc + 1]));
+            }
+            sb.append('\n');
+            pc += 1 + OpCode.operandCount(op);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "<chunk " + name + ">";
+    }
+}
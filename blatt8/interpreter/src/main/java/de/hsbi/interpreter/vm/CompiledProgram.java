@@ -0,0 +1,41 @@
+package de.hsbi.interpreter.vm;
+
+import java.util.List;
+
+/**
+ * result of the bytecode compiler: all chunks plus the shared constant pool
+ */
+public class CompiledProgram {
+    private ConstantPool constantPool;
+    private List<Chunk> chunks;
+    private Chunk mainChunk; // null if the program has no main function
+
+    public CompiledProgram(ConstantPool constantPool, List<Chunk> chunks, Chunk mainChunk) {
+        this.constantPool = constantPool;
+        this.chunks = chunks;
+        this.mainChunk = mainChunk;
+    }
+
+    public ConstantPool getConstantPool() {
+        return constantPool;
+    }
+
+    public List<Chunk> getChunks() {
+        return chunks;
+    }
+
+    public Chunk getMainChunk() {
+        return mainChunk;
+    }
+
+    /**
+     * listing of all chunks (for debugging)
+     */
+    public String disassemble() {
+        StringBuilder sb = new StringBuilder();
+        for (Chunk chunk : chunks) {
+            sb.append(chunk.disassemble(constantPool)).append('\n');
+        }
+        return sb.toString();
+    }
+}
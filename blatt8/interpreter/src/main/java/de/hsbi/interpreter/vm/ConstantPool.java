@@ -0,0 +1,72 @@
+package de.hsbi.interpreter.vm;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * constant pool shared by all chunks of a compiled program
+ * holds literal values, types, field/built-in names, chunks, classes and call sites
+ */
+public class ConstantPool {
+    private List<Object> entries;
+    private Map<Object, Integer> equalIndex;     // literals, names and types (compared by equals)
+    private Map<Object, Integer> identityIndex;  // chunks, classes (compared by identity)
+
+    public ConstantPool() {
+        this.entries = new ArrayList<>();
+        this.equalIndex = new HashMap<>();
+        this.identityIndex = new IdentityHashMap<>();
+    }
+
+    /**
+     * add a constant that can be shared with equal constants
+     * @param key the deduplication key (e.g. type and value of a literal)
+     */
+    public int addShared(Object key, Object constant) {
+        Integer index = equalIndex.get(key);
+        if (index == null) {
+            index = append(constant);
+            equalIndex.put(key, index);
+        }
+        return index;
+    }
+
+    /**
+     * add a constant that is deduplicated by identity
+     */
+    public int addIdentity(Object constant) {
+        Integer index = identityIndex.get(constant);
+        if (index == null) {
+            index = append(constant);
+            identityIndex.put(constant, index);
+        }
+        return index;
+    }
+
+    /**
+     * add a constant that is never shared (e.g. a call site with its own cache)
+     */
+    public int addUnique(Object constant) {
+        return append(constant);
+    }
+
+    private int append(Object constant) {
+        entries.add(constant);
+        return entries.size() - 1;
+    }
+
+    public Object get(int index) {
+        return entries.get(index);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public Object[] toArray() {
+        return entries.toArray();
+    }
+}
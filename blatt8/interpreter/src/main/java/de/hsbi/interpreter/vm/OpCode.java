@@ -0,0 +1,154 @@
+package de.hsbi.interpreter.vm;
+
+/**
+ * instruction set of the bytecode VM
+ *
+ * code is stored as an int[]: every instruction is an opcode followed by
+ * its operands. operands named k are indices into the constant pool.
+ */
+public final class OpCode {
+    // constants and locals
+    public static final int CONST = 0;          // k        push constant value
+    public static final int DEFAULT = 1;        // k        push fresh default value of type k
+    public static final int LOAD = 2;           // slot     push local
+    public static final int STORE = 3;          // slot     pop into local (no copy)
+    public static final int STORE_COPY = 4;     // slot k   pop, copy (with slicing to type k) into local
+    public static final int POP = 5;
+    public static final int DUP = 6;
+    public static final int ASSIGN = 7;         //          pop value, pop target, assign, push value
+
+    // objects
+    public static final int GET_FIELD = 8;      // offset   pop object, push field at layout offset
+    public static final int SET_FIELD_THIS = 9; // offset  pop value into field at offset of the receiver
+    public static final int GET_FIELD_THIS = 10; // offset  push field at offset of the receiver
+    public static final int NEW = 11;           // k        push new (uninitialized) object of class k
+    public static final int COPY_OBJECT = 12;   // k        pop object, push implicit copy as class k
+    public static final int GET_FIELD_MUT = 13; // offset   pop object, push field to assign to (unshares the object)
+    public static final int GET_FIELD_THIS_MUT = 14; // offset  push field of the receiver to assign to
+    public static final int GET_FIELD_REF = 15; // offset   pop object, push field to bind a reference to (pins the object)
+    public static final int GET_FIELD_THIS_REF = 16; // offset  push field of the receiver to bind a reference to
+
+    // arithmetic (int)
+    public static final int ADD = 17;
+    public static final int SUB = 18;
+    public static final int MUL = 19;
+    public static final int DIV = 20;
+    public static final int MOD = 21;
+    public static final int NEG = 22;
+    public static final int POS = 23;
+
+    // comparison and logic
+    public static final int LT_INT = 24;
+    public static final int LE_INT = 25;
+    public static final int GT_INT = 26;
+    public static final int GE_INT = 27;
+    public static final int LT_CHAR = 28;
+    public static final int LE_CHAR = 29;
+    public static final int GT_CHAR = 30;
+    public static final int GE_CHAR = 31;
+    public static final int EQ_INT = 32;
+    public static final int NE_INT = 33;
+    public static final int EQ = 34;            //          equality of any other values (see RuntimeSupport.valuesEqual)
+    public static final int NE = 35;
+    public static final int NOT = 36;
+    public static final int TEST_INT = 37;      //          pop int/char, push it != 0 (condition)
+
+    // control flow
+    public static final int JUMP = 38;          // target
+    public static final int JUMP_IF_FALSE = 39; // target   pop bool
+    public static final int JUMP_IF_TRUE = 40;  // target   pop bool
+
+    // calls
+    public static final int CALL = 41;          // k argc   call function chunk k
+    public static final int INVOKE = 42;        // k argc   call method through call site k (receiver below args)
+    public static final int INVOKE_SPECIAL = 43; // k argc  call chunk k on receiver without dispatch
+    public static final int BUILTIN = 44;       // k        pop argument, call print_* built-in named k
+    public static final int RETURN = 45;        //          pop return value
+    public static final int RETURN_DEFAULT = 46; // k       return default value of type k
+
+    // lazy object fields (see InstantiationPlan)
+    public static final int JUMP_IF_TEMPLATE = 47; // k target  jump if class k has a template
+    public static final int SET_TEMPLATE = 48;  // k        pop object as the template of class k
+
+    // field access chains a.b.c in one instruction (k: int[] path of offsets, see MemberAccessExpr.getFieldPath);
+    // the nested objects on the way are still visited one by one
+    public static final int GET_FIELD_PATH = 49; // k       pop object, push field at the end of path k
+    public static final int GET_FIELD_PATH_MUT = 50; // k   pop object, push field at the end of path k to assign to
+    public static final int GET_FIELD_PATH_REF = 51; // k   pop object, push field at the end of path k to bind a reference to
+
+    // temporaries (see EscapeAnalyzer)
+    public static final int TEMPORARY = 52;     //          mark the new object on the stack as moved by its next copy
+
+    // regions (see RegionAnalyzer)
+    public static final int NEW_REGION = 53;    // k i      push object i of the frame's region, reset as new object of class k
+
+    // tail calls
+    public static final int TAIL_CALL = 54;     // k argc   call function chunk k in place of the running function
+
+    // operands read before later operands run (see BytecodeCompiler.mayWrite)
+    public static final int VALUE = 55;         //          replace the int/bool/char/string cell on top by a copy
+
+    // typed string/object comparisons and conditions (see OperatorLowering)
+    public static final int EQ_STRING = 56;
+    public static final int NE_STRING = 57;
+    public static final int EQ_REF = 58;        //          same object
+    public static final int NE_REF = 59;
+    public static final int TEST_STRING = 60;   //          pop string, push whether it is not empty (condition)
+
+    // int/bool/char comparisons of if/while conditions (see BytecodeCompiler.emitJumpIfFalse)
+    public static final int JUMP_IF_NOT_LT = 61; // target  pop right, pop left, jump unless left < right
+    public static final int JUMP_IF_NOT_LE = 62; // target
+    public static final int JUMP_IF_NOT_GT = 63; // target
+    public static final int JUMP_IF_NOT_GE = 64; // target
+    public static final int JUMP_IF_NOT_EQ = 65; // target
+    public static final int JUMP_IF_NOT_NE = 66; // target
+
+    private static final String[] NAMES = {
+        "CONST", "DEFAULT", "LOAD", "STORE", "STORE_COPY", "POP", "DUP", "ASSIGN",
+        "GET_FIELD", "SET_FIELD_THIS", "GET_FIELD_THIS", "NEW", "COPY_OBJECT",
+        "GET_FIELD_MUT", "GET_FIELD_THIS_MUT", "GET_FIELD_REF", "GET_FIELD_THIS_REF",
+        "ADD", "SUB", "MUL", "DIV", "MOD", "NEG", "POS",
+        "LT_INT", "LE_INT", "GT_INT", "GE_INT", "LT_CHAR", "LE_CHAR", "GT_CHAR", "GE_CHAR",
+        "EQ_INT", "NE_INT", "EQ", "NE", "NOT", "TEST_INT",
+        "JUMP", "JUMP_IF_FALSE", "JUMP_IF_TRUE",
+        "CALL", "INVOKE", "INVOKE_SPECIAL", "BUILTIN", "RETURN", "RETURN_DEFAULT",
+        "JUMP_IF_TEMPLATE", "SET_TEMPLATE",
+        "GET_FIELD_PATH", "GET_FIELD_PATH_MUT", "GET_FIELD_PATH_REF",
+        "TEMPORARY",
+        "NEW_REGION",
+        "TAIL_CALL",
+        "VALUE",
+        "EQ_STRING", "NE_STRING", "EQ_REF", "NE_REF", "TEST_STRING",
+        "JUMP_IF_NOT_LT", "JUMP_IF_NOT_LE", "JUMP_IF_NOT_GT", "JUMP_IF_NOT_GE", "JUMP_IF_NOT_EQ", "JUMP_IF_NOT_NE"
+    };
+
+    private static final int[] OPERANDS = {
+        1, 1, 1, 1, 2, 0, 0, 0,
+        1, 1, 1, 1, 1,
+        1, 1, 1, 1,
+        0, 0, 0, 0, 0, 0, 0,
+        0, 0, 0, 0, 0, 0, 0, 0,
+        0, 0, 0, 0, 0, 0,
+        1, 1, 1,
+        2, 2, 2, 1, 0, 1,
+        2, 1,
+        1, 1, 1,
+        0,
+        2,
+        2,
+        0,
+        0, 0, 0, 0, 0,
+        1, 1, 1, 1, 1, 1
+    };
+
+    private OpCode() {
+    }
+
+    public static String name(int opcode) {
+        return NAMES[opcode];
+    }
+
+    public static int operandCount(int opcode) {
+        return OPERANDS[opcode];
+    }
+}
@@ -0,0 +1,534 @@
+package de.hsbi.interpreter.vm;
+
+import de.hsbi.interpreter.ast.Type;
+import de.hsbi.interpreter.runtime.ObjectValue;
+import de.hsbi.interpreter.runtime.Region;
+import de.hsbi.interpreter.runtime.RuntimeError;
+import de.hsbi.interpreter.runtime.RuntimeSupport;
+import de.hsbi.interpreter.runtime.Value;
+import de.hsbi.interpreter.symbols.ClassSymbol;
+
+import java.util.Arrays;
+
+/**
+ * stack-based virtual machine
+ * executes a CompiledProgram with an explicit call stack (no Java recursion per call)
+ */
+public class VirtualMachine {
+
+    private CompiledProgram program;
+    private Object[] constants;
+    private RuntimeSupport support;
+
+    // operand stack
+    private Value[] stack;
+    private int sp;
+
+    // call stack
+    private Frame[] frames;
+    private int frameCount;
+
+    /**
+     * activation record of one running chunk
+     * (kept in the call stack after the call returned and reused by the next call at that depth)
+     */
+    private static class Frame {
+        Chunk chunk;
+        int[] code;
+        int pc;
+        Value[] locals;
+        ObjectValue receiver;  // null for functions
+        int stackBase;         // operand stack height to restore on return
+        Region region;         // objects of region variables, kept for the next call at this depth
+    }
+
+    public VirtualMachine(CompiledProgram program) {
+        this.program = program;
+        this.constants = program.getConstantPool().toArray();
+        this.support = new RuntimeSupport();
+        this.stack = new Value[256];
+        this.frames = new Frame[64];
+    }
+
+    /**
+     * run the main function (if it exists)
+     */
+    public void run() {
+        if (program.getMainChunk() != null) {
+            execute(program.getMainChunk());
+        }
+    }
+
+    /**
+     * execute a function chunk without arguments and return its result
+     */
+    public Value execute(Chunk chunk) {
+        int baseFrameCount = frameCount;
+        pushFrame(chunk, null, sp, 0);
+        return loop(baseFrameCount);
+    }
+
+    private Value loop(int baseFrameCount) {
+        Frame frame = frames[frameCount - 1];
+        int[] code = frame.code;
+        Value[] locals = frame.locals;
+        int pc = frame.pc;
+
+        while (true) {
+            int op = code[pc++];
+            switch (op) {
+                case OpCode.CONST:
+                    push((Value) constants[code[pc++]]);
+                    break;
+                case OpCode.DEFAULT:
+                    push(Value.defaultValue((Type) constants[code[pc++]]));
+                    break;
+                case OpCode.LOAD:
+                    push(locals[code[pc++]]);
+                    break;
+                case OpCode.STORE:
+                    locals[code[pc++]] = pop();
+                    break;
+                case OpCode.STORE_COPY: {
+                    int slot = code[pc++];
+                    Type type = (Type) constants[code[pc++]];
+                    // copy the value (with slicing if assigning derived to base)
+                    locals[slot] = support.copyValueWithSlicing(pop(), type);
+                    break;
+                }
+                case OpCode.POP:
+                    sp--;
+                    stack[sp] = null;
+                    break;
+                case OpCode.DUP:
+                    push(stack[sp - 1]);
+                    break;
+                case OpCode.ASSIGN: {
+                    Value value = pop();
+                    Value target = pop();
+                    // assignment writes through references
+                    target.assign(value);
+                    push(value);
+                    break;
+                }
+
+                case OpCode.GET_FIELD: {
+                    int offset = code[pc++];
+                    ObjectValue obj = pop().getObjectValue();
+                    Value field = obj.getField(offset);
+                    if (field == null) {
+                        throw new RuntimeError("field #" + offset + " not set in object of class '" + obj.getClassSymbol().getName() + "'");
+                    }
+                    push(field);
+                    break;
+                }
+                case OpCode.SET_FIELD_THIS:
+                    frame.receiver.setField(code[pc++], pop());
+                    break;
+                case OpCode.GET_FIELD_THIS:
+                    push(frame.receiver.getField(code[pc++]));
+                    break;
+                case OpCode.NEW: {
+                    ClassSymbol classSymbol = (ClassSymbol) constants[code[pc++]];
+                    push(new Value(classSymbol.getType(), classSymbol.getInstantiationPlan().instantiate()));
+                    break;
+                }
+                case OpCode.NEW_REGION: {
+                    ClassSymbol classSymbol = (ClassSymbol) constants[code[pc++]];
+                    int index = code[pc++];
+                    if (frame.region == null) {
+                        frame.region = new Region();
+                    }
+                    push(new Value(classSymbol.getType(), frame.region.allocate(index, classSymbol)));
+                    break;
+                }
+                case OpCode.JUMP_IF_TEMPLATE: {
+                    ClassSymbol classSymbol = (ClassSymbol) constants[code[pc++]];
+                    int target = code[pc++];
+                    if (classSymbol.getInstantiationPlan().getTemplate() != null) {
+                        pc = target;
+                    }
+                    break;
+                }
+                case OpCode.SET_TEMPLATE: {
+                    ClassSymbol classSymbol = (ClassSymbol) constants[code[pc++]];
+                    classSymbol.getInstantiationPlan().setTemplate(pop().getObjectValue());
+                    break;
+                }
+                case OpCode.COPY_OBJECT: {
+                    ClassSymbol classSymbol = (ClassSymbol) constants[code[pc++]];
+                    ObjectValue newObj = support.copyObject(pop().getObjectValue(), classSymbol);
+                    push(new Value(classSymbol.getType(), newObj));
+                    break;
+                }
+                case OpCode.GET_FIELD_MUT: {
+                    int offset = code[pc++];
+                    push(pop().getObjectValue().getFieldForWrite(offset));
+                    break;
+                }
+                case OpCode.GET_FIELD_THIS_MUT:
+                    push(frame.receiver.getFieldForWrite(code[pc++]));
+                    break;
+                case OpCode.GET_FIELD_REF: {
+                    int offset = code[pc++];
+                    push(pop().getObjectValue().getFieldForReference(offset));
+                    break;
+                }
+                case OpCode.GET_FIELD_THIS_REF:
+                    push(frame.receiver.getFieldForReference(code[pc++]));
+                    break;
+                case OpCode.TEMPORARY:
+                    stack[sp - 1].getObjectValue().markTemporary();
+                    break;
+                case OpCode.VALUE:
+                    stack[sp - 1] = stack[sp - 1].copy();
+                    break;
+                case OpCode.GET_FIELD_PATH: {
+                    int[] path = (int[]) constants[code[pc++]];
+                    push(pop().getObjectValue().getField(path));
+                    break;
+                }
+                case OpCode.GET_FIELD_PATH_MUT: {
+                    int[] path = (int[]) constants[code[pc++]];
+                    push(pop().getObjectValue().getFieldForWrite(path));
+                    break;
+                }
+                case OpCode.GET_FIELD_PATH_REF: {
+                    int[] path = (int[]) constants[code[pc++]];
+                    push(pop().getObjectValue().getFieldForReference(path));
+                    break;
+                }
+
+                case OpCode.ADD: {
+                    int right = pop().getIntValue();
+                    push(Value.ofInt(pop().getIntValue() + right));
+                    break;
+                }
+                case OpCode.SUB: {
+                    int right = pop().getIntValue();
+                    push(Value.ofInt(pop().getIntValue() - right));
+                    break;
+                }
+                case OpCode.MUL: {
+                    int right = pop().getIntValue();
+                    push(Value.ofInt(pop().getIntValue() * right));
+                    break;
+                }
+                case OpCode.DIV: {
+                    int right = pop().getIntValue();
+                    if (right == 0) {
+                        throw new RuntimeError("division by zero");
+                    }
+                    push(Value.ofInt(pop().getIntValue() / right));
+                    break;
+                }
+                case OpCode.MOD: {
+                    int right = pop().getIntValue();
+                    if (right == 0) {
+                        throw new RuntimeError("modulo by zero");
+                    }
+                    push(Value.ofInt(pop().getIntValue() % right));
+                    break;
+                }
+                case OpCode.NEG:
+                    push(Value.ofInt(-pop().getIntValue()));
+                    break;
+                case OpCode.POS:
+                    push(Value.ofInt(pop().getIntValue()));
+                    break;
+
+                case OpCode.LT_INT: {
+                    int right = pop().getIntValue();
+                    push(Value.ofBool(pop().getIntValue() < right));
+                    break;
+                }
+                case OpCode.LE_INT: {
+                    int right = pop().getIntValue();
+                    push(Value.ofBool(pop().getIntValue() <= right));
+                    break;
+                }
+                case OpCode.GT_INT: {
+                    int right = pop().getIntValue();
+                    push(Value.ofBool(pop().getIntValue() > right));
+                    break;
+                }
+                case OpCode.GE_INT: {
+                    int right = pop().getIntValue();
+                    push(Value.ofBool(pop().getIntValue() >= right));
+                    break;
+                }
+                case OpCode.LT_CHAR: {
+                    char right = pop().getCharValue();
+                    push(Value.ofBool(pop().getCharValue() < right));
+                    break;
+                }
+                case OpCode.LE_CHAR: {
+                    char right = pop().getCharValue();
+                    push(Value.ofBool(pop().getCharValue() <= right));
+                    break;
+                }
+                case OpCode.GT_CHAR: {
+                    char right = pop().getCharValue();
+                    push(Value.ofBool(pop().getCharValue() > right));
+                    break;
+                }
+                case OpCode.GE_CHAR: {
+                    char right = pop().getCharValue();
+                    push(Value.ofBool(pop().getCharValue() >= right));
+                    break;
+                }
+                case OpCode.EQ_INT: {
+                    int right = pop().getIntValue();
+                    push(Value.ofBool(pop().getIntValue() == right));
+                    break;
+                }
+                case OpCode.NE_INT: {
+                    int right = pop().getIntValue();
+                    push(Value.ofBool(pop().getIntValue() != right));
+                    break;
+                }
+                case OpCode.EQ: {
+                    Value right = pop();
+                    push(Value.ofBool(RuntimeSupport.valuesEqual(pop(), right)));
+                    break;
+                }
+                case OpCode.NE: {
+                    Value right = pop();
+                    push(Value.ofBool(!RuntimeSupport.valuesEqual(pop(), right)));
+                    break;
+                }
+                case OpCode.NOT:
+                    push(Value.ofBool(!pop().getBoolValue()));
+                    break;
+                case OpCode.EQ_STRING: {
+                    String right = pop().getStringValue();
+                    push(Value.ofBool(pop().getStringValue().equals(right)));
+                    break;
+                }
+                case OpCode.NE_STRING: {
+                    String right = pop().getStringValue();
+                    push(Value.ofBool(!pop().getStringValue().equals(right)));
+                    break;
+                }
+                case OpCode.EQ_REF: {
+                    ObjectValue right = pop().getObjectValue();
+                    push(Value.ofBool(pop().getObjectValue() == right));
+                    break;
+                }
+                case OpCode.NE_REF: {
+                    ObjectValue right = pop().getObjectValue();
+                    push(Value.ofBool(pop().getObjectValue() != right));
+                    break;
+                }
+                case OpCode.TEST_INT:
+                    push(Value.ofBool(pop().getIntValue() != 0));
+                    break;
+                case OpCode.TEST_STRING:
+                    push(Value.ofBool(!pop().getStringValue().isEmpty()));
+                    break;
+
+                case OpCode.JUMP:
+                    pc = code[pc];
+                    break;
+                case OpCode.JUMP_IF_FALSE: {
+                    int target = code[pc++];
+                    if (!pop().getBoolValue()) {
+                        pc = target;
+                    }
+                    break;
+                }
+                case OpCode.JUMP_IF_TRUE: {
+                    int target = code[pc++];
+                    if (pop().getBoolValue()) {
+                        pc = target;
+                    }
+                    break;
+                }
+                case OpCode.JUMP_IF_NOT_LT: {
+                    int target = code[pc++];
+                    int right = pop().getIntValue();
+                    if (!(pop().getIntValue() < right)) {
+                        pc = target;
+                    }
+                    break;
+                }
+                case OpCode.JUMP_IF_NOT_LE: {
+                    int target = code[pc++];
+                    int right = pop().getIntValue();
+                    if (!(pop().getIntValue() <= right)) {
+                        pc = target;
+                    }
+                    break;
+                }
+                case OpCode.JUMP_IF_NOT_GT: {
+                    int target = code[pc++];
+                    int right = pop().getIntValue();
+                    if (!(pop().getIntValue() > right)) {
+                        pc = target;
+                    }
+                    break;
+                }
+                case OpCode.JUMP_IF_NOT_GE: {
+                    int target = code[pc++];
+                    int right = pop().getIntValue();
+                    if (!(pop().getIntValue() >= right)) {
+                        pc = target;
+                    }
+                    break;
+                }
+                case OpCode.JUMP_IF_NOT_EQ: {
+                    int target = code[pc++];
+                    int right = pop().getIntValue();
+                    if (!(pop().getIntValue() == right)) {
+                        pc = target;
+                    }
+                    break;
+                }
+                case OpCode.JUMP_IF_NOT_NE: {
+                    int target = code[pc++];
+                    int right = pop().getIntValue();
+                    if (!(pop().getIntValue() != right)) {
+                        pc = target;
+                    }
+                    break;
+                }
+
+                case OpCode.CALL:
+                case OpCode.INVOKE:
+                case OpCode.INVOKE_SPECIAL: {
+                    Object target = constants[code[pc++]];
+                    int argc = code[pc++];
+                    frame.pc = pc;
+
+                    Chunk chunk;
+                    ObjectValue receiver = null;
+                    int base = sp - argc;
+                    if (op == OpCode.CALL) {
+                        chunk = (Chunk) target;
+                    } else {
+                        base--;
+                        receiver = stack[base].getObjectValue();
+                        chunk = op == OpCode.INVOKE
+                                ? ((CallSite) target).lookup(receiver.getClassSymbol())
+                                : (Chunk) target;
+                    }
+
+                    frame = pushFrame(chunk, receiver, base, argc);
+                    code = frame.code;
+                    locals = frame.locals;
+                    pc = 0;
+                    break;
+                }
+                case OpCode.TAIL_CALL: {
+                    Chunk chunk = (Chunk) constants[code[pc++]];
+                    int argc = code[pc++];
+
+                    // end the running call, keeping the arguments at the bottom of its operand stack
+                    int base = frame.stackBase;
+                    System.arraycopy(stack, sp - argc, stack, base, argc);
+                    Arrays.fill(stack, base + argc, sp, null);
+                    sp = base + argc;
+                    Arrays.fill(locals, 0, frame.chunk.getFrameSize(), null);
+                    frameCount--;
+
+                    frame = pushFrame(chunk, null, base, argc);
+                    code = frame.code;
+                    locals = frame.locals;
+                    pc = 0;
+                    break;
+                }
+                case OpCode.BUILTIN: {
+                    String name = (String) constants[code[pc++]];
+                    push(RuntimeSupport.executeBuiltin(name, pop()));
+                    break;
+                }
+                case OpCode.RETURN:
+                case OpCode.RETURN_DEFAULT: {
+                    Value result = op == OpCode.RETURN
+                            ? pop()
+                            : Value.defaultValue((Type) constants[code[pc++]]);
+
+                    // drop the frame and everything it left on the operand stack
+                    Arrays.fill(stack, frame.stackBase, sp, null);
+                    sp = frame.stackBase;
+                    Arrays.fill(locals, 0, frame.chunk.getFrameSize(), null);
+                    frame.receiver = null;
+                    frameCount--;
+
+                    if (frameCount == baseFrameCount) {
+                        return result;
+                    }
+
+                    push(result);
+                    frame = frames[frameCount - 1];
+                    code = frame.code;
+                    locals = frame.locals;
+                    pc = frame.pc;
+                    break;
+                }
+
+                default:
+                    throw new RuntimeError("unknown opcode: " + op);
+            }
+        }
+    }
+
+    /**
+     * set up the frame for the chunk and bind the arguments found on the operand stack
+     */
+    private Frame pushFrame(Chunk chunk, ObjectValue receiver, int stackBase, int argc) {
+        if (frameCount == frames.length) {
+            frames = Arrays.copyOf(frames, frameCount * 2);
+        }
+        Frame frame = frames[frameCount];
+        if (frame == null) {
+            frame = new Frame();
+            frames[frameCount] = frame;
+        }
+        if (frame.locals == null || frame.locals.length < chunk.getFrameSize()) {
+            frame.locals = new Value[chunk.getFrameSize()];
+        }
+        frame.chunk = chunk;
+        frame.code = chunk.getCode();
+        frame.receiver = receiver;
+        frame.stackBase = stackBase;
+
+        // bind parameters
+        int[] paramSlots = chunk.getParamSlots();
+        boolean[] paramIsObject = chunk.getParamIsObject();
+        Type[] paramTypes = chunk.getParamTypes();
+        int firstArg = sp - argc;
+        for (int i = 0; i < argc; i++) {
+            Value arg = stack[firstArg + i];
+            if (paramIsObject[i]) {
+                // object passed by value - copy it (with slicing)
+                frame.locals[paramSlots[i]] = support.copyValueWithSlicing(arg, paramTypes[i]);
+            } else {
+                // reference - share the cell of the argument; other values come in
+                // a cell of their own (see BytecodeCompiler.emitArguments)
+                frame.locals[paramSlots[i]] = arg;
+            }
+        }
+
+        frameCount++;
+
+        ensureStack(sp + chunk.getMaxStack());
+        return frame;
+    }
+
+    private void ensureStack(int capacity) {
+        if (capacity > stack.length) {
+            stack = Arrays.copyOf(stack, Math.max(capacity, stack.length * 2));
+        }
+    }
+
+    private void push(Value value) {
+        stack[sp++] = value;
+    }
+
+    private Value pop() {
+        Value value = stack[--sp];
+        stack[sp] = null;
+        return value;
+    }
+}
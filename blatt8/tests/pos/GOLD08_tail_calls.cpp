@@ -0,0 +1,68 @@
+#include "hsbi_runtime.h"
+
+// nicht --compile-to
+// Endrekursion: eigene, wechselseitige und tiefe Endaufrufe,
+// dazu Endaufrufe zwischen Funktionen mit unterschiedlich vielen lokalen Variablen
+
+int count(int n, int acc) {
+  if (n <= 0) { return acc; }
+  return count(n - 1, acc + 1);
+}
+
+bool isOdd(int n) {
+  if (n == 0) { return false; }
+  return isEven(n - 1);
+}
+bool isEven(int n) {
+  if (n == 0) { return true; }
+  return isOdd(n - 1);
+}
+
+// groesserer Frame ruft kleineren auf
+int useLocal(int n) {
+  int a = n * 2;
+  int b = a + 1;
+  return count(a, b);
+}
+
+// kleinerer Frame ruft groesseren auf, der wieder den kleineren aufruft
+int narrow(int n) {
+  return wide(n, 0);
+}
+int wide(int n, int acc) {
+  int x = n % 3;
+  int y = x * 2;
+  string s = "w";
+  if (n <= 0) { return acc; }
+  return wide(n - 1, acc + y);
+}
+int down(int n) {
+  if (n <= 0) { return narrow(4); }
+  int t = n - 1;
+  int u = t;
+  return down(u);
+}
+
+int main() {
+  print_int(count(10, 0));        // 10
+  print_bool(isEven(10));         // 1
+  print_bool(isOdd(7));           // 1
+  print_int(useLocal(5));         // 21
+  print_int(narrow(5));           // 12
+  print_int(down(3));             // 8
+  print_int(count(200000, 0));    // 200000
+  print_bool(isEven(100001));     // 0
+  print_int(useLocal(50000));     // 200001
+  return 0;
+}
+/* EXPECT:
+10
+1
+1
+21
+12
+8
+200000
+0
+200001
+*/
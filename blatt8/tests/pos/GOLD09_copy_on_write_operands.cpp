@@ -0,0 +1,87 @@
+#include "hsbi_runtime.h"
+
+// Operanden werden von links nach rechts gelesen: ein rechter Operand, der ein Feld
+// schreibt, aendert den schon gelesenen linken Operanden nicht mehr. Das Ergebnis haengt
+// nicht davon ab, ob das Objekt vorher kopiert wurde (Kopien teilen ihre Felder bis
+// zum ersten Schreiben).
+
+class A {
+public:
+  int x;
+  string s;
+  int setX(int v) { x = v; return 0; }
+  bool setS(string v) { s = v; return true; }
+};
+
+int sum(int a, int b) { return a + b; }
+int bump(int& r) { r = r + 10; return 0; }
+int id(int& r) { return r; }
+
+int main() {
+  A a;
+  a.x = 1;
+  print_int(a.x + a.setX(5));          // 1
+
+  A c;
+  c.x = 1;
+  A b = c;                             // b teilt die Felder von c
+  print_int(c.x + c.setX(5));          // 1
+  print_int(b.x);                      // 1
+  print_int(c.x);                      // 5
+
+  A d;
+  d.x = 1;
+  A e = d;
+  print_int(e.x + d.setX(5));          // 1
+  print_int(e.x);                      // 1
+
+  A f;
+  f.x = 2;
+  A g = f;
+  print_int(sum(f.x, f.setX(7)));      // 2
+  print_bool(f.x == 7);                // 1
+
+  A h;
+  h.s = "alt";
+  A k = h;
+  print_bool(h.s == "alt" && h.setS("neu"));   // 1
+  print_bool(h.s == k.s);              // 0
+  print_string(k.s);                   // alt
+
+  int y = 1;
+  print_int(y + bump(y));              // 1
+  print_int(y);                        // 11
+
+  // ein Argument fuer einen Wertparameter wird kopiert, bevor das naechste laeuft
+  int z = 2;
+  print_int(sum(id(z), bump(z)));      // 2
+
+  // Objektoperanden behalten ihre Identitaet
+  A m;
+  A n;
+  m.x = 1;
+  print_bool(m == (n = m));            // 1
+  print_bool((n = m) == m);            // 1
+  A o;
+  print_bool(o != (n = o));            // 0
+  return 0;
+}
+/* EXPECT:
+1
+1
+1
+5
+1
+1
+2
+1
+1
+0
+alt
+1
+11
+2
+1
+1
+0
+*/
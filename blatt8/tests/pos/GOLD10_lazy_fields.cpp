@@ -0,0 +1,96 @@
+#include "hsbi_runtime.h"
+
+// Objektfelder, deren Konstruktion keine Seiteneffekte hat, darf --lazy-fields erst
+// beim ersten Zugriff konstruieren. Konstruktoren mit Ausgabe muessen weiterhin in
+// der Reihenfolge der Felder laufen.
+
+class Pure {
+public:
+  int v;
+  Pure() { v = 7; }
+};
+
+class Loud {
+public:
+  int v;
+  Loud() { v = 1; print_string("Loud"); }
+};
+
+class Holder {
+public:
+  Loud first;
+  Pure pure;
+  Loud second;
+  int n;
+  Holder() { n = 3; print_string("Holder"); }
+};
+
+class Nested {
+public:
+  Pure p;
+  Pure q;
+};
+
+class Outer {
+public:
+  Nested nested;
+  int tag;
+};
+
+class Base {
+public:
+  Pure shared;
+};
+
+class Derived : public Base {
+public:
+  Pure own;
+};
+
+int main() {
+  Holder h;                       // Loud, Loud, Holder
+  print_int(h.pure.v);            // 7
+  h.pure.v = 8;
+  print_int(h.pure.v);            // 8
+
+  Holder h2;                      // Loud, Loud, Holder
+  print_int(h2.pure.v);           // 7: das Feld von h aendert das Muster nicht
+
+  Outer o;
+  Outer copy = o;                 // Kopie mit noch nicht konstruierten Feldern
+  copy.nested.q.v = 5;
+  print_int(o.nested.q.v);        // 7
+  print_int(copy.nested.q.v);     // 5
+  print_int(copy.nested.p.v);     // 7
+
+  Pure& r = o.nested.p;
+  r.v = 9;
+  print_int(o.nested.p.v);        // 9
+
+  Derived d;
+  d.own.v = 2;
+  Base b = d;                     // Slicing
+  print_int(b.shared.v);          // 7
+  d.shared.v = 4;
+  print_int(b.shared.v);          // 7
+  print_int(d.shared.v);          // 4
+  return 0;
+}
+/* EXPECT:
+Loud
+Loud
+Holder
+7
+8
+Loud
+Loud
+Holder
+7
+7
+5
+7
+9
+7
+7
+4
+*/
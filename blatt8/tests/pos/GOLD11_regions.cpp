@@ -0,0 +1,86 @@
+#include "hsbi_runtime.h"
+
+// --regions legt lokale Objekte, die ihren Aufruf nie verlassen, pro Aufruftiefe
+// ab und verwendet sie beim naechsten Aufruf in dieser Tiefe wieder. Jeder Aufruf
+// muss trotzdem ein frisch konstruiertes Objekt sehen, und Objekte, die den Aufruf
+// verlassen (Rueckgabe, Kopie, Referenz, Zuweisung), duerfen nicht wiederverwendet werden.
+
+class Point {
+public:
+  int x;
+  int y;
+  Point() { x = 0; y = 0; }
+  int sum() { return x + y; }
+};
+
+// lokales Objekt in jeder Rekursionsstufe
+int depthSum(int n) {
+  Point p;
+  print_int(p.x);                 // immer 0: frisches Objekt
+  p.x = n;
+  p.y = n * 10;
+  if (n == 0) { return p.sum(); }
+  int below = depthSum(n - 1);
+  return p.sum() + below;         // p ist von den tieferen Aufrufen unberuehrt
+}
+
+// die Kopie verlaesst den Aufruf, das Original bleibt in der Region
+Point makePoint(int v) {
+  Point p;
+  p.x = v;
+  Point q = p;
+  return q;
+}
+
+// Zuweisung ueber eine Referenz: das Objekt verlaesst den Aufruf
+void store(Point& out, int v) {
+  Point p;
+  p.y = v;
+  out = p;
+}
+
+// Schleife: jede Deklaration beginnt mit einem frischen Objekt
+int loop() {
+  int i = 0;
+  int total = 0;
+  while (i < 3) {
+    Point p;
+    total = total + p.y;
+    p.y = 100;
+    i = i + 1;
+  }
+  return total;
+}
+
+int main() {
+  print_int(depthSum(2));         // 0 0 0, dann 0 + 11 + 22 = 33
+
+  Point a = makePoint(1);
+  Point b = makePoint(2);         // gleiche Aufruftiefe wie bei a
+  print_int(a.x);                 // 1
+  print_int(b.x);                 // 2
+
+  Point s;
+  store(s, 5);
+  store(s, 6);
+  print_int(s.y);                 // 6
+  Point t;
+  store(t, 7);
+  print_int(s.y);                 // 6
+  print_int(t.y);                 // 7
+
+  print_int(loop());              // 0
+  return 0;
+}
+/* EXPECT:
+0
+0
+0
+33
+1
+2
+6
+6
+7
+0
+*/
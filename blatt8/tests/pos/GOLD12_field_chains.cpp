@@ -0,0 +1,84 @@
+#include "hsbi_runtime.h"
+
+// Feldketten ueber drei und mehr Ebenen (a.b.c.x): lesen, schreiben, Referenzen
+// binden und kopieren. Eine Kopie des aeusseren Objekts darf sich nicht aendern,
+// wenn das Original tief innen geschrieben wird (und umgekehrt).
+
+class D {
+public:
+  int x;
+  string s;
+  int get() { return x; }
+};
+
+class C {
+public:
+  D d;
+  int y;
+};
+
+class B {
+public:
+  C c;
+};
+
+class A {
+public:
+  B b;
+  int z;
+};
+
+void setDeep(A& a, int v) {
+  a.b.c.d.x = v;
+}
+
+int main() {
+  A a;
+  a.b.c.d.x = 1;
+  a.b.c.y = 2;
+  a.b.c.d.s = "tief";
+  print_int(a.b.c.d.x);                 // 1
+  print_int(a.b.c.y);                   // 2
+  print_string(a.b.c.d.s);              // tief
+
+  // Kopie teilt nichts mit dem Original
+  A copy = a;
+  a.b.c.d.x = 10;
+  print_int(copy.b.c.d.x);              // 1
+  print_int(a.b.c.d.x);                 // 10
+  copy.b.c.y = 20;
+  print_int(a.b.c.y);                   // 2
+
+  // Referenz auf ein tiefes Feld
+  int& r = a.b.c.d.x;
+  r = 11;
+  print_int(a.b.c.d.x);                 // 11
+  print_int(copy.b.c.d.x);              // 1
+
+  // Schreiben ueber eine Referenz auf das aeussere Objekt
+  setDeep(copy, 5);
+  print_int(copy.b.c.d.x);              // 5
+  print_int(a.b.c.d.x);                 // 11
+
+  // Methodenaufruf am Ende der Kette
+  print_int(a.b.c.d.get() + copy.b.c.d.get());  // 16
+
+  // Kette als Operand, waehrend der andere Operand schreibt
+  print_int(a.b.c.d.x + (a.b.c.d.x = 1)); // 12
+  return 0;
+}
+
+/* EXPECT:
+1
+2
+tief
+1
+10
+2
+11
+1
+5
+11
+16
+12
+*/
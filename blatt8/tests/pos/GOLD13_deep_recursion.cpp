@@ -0,0 +1,44 @@
+#include "hsbi_runtime.h"
+
+// nur --engine=vm
+// Tiefe Rekursion, die keine Endrekursion ist: jeder Aufruf rechnet nach seinem
+// rekursiven Aufruf weiter. Nur die VM hat einen eigenen Aufrufstapel; der Tree-Walker,
+// der JIT und die Closure-Engine laufen auf dem Java-Stack und brechen hier mit
+// StackOverflowError ab (siehe README, Einschraenkungen).
+
+int depth(int n) {
+  if (n == 0) return 0;
+  return 1 + depth(n - 1);
+}
+
+bool isEven(int n) {
+  if (n == 0) return true;
+  return !isEven(n - 1);
+}
+
+class Counter {
+public:
+  int steps;
+  void step() { steps = steps + 1; }
+};
+
+int walk(Counter& c, int n) {
+  if (n == 0) return c.steps;
+  c.step();
+  return walk(c, n - 1) + 0;
+}
+
+int main() {
+  print_int(depth(200000));             // 200000
+  print_bool(isEven(100001));           // 0
+  Counter c;
+  c.steps = 0;
+  print_int(walk(c, 150000));            // 150000
+  return 0;
+}
+
+/* EXPECT:
+200000
+0
+150000
+*/
@@ -0,0 +1,143 @@
+#!/bin/bash
+# Runs the golden tests in pos/, neg/ and comprehensive/ under every execution mode,
+# including a --compile-to jar run with java -jar.
+#
+# Positive tests end in a "/* EXPECT ... */" block holding the expected output line
+# by line. Bools may be given as true/false or as 1/0 (as g++ prints them); trailing
+# blanks and remarks in parentheses are ignored. Tests under neg/ and tests whose
+# EXPECT block announces an error must fail with a non-zero exit code. Tests whose
+# error cases are commented out ("je nach aktivem Test") only have to run without error.
+# Tests marked "// nur --engine=vm" recurse deeper than the Java stack allows and only
+# run on the VM, the one engine with a call stack of its own. Tests marked
+# "// nicht --compile-to" rely on tail calls, which AOT jars do not eliminate.
+#
+# Usage: ./run_tests.sh [test.cpp ...]   (default: all tests)
+
+cd "$(dirname "$0")"
+
+JAR="${JAR:-../interpreter/interpreter.jar}"
+if [ ! -f "$JAR" ]; then
+    echo "Error: $JAR not found, run ../interpreter/build.sh first"
+    exit 1
+fi
+
+# a temporary jar for the aot mode
+AOT_JAR=$(mktemp --suffix=.jar)
+trap 'rm -f "$AOT_JAR"' EXIT
+
+# every mode a golden test has to pass in; "aot" compiles the test with
+# --compile-to and runs the jar without the interpreter
+MODES=(
+    ""
+    "--no-jit"
+    "--engine=vm"
+    "--engine=closure"
+    "--lazy-fields"
+    "--regions"
+    "--thin-objects"
+    "--lazy-fields --regions --thin-objects"
+    "aot"
+)
+
+if [ $# -gt 0 ]; then
+    TESTS=("$@")
+else
+    TESTS=(pos/*.cpp neg/*.cpp comprehensive/*.cpp)
+fi
+
+passed=0
+failed=0
+
+# expected output: the lines between "/* EXPECT" and "*/"
+expected_output() {
+    sed -n '/^\/\* EXPECT/,/^\*\//p' "$1" | sed '1d;$d' | sed '/^(.*)$/d' | bools
+}
+
+# program output without the banner and the trailing completion message
+actual_output() {
+    sed '1,/^Loading file:/d' | sed '1{/^$/d}' | sed '/^File execution completed\./,$d' | sed '${/^$/d}' | bools
+}
+
+# run a test in a mode and print its program output; the exit code is the program's
+# (or the compiler's, if --compile-to rejects the test)
+run() {
+    if [ "$2" = "aot" ]; then
+        java -jar "$JAR" --compile-to "$AOT_JAR" "$1" < /dev/null > /dev/null 2>&1 || return
+        java -jar "$AOT_JAR" < /dev/null 2> /dev/null | bools
+        return "${PIPESTATUS[0]}"
+    fi
+    java -jar "$JAR" $2 "$1" < /dev/null 2> /dev/null | actual_output
+    return "${PIPESTATUS[0]}"
+}
+
+bools() {
+    sed 's/^true$/1/; s/^false$/0/'
+}
+
+# error cases commented out
+only_runs() {
+    grep -q '^/\* EXPECT.*je nach aktivem Test' "$1"
+}
+
+# deep recursion: only the VM keeps its own call stack
+vm_only() {
+    grep -q '^// nur --engine=vm' "$1"
+}
+
+# deep tail calls: the aot jar makes every call on the Java stack
+not_aot() {
+    grep -q '^// nicht --compile-to' "$1"
+}
+
+expects_error() {
+    case "$1" in
+        neg/*) return 0 ;;
+    esac
+    grep -q -E '^/\* EXPECT(_ERROR|: .*(Fehler|fehler|error))' "$1"
+}
+
+for test in "${TESTS[@]}"; do
+    for mode in "${MODES[@]}"; do
+        if vm_only "$test" && [[ "$mode" != *--engine=vm* ]]; then
+            continue
+        fi
+        if not_aot "$test" && [ "$mode" = "aot" ]; then
+            continue
+        fi
+        output=$(run "$test" "$mode")
+        status=$?
+
+        if only_runs "$test"; then
+            if [ $status -eq 0 ]; then
+                passed=$((passed + 1))
+            else
+                failed=$((failed + 1))
+                echo "FAIL $test ${mode:-(default)}: exit code $status"
+            fi
+            continue
+        fi
+
+        if expects_error "$test"; then
+            if [ $status -ne 0 ]; then
+                passed=$((passed + 1))
+            else
+                failed=$((failed + 1))
+                echo "FAIL $test ${mode:-(default)}: expected an error, exit code was 0"
+            fi
+            continue
+        fi
+
+        diff_output=$(diff -Z <(expected_output "$test") <(if [ -n "$output" ]; then echo "$output"; fi))
+        if [ $status -eq 0 ] && [ -z "$diff_output" ]; then
+            passed=$((passed + 1))
+        else
+            failed=$((failed + 1))
+            echo "FAIL $test ${mode:-(default)} (exit code $status)"
+            echo "$diff_output" | head -10 | sed 's/^/    /'
+        fi
+    done
+done
+
+echo
+echo "$passed passed, $failed failed"
+[ $failed -eq 0 ]